@@ -0,0 +1,84 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * This class creates EDF and EDF+ recordings of a given shape in memory as
+ * input for the benchmarks, using {@link EDFGenerator}.
+ */
+class BenchmarkRecordings
+{
+        private BenchmarkRecordings() {}
+
+        /** The random seed, so every run benchmarks the same recordings */
+        static final long SEED = 4242;
+
+        /**
+         * @param channels              the number of signal channels
+         * @param durationOfRecord      the duration of a data record in seconds
+         * @param samplingRate          the samples per second of every signal channel
+         * @param annotationsPerRecord  the number of annotations per data record, with at least one
+         *                              an EDF+ file with an annotation channel is created
+         * @param numberOfRecords       the number of data records
+         * @return the header and the digital values per channel
+         */
+        static EDFParserResult create(int channels, double durationOfRecord, int samplingRate,
+                                      int annotationsPerRecord, int numberOfRecords) throws IOException
+        {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new EDFGenerator().seed(SEED).durationOfRecord(durationOfRecord).numberOfRecords(numberOfRecords)
+                        .annotationsPerRecord(annotationsPerRecord)
+                        .channels(channels, "EEG", samplingRate, EDFGenerator.Shape.SINE).write(out);
+
+                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+                EDFParserResult result = EDFParser.parseHeader(in);
+                EDFHeader header = result.header;
+                ShortBuffer data = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+
+                result.signal = new EDFSignal();
+                result.signal.digitalValues = new short[header.numberOfChannels][];
+                for (int i = 0; i < header.numberOfChannels; i++)
+                        result.signal.digitalValues[i] = new short[numberOfRecords * header.numberOfSamples[i]];
+                for (int r = 0; r < numberOfRecords; r++)
+                        for (int i = 0; i < header.numberOfChannels; i++)
+                                data.get(result.signal.digitalValues[i], r * header.numberOfSamples[i],
+                                         header.numberOfSamples[i]);
+                return result;
+        }
+
+        /**
+         * @return the bytes of the EDF-File
+         */
+        static byte[] write(EDFParserResult recording) throws IOException
+        {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                EDFWriter.writeIntoOutputStream(recording.header, out);
+                EDFWriter.writeIntoOutputStream(recording.signal, recording.header, out);
+                return out.toByteArray();
+        }
+}
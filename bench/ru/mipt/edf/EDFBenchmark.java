@@ -0,0 +1,149 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of parsing and writing EDF and EDF+ files of different shapes.
+ *
+ * The throughput of the bytes counter is reported in bytes per microsecond,
+ * which is MB/s. Run with "-prof gc" (as the benchmark target of build.xml
+ * does) to get the allocations per operation (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EDFBenchmark
+{
+        /** The duration of the benchmarked recordings in seconds */
+        private static final int RECORDING_DURATION = 60;
+
+        @Param({ "16", "128" })
+        public int channels;
+
+        @Param({ "1", "10" })
+        public double durationOfRecord;
+
+        @Param({ "256", "1024" })
+        public int samplingRate;
+
+        @Param({ "0", "8" })
+        public int annotationsPerRecord;
+
+        private EDFParserResult recording;
+        private byte[] file;
+        private byte[] annotations;
+
+        /**
+         * Counts the processed bytes of the file.
+         */
+        @AuxCounters(AuxCounters.Type.OPERATIONS)
+        @State(Scope.Thread)
+        public static class Bytes
+        {
+                public long bytes;
+
+                @Setup(Level.Iteration)
+                public void reset()
+                {
+                        bytes = 0;
+                }
+        }
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException
+        {
+                int numberOfRecords = (int) Math.ceil(RECORDING_DURATION / durationOfRecord);
+                recording = BenchmarkRecordings.create(channels, durationOfRecord, samplingRate, annotationsPerRecord,
+                                                       numberOfRecords);
+                file = BenchmarkRecordings.write(recording);
+
+                short[] values = annotationsPerRecord > 0 ? recording.signal.digitalValues[channels] : new short[0];
+                annotations = new byte[values.length * 2];
+                for (int i = 0; i < values.length; i++)
+                {
+                        annotations[2 * i] = (byte) values[i];
+                        annotations[2 * i + 1] = (byte) (values[i] >> 8);
+                }
+        }
+
+        @Benchmark
+        public EDFParserResult parseHeader(Bytes counter) throws IOException
+        {
+                EDFParserResult result = EDFParser.parseHeader(new ByteArrayInputStream(file));
+                counter.bytes += result.header.bytesInHeader;
+                return result;
+        }
+
+        @Benchmark
+        public EDFParserResult parseEDF(Bytes counter) throws IOException
+        {
+                EDFParserResult result = EDFParser.parseEDF(new ByteArrayInputStream(file));
+                counter.bytes += file.length;
+                return result;
+        }
+
+        @Benchmark
+        public List<EDFAnnotation> parseAnnotations(Bytes counter)
+        {
+                counter.bytes += annotations.length;
+                return EDFParser.parseAnnotations(annotations);
+        }
+
+        @Benchmark
+        public short[] buildDataArray(Bytes counter)
+        {
+                short[] data = EDFWriter.buildDataArray(recording.signal.digitalValues, recording.header);
+                counter.bytes += data.length * 2L;
+                return data;
+        }
+
+        @Benchmark
+        public void write(Bytes counter) throws IOException
+        {
+                OutputStream out = OutputStream.nullOutputStream();
+                EDFWriter.writeIntoOutputStream(recording.header, out);
+                EDFWriter.writeIntoOutputStream(recording.signal, recording.header, out);
+                counter.bytes += file.length;
+        }
+}
@@ -0,0 +1,118 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * This class removes the identifying information from the headers of EDF and
+ * EDF+ files in place with {@link EDFHeaderEditor}. The data records of the
+ * files are not touched, so only header-sized I/O is done per file.
+ */
+public class EDFAnonymizer
+{
+        public static final String ANONYMOUS_START_DATE = "01.01.85";
+        public static final String ANONYMOUS_START_TIME = "00.00.00";
+
+        /**
+         * Anonymize the header of an EDF-File. The subject and recording
+         * identification are replaced by the EDF+ placeholders for unknown values
+         * (or cleared for EDF) and the start of the recording is set to
+         * 01.01.85 00.00.00.
+         *
+         * @param path
+         *            the path to the EDF-File
+         * @throws IOException
+         *             if the file can not be edited
+         */
+        public static void anonymize(Path path) throws IOException
+        {
+                try (EDFHeaderEditor editor = new EDFHeaderEditor(path))
+                {
+                        boolean edfPlus = editor.getHeader().getFormatVersion().startsWith("EDF+");
+                        editor.setSubjectID(edfPlus ? "X X X X" : "");
+                        editor.setRecordingID(edfPlus ? "Startdate X X X X" : "");
+                        editor.setStartDate(ANONYMOUS_START_DATE);
+                        editor.setStartTime(ANONYMOUS_START_TIME);
+                }
+        }
+
+        /**
+         * Anonymize all files with the extension .edf in the directory tree.
+         *
+         * @param root
+         *            the root of the directory tree
+         * @param parallelism
+         *            the number of files which are anonymized concurrently
+         * @return the files which could not be anonymized with the cause
+         * @throws IOException
+         *             if the directory tree can not be walked
+         */
+        public static Map<Path, Exception> anonymizeTree(Path root, int parallelism) throws IOException
+        {
+                ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+                try (Stream<Path> files = Files.walk(root))
+                {
+                        List<Path> paths = new ArrayList<>();
+                        List<Future<Void>> futures = new ArrayList<>();
+                        files.filter(ParseUtils::isEDFFile).forEach(path -> {
+                                paths.add(path);
+                                futures.add(executor.submit(() -> {
+                                        anonymize(path);
+                                        return null;
+                                }));
+                        });
+
+                        Map<Path, Exception> failures = new LinkedHashMap<>();
+                        for (int i = 0; i < futures.size(); i++)
+                        {
+                                try
+                                {
+                                        futures.get(i).get();
+                                } catch (ExecutionException e)
+                                {
+                                        if (e.getCause() instanceof Error)
+                                                throw (Error) e.getCause();
+                                        failures.put(paths.get(i), (Exception) e.getCause());
+                                } catch (InterruptedException e)
+                                {
+                                        Thread.currentThread().interrupt();
+                                        throw new IOException(e);
+                                }
+                        }
+                        return failures;
+                } finally
+                {
+                        executor.shutdownNow();
+                }
+        }
+}
@@ -0,0 +1,179 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static ru.mipt.edf.EDFConstants.*;
+
+/**
+ * This class is capable of appending data records to an existing EDF or EDF+
+ * file. The new data records are written at the end of the file and only the
+ * number of data records in the header is rewritten, so the cost of an append
+ * does not depend on the size of the file.
+ */
+public class EDFAppender implements Closeable
+{
+        private final FileChannel channel;
+        private final EDFHeader header;
+        private final int samplesPerRecord;
+        private final int bytesPerRecord;
+        private final String path;
+
+        /**
+         * Open an existing EDF-File for appending. If the number of data records
+         * in the header is -1 (recording still in progress) it is computed from
+         * the size of the file.
+         *
+         * @param path
+         *            the path to the EDF-File
+         * @throws IOException
+         *             if the file can not be opened or its header is not valid
+         */
+        public EDFAppender(Path path) throws IOException
+        {
+                this.path = path.toString();
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try
+                {
+                        header = EDFParser.parseHeader(channel, this.path).getHeader();
+                        samplesPerRecord = header.getSamplesPerRecord();
+                        bytesPerRecord = header.getBytesPerRecord();
+
+                        long dataSize = channel.size() - header.bytesInHeader;
+                        if (header.numberOfRecords < 0)
+                                header.numberOfRecords = (int) (dataSize / bytesPerRecord);
+                        else if (dataSize < (long) header.numberOfRecords * bytesPerRecord)
+                                throw new EDFParserException("File is shorter than the number of data records "
+                                                             + "in its header.", null);
+                } catch (IOException e)
+                {
+                        channel.close();
+                        throw e;
+                }
+        }
+
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        public int getNumberOfRecords()
+        {
+                return header.numberOfRecords;
+        }
+
+        /**
+         * Append data records in the one dimension format produced by
+         * {@link EDFWriter#buildDataArray(short[][], EDFHeader)}.
+         *
+         * @param data          The samples of the data records grouped by time
+         * @throws IOException  Will be thrown if it is not possible to write into the file
+         */
+        public void appendRecords(short[] data) throws IOException
+        {
+                if (data.length % samplesPerRecord != 0)
+                        throw new IllegalArgumentException("Data length " + data.length
+                                                           + " is not a multiple of the record size "
+                                                           + samplesPerRecord + ".");
+
+                ByteBuffer bytebuf = ByteBuffer.allocate(data.length * 2);
+                bytebuf.order(ByteOrder.LITTLE_ENDIAN);
+                bytebuf.asShortBuffer().put(data);
+                write(bytebuf, data.length / samplesPerRecord);
+        }
+
+        /**
+         * Append data records in the two dimensions format of
+         * {@link EDFSignal#getDigitalValues()}. Every channel has to contain the
+         * same number of data records.
+         *
+         * @param digitalValues The samples of the data records per channel
+         * @throws IOException  Will be thrown if it is not possible to write into the file
+         */
+        public void appendRecords(short[][] digitalValues) throws IOException
+        {
+                if (digitalValues.length != header.numberOfChannels)
+                        throw new IllegalArgumentException("Expected " + header.numberOfChannels + " channels but got "
+                                                           + digitalValues.length + ".");
+                // channels without samples do not tell the number of data records
+                int records = 0;
+                for (int i = 0; i < digitalValues.length; i++)
+                {
+                        if (header.numberOfSamples[i] > 0)
+                        {
+                                records = digitalValues[i].length / header.numberOfSamples[i];
+                                break;
+                        }
+                }
+                for (int i = 0; i < digitalValues.length; i++)
+                {
+                        if (digitalValues[i].length != records * header.numberOfSamples[i])
+                                throw new IllegalArgumentException("Channel " + i + " does not contain " + records
+                                                                   + " data records.");
+                }
+
+                ByteBuffer bytebuf = ByteBuffer.allocate(records * bytesPerRecord);
+                bytebuf.order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < records; i++)
+                        for (int j = 0; j < digitalValues.length; j++)
+                        {
+                                int nos = header.numberOfSamples[j];
+                                for (int k = 0; k < nos; k++)
+                                        bytebuf.putShort(digitalValues[j][nos * i + k]);
+                        }
+                bytebuf.flip();
+                write(bytebuf, records);
+        }
+
+        private void write(ByteBuffer bytebuf, int records) throws IOException
+        {
+                EDFEvents.WriteFlush event = EDFEvents.writeFlush();
+                event.begin();
+                long position = header.bytesInHeader + (long) header.numberOfRecords * bytesPerRecord;
+                long bytes = bytebuf.remaining();
+                EDFWriter.writeFully(channel, bytebuf, position);
+                header.numberOfRecords += records;
+                EDFWriter.writeField(channel, NUMBER_OF_DATA_RECORDS_OFFSET, NUMBER_OF_DATA_RECORDS_SIZE,
+                                     String.valueOf(header.numberOfRecords));
+                if (event.shouldCommit())
+                {
+                        event.path = path;
+                        event.firstRecord = header.numberOfRecords - records;
+                        event.records = records;
+                        event.channels = header.numberOfChannels;
+                        event.bytes = bytes;
+                        event.commit();
+                }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+                channel.close();
+        }
+}
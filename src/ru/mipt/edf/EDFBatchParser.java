@@ -0,0 +1,237 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * This class parses many EDF-Files concurrently with
+ * {@link EDFParser#parseEDF(InputStream)}. By default every file is parsed on
+ * its own virtual thread (on Java 21 and later, otherwise on a cached thread
+ * pool). The number of files parsed at the same time and the estimated memory
+ * of their parsed results are limited. The next path is taken from the stream
+ * when the concurrency allows it; its task reads the header and waits until the
+ * memory limit allows the data records to be parsed, so the headers are not
+ * read on the submitting thread.
+ *
+ * The results are delivered to a callback in the order of completion. The
+ * callback is never invoked concurrently, and a result counts against the
+ * memory limit until the callback returns.
+ */
+public class EDFBatchParser
+{
+        /** The bytes of a parsed result per byte of data records: a short and a double per sample */
+        private static final int DECODED_BYTES_PER_BYTE = 5;
+        private static final long KIBIBYTE = 1024;
+
+        /**
+         * This interface receives the results of an {@link EDFBatchParser}.
+         */
+        public interface Callback
+        {
+                /**
+                 * @param path      the parsed file
+                 * @param result    the parsed result
+                 * @param nanos     the time in nanoseconds to parse the file
+                 */
+                void onResult(Path path, EDFParserResult result, long nanos);
+
+                /**
+                 * @param path      the file which could not be parsed
+                 * @param error     the cause
+                 * @param nanos     the time in nanoseconds until the error occurred
+                 */
+                void onError(Path path, Exception error, long nanos);
+        }
+
+        private int maxConcurrency = Runtime.getRuntime().availableProcessors() * 4;
+        private long maxInFlightBytes = Runtime.getRuntime().maxMemory() / 2;
+        private ExecutorService executor;
+
+        /**
+         * @param val the maximum number of files which are parsed at the same time
+         */
+        public EDFBatchParser maxConcurrency(int val)
+        {
+                if (val <= 0)
+                        throw new IllegalArgumentException("The maximum concurrency has to be positive.");
+                maxConcurrency = val;
+                return this;
+        }
+
+        /**
+         * @param val the maximum estimated size in bytes of all parsed results which were not yet delivered
+         */
+        public EDFBatchParser maxInFlightBytes(long val)
+        {
+                if (val < KIBIBYTE)
+                        throw new IllegalArgumentException("The maximum in-flight size has to be at least 1 KiB.");
+                maxInFlightBytes = val;
+                return this;
+        }
+
+        /**
+         * @param val the executor to parse the files on, it is not shut down by the batch parser
+         */
+        public EDFBatchParser executor(ExecutorService val)
+        {
+                executor = val;
+                return this;
+        }
+
+        /**
+         * Parse all files of the stream and wait until all results are delivered.
+         *
+         * @param paths     the files to parse
+         * @param callback  the callback for the results
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        public void parse(Stream<Path> paths, final Callback callback) throws InterruptedException
+        {
+                final Semaphore concurrency = new Semaphore(maxConcurrency);
+                final int maxInFlightKibibytes = (int) Math.min(Integer.MAX_VALUE, maxInFlightBytes / KIBIBYTE);
+                // fair, so a large file is not passed over by smaller ones
+                final Semaphore inFlight = new Semaphore(maxInFlightKibibytes, true);
+                ExecutorService executor = this.executor != null ? this.executor : newDefaultExecutor();
+                try
+                {
+                        Iterator<Path> iterator = paths.iterator();
+                        while (iterator.hasNext())
+                        {
+                                final Path path = iterator.next();
+                                concurrency.acquire();
+                                try
+                                {
+                                        executor.execute(() -> {
+                                                try
+                                                {
+                                                        parse(path, callback, inFlight, maxInFlightKibibytes);
+                                                } finally
+                                                {
+                                                        concurrency.release();
+                                                }
+                                        });
+                                } catch (RejectedExecutionException e)
+                                {
+                                        concurrency.release();
+                                        deliver(callback, path, null, e, 0);
+                                }
+                        }
+                        concurrency.acquire(maxConcurrency);
+                        concurrency.release(maxConcurrency);
+                } finally
+                {
+                        if (this.executor == null)
+                                executor.shutdown();
+                }
+        }
+
+        /**
+         * @return the estimated size of the parsed result from the data records
+         *         in the header, the whole limit if the number of data records of a
+         *         gzip compressed file is unknown
+         */
+        private long estimateDecodedBytes(Path path, EDFHeader header) throws IOException
+        {
+                long numberOfRecords = header.numberOfRecords;
+                if (numberOfRecords < 0)
+                {
+                        if (EDFStreamReader.isGzip(path))
+                                return maxInFlightBytes;
+                        numberOfRecords = ParseUtils.numberOfRecords(header, Files.size(path));
+                }
+                return numberOfRecords * header.getBytesPerRecord() * DECODED_BYTES_PER_BYTE;
+        }
+
+        /**
+         * Parse the header, wait for the estimated size of the result to be
+         * available and parse the data records from the same stream.
+         */
+        private void parse(Path path, Callback callback, Semaphore inFlight, int maxInFlightKibibytes)
+        {
+                long start = System.nanoTime();
+                int acquired = 0;
+                EDFParserResult result = null;
+                Exception error = null;
+                try (InputStream is = EDFStreamReader.openInputStream(path, 1))
+                {
+                        result = EDFParser.parseHeader(is, path.toString());
+                        long estimate = estimateDecodedBytes(path, result.getHeader()) / KIBIBYTE + 1;
+                        // a file larger than the limit is parsed alone
+                        int kibibytes = (int) Math.min(estimate, maxInFlightKibibytes);
+                        inFlight.acquire(kibibytes);
+                        acquired = kibibytes;
+                        EDFParser.parseSignal(is, result, path.toString(), null);
+                } catch (IOException | RuntimeException e)
+                {
+                        error = e;
+                } catch (InterruptedException e)
+                {
+                        Thread.currentThread().interrupt();
+                        error = e;
+                }
+                try
+                {
+                        deliver(callback, path, error == null ? result : null, error, System.nanoTime() - start);
+                } finally
+                {
+                        inFlight.release(acquired);
+                }
+        }
+
+        private synchronized void deliver(Callback callback, Path path, EDFParserResult result, Exception error,
+                                          long nanos)
+        {
+                if (error == null)
+                        callback.onResult(path, result, nanos);
+                else
+                        callback.onError(path, error, nanos);
+        }
+
+        /**
+         * @return an executor with a new virtual thread per task if the runtime supports it, a cached pool
+         *         of daemon threads otherwise
+         */
+        static ExecutorService newDefaultExecutor()
+        {
+                try
+                {
+                        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                .invoke(null);
+                } catch (ReflectiveOperationException e)
+                {
+                        return Executors.newCachedThreadPool(runnable -> {
+                                Thread thread = new Thread(runnable);
+                                thread.setDaemon(true);
+                                return thread;
+                        });
+                }
+        }
+}
@@ -0,0 +1,148 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * An IIR filter made of a cascade of biquad sections in transposed direct
+ * form II. The factory methods design Butterworth low, high and band pass
+ * filters and notch filters with the formulas of the Audio EQ Cookbook by
+ * Robert Bristow-Johnson.
+ */
+public class EDFBiquadFilter implements EDFFilter
+{
+        // per section b0, b1, b2, a1, a2 normalized by a0
+        private final double[][] sections;
+        private final double[] z1;
+        private final double[] z2;
+
+        /**
+         * @param sections the coefficients b0, b1, b2, a1 and a2 of every section, normalized by a0
+         */
+        public EDFBiquadFilter(double[]... sections)
+        {
+                for (double[] section : sections)
+                        if (section.length != 5)
+                                throw new IllegalArgumentException("A section has the coefficients b0, b1, b2, a1 "
+                                                                   + "and a2.");
+                this.sections = sections.clone();
+                z1 = new double[sections.length];
+                z2 = new double[sections.length];
+        }
+
+        /**
+         * @param order the order of the Butterworth filter, a positive even number
+         */
+        public static EDFBiquadFilter lowpass(double samplingRate, double cutoff, int order)
+        {
+                return butterworth(samplingRate, cutoff, order, true);
+        }
+
+        /**
+         * @param order the order of the Butterworth filter, a positive even number
+         */
+        public static EDFBiquadFilter highpass(double samplingRate, double cutoff, int order)
+        {
+                return butterworth(samplingRate, cutoff, order, false);
+        }
+
+        /**
+         * A band pass made of a Butterworth high pass and a Butterworth low pass.
+         *
+         * @param order the order of both Butterworth filters, a positive even number
+         */
+        public static EDFBiquadFilter bandpass(double samplingRate, double low, double high, int order)
+        {
+                if (low >= high)
+                        throw new IllegalArgumentException("The lower edge " + low + " Hz is not below the upper edge "
+                                                           + high + " Hz.");
+                EDFBiquadFilter highpass = highpass(samplingRate, low, order);
+                EDFBiquadFilter lowpass = lowpass(samplingRate, high, order);
+                double[][] sections = new double[highpass.sections.length + lowpass.sections.length][];
+                System.arraycopy(highpass.sections, 0, sections, 0, highpass.sections.length);
+                System.arraycopy(lowpass.sections, 0, sections, highpass.sections.length, lowpass.sections.length);
+                return new EDFBiquadFilter(sections);
+        }
+
+        /**
+         * A notch filter, for example for 50 or 60 Hz mains interference.
+         *
+         * @param q the quality, the center frequency divided by the bandwidth
+         */
+        public static EDFBiquadFilter notch(double samplingRate, double frequency, double q)
+        {
+                checkFrequency(samplingRate, frequency);
+                double w0 = 2 * Math.PI * frequency / samplingRate;
+                double cos = Math.cos(w0);
+                double alpha = Math.sin(w0) / (2 * q);
+                return new EDFBiquadFilter(section(1, -2 * cos, 1, 1 + alpha, -2 * cos, 1 - alpha));
+        }
+
+        @Override
+        public void process(double[] values, int offset, int length)
+        {
+                for (int s = 0; s < sections.length; s++)
+                {
+                        double[] c = sections[s];
+                        double b0 = c[0], b1 = c[1], b2 = c[2], a1 = c[3], a2 = c[4];
+                        double s1 = z1[s], s2 = z2[s];
+                        for (int i = offset; i < offset + length; i++)
+                        {
+                                double x = values[i];
+                                double y = b0 * x + s1;
+                                s1 = b1 * x - a1 * y + s2;
+                                s2 = b2 * x - a2 * y;
+                                values[i] = y;
+                        }
+                        z1[s] = s1;
+                        z2[s] = s2;
+                }
+        }
+
+        private static EDFBiquadFilter butterworth(double samplingRate, double cutoff, int order, boolean lowpass)
+        {
+                checkFrequency(samplingRate, cutoff);
+                if (order <= 0 || order % 2 != 0)
+                        throw new IllegalArgumentException("The order has to be a positive even number.");
+                double w0 = 2 * Math.PI * cutoff / samplingRate;
+                double cos = Math.cos(w0);
+                double[][] sections = new double[order / 2][];
+                for (int k = 0; k < sections.length; k++)
+                {
+                        double q = 1 / (2 * Math.cos((2 * k + 1) * Math.PI / (2 * order)));
+                        double alpha = Math.sin(w0) / (2 * q);
+                        double b = lowpass ? (1 - cos) / 2 : (1 + cos) / 2;
+                        sections[k] = section(b, lowpass ? 2 * b : -2 * b, b, 1 + alpha, -2 * cos, 1 - alpha);
+                }
+                return new EDFBiquadFilter(sections);
+        }
+
+        private static double[] section(double b0, double b1, double b2, double a0, double a1, double a2)
+        {
+                return new double[] { b0 / a0, b1 / a0, b2 / a0, a1 / a0, a2 / a0 };
+        }
+
+        private static void checkFrequency(double samplingRate, double frequency)
+        {
+                if (!(frequency > 0) || frequency >= samplingRate / 2)
+                        throw new IllegalArgumentException("The frequency " + frequency + " Hz is not between 0 and "
+                                                           + samplingRate / 2 + " Hz.");
+        }
+}
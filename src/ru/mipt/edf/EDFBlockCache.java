@@ -0,0 +1,260 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a bounded cache of decoded blocks of samples, shared by any
+ * number of EDFReaders and threads. A block contains the digital values of all
+ * channels in a fixed number of consecutive data records of a file, so reads
+ * of several channels of the same time, like the derivations of a montage,
+ * read every data record once. The least
+ * recently used blocks are evicted when the total size of the blocks exceeds
+ * the maximum size of the cache.
+ *
+ * Blocks are decoded outside of the lock of the cache, so two threads missing
+ * the same block at the same time may both decode it.
+ */
+public class EDFBlockCache
+{
+        /** The estimated size of a block in addition to its samples */
+        private static final int BLOCK_OVERHEAD = 96;
+
+        private final long maximumSize;
+        private final int recordsPerBlock;
+        private final LinkedHashMap<BlockKey, short[][]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+        private long size = 0;
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        /**
+         * @param maximumSize       the maximum size of all cached blocks in bytes
+         * @param recordsPerBlock   the number of data records per block
+         */
+        public EDFBlockCache(long maximumSize, int recordsPerBlock)
+        {
+                if (maximumSize <= 0 || recordsPerBlock <= 0)
+                        throw new IllegalArgumentException("The size of the cache and of the blocks has to be positive.");
+                this.maximumSize = maximumSize;
+                this.recordsPerBlock = recordsPerBlock;
+        }
+
+        /**
+         * @param reader the reader to read missing blocks with
+         * @return a view of the reader which reads through this cache
+         */
+        public EDFSampleSource cached(EDFReader reader)
+        {
+                return new CachedSource(reader);
+        }
+
+        /**
+         * Read digital values of a channel, decoding only the blocks which are not cached.
+         *
+         * @param reader            the reader to read missing blocks with
+         * @param channel           the index of the channel
+         * @param firstSample       the index of the first sample of the channel
+         * @param numberOfSamples   the number of samples
+         * @return the digital values
+         * @throws IOException      if the file can not be read
+         */
+        public short[] readDigitalSamples(EDFReader reader, int channel, long firstSample, int numberOfSamples)
+                throws IOException
+        {
+                if (firstSample < 0 || numberOfSamples < 0 || channel < 0
+                    || channel >= reader.getHeader().numberOfChannels
+                    || firstSample + numberOfSamples > reader.getNumberOfSamples(channel))
+                        throw new IndexOutOfBoundsException("Samples " + firstSample + " to "
+                                                            + (firstSample + numberOfSamples) + " of channel "
+                                                            + channel + " do not exist.");
+                int nos = reader.getHeader().numberOfSamples[channel];
+                if (nos == 0)
+                        throw new IllegalArgumentException("Channel " + channel + " has no samples.");
+
+                short[] values = new short[numberOfSamples];
+                long samplesPerBlock = (long) recordsPerBlock * nos;
+                for (int i = 0; i < numberOfSamples; )
+                {
+                        long sample = firstSample + i;
+                        int block = (int) (sample / samplesPerBlock);
+                        int offset = (int) (sample - block * samplesPerBlock);
+                        short[] blockValues = getBlock(reader, block)[channel];
+                        int length = Math.min(numberOfSamples - i, blockValues.length - offset);
+                        System.arraycopy(blockValues, offset, values, i, length);
+                        i += length;
+                }
+                return values;
+        }
+
+        private short[][] getBlock(EDFReader reader, int block) throws IOException
+        {
+                BlockKey key = new BlockKey(reader.getFileKey(), block);
+                synchronized (blocks)
+                {
+                        short[][] values = blocks.get(key);
+                        if (values != null)
+                        {
+                                hits.incrementAndGet();
+                                return values;
+                        }
+                }
+                misses.incrementAndGet();
+
+                int firstRecord = block * recordsPerBlock;
+                int numberOfRecords = Math.min(recordsPerBlock, reader.getNumberOfRecords() - firstRecord);
+                short[][] values = reader.readDigitalRecords(firstRecord, numberOfRecords);
+
+                synchronized (blocks)
+                {
+                        short[][] previous = blocks.put(key, values);
+                        if (previous != null)
+                                size -= sizeOf(previous);
+                        size += sizeOf(values);
+                        Iterator<Map.Entry<BlockKey, short[][]>> iterator = blocks.entrySet().iterator();
+                        while (size > maximumSize && iterator.hasNext())
+                        {
+                                size -= sizeOf(iterator.next().getValue());
+                                iterator.remove();
+                                evictions.incrementAndGet();
+                        }
+                }
+                return values;
+        }
+
+        private static long sizeOf(short[][] values)
+        {
+                long size = BLOCK_OVERHEAD;
+                for (short[] channel : values)
+                        size += channel.length * 2L + BLOCK_OVERHEAD;
+                return size;
+        }
+
+        /**
+         * Remove all blocks from the cache. The statistics are not reset.
+         */
+        public void clear()
+        {
+                synchronized (blocks)
+                {
+                        blocks.clear();
+                        size = 0;
+                }
+        }
+
+        /**
+         * @return the estimated size of all cached blocks in bytes
+         */
+        public long getSize()
+        {
+                synchronized (blocks)
+                {
+                        return size;
+                }
+        }
+
+        public long getMaximumSize()
+        {
+                return maximumSize;
+        }
+
+        public long getHits()
+        {
+                return hits.get();
+        }
+
+        public long getMisses()
+        {
+                return misses.get();
+        }
+
+        public long getEvictions()
+        {
+                return evictions.get();
+        }
+
+        private static final class BlockKey
+        {
+                private final Object fileKey;
+                private final int block;
+
+                BlockKey(Object fileKey, int block)
+                {
+                        this.fileKey = fileKey;
+                        this.block = block;
+                }
+
+                @Override
+                public boolean equals(Object o)
+                {
+                        if (!(o instanceof BlockKey))
+                                return false;
+                        BlockKey other = (BlockKey) o;
+                        return block == other.block && fileKey.equals(other.fileKey);
+                }
+
+                @Override
+                public int hashCode()
+                {
+                        return fileKey.hashCode() * 31 + block;
+                }
+        }
+
+        private final class CachedSource implements EDFSampleSource
+        {
+                private final EDFReader reader;
+
+                CachedSource(EDFReader reader)
+                {
+                        this.reader = reader;
+                }
+
+                @Override
+                public EDFHeader getHeader()
+                {
+                        return reader.getHeader();
+                }
+
+                @Override
+                public long getNumberOfSamples(int channel)
+                {
+                        return reader.getNumberOfSamples(channel);
+                }
+
+                @Override
+                public double getUnitsInDigit(int channel)
+                {
+                        return reader.getUnitsInDigit(channel);
+                }
+
+                @Override
+                public short[] readDigitalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+                {
+                        return EDFBlockCache.this.readDigitalSamples(reader, channel, firstSample, numberOfSamples);
+                }
+        }
+}
@@ -0,0 +1,232 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The lossless codec of the blocks of an EDFZ container. The samples of each
+ * channel in a block of data records are encoded in time order in frames of
+ * 128 samples. Per frame the predictor with the smallest residuals is chosen
+ * out of none, the previous sample and the linear extrapolation of the two
+ * previous samples. The residuals are zigzag encoded and bit packed. Every
+ * frame starts with a byte holding the predictor in the upper 3 bits and the
+ * number of bits per residual in the lower 5 bits.
+ */
+final class EDFBlockCodec
+{
+        private static final int FRAME_SIZE = 128;
+        // a zigzag encoded residual of the linear extrapolation needs at most 19 bits
+        private static final int MAX_WIDTH = 19;
+        private static final int PREDICTORS = 3;
+
+        private EDFBlockCodec() {}
+
+        /**
+         * @return an upper bound of the encoded size of a block
+         */
+        static int maxEncodedSize(EDFHeader header, int numberOfRecords)
+        {
+                long size = 0;
+                for (int nos : header.numberOfSamples)
+                {
+                        long n = (long) numberOfRecords * nos;
+                        size += (n + FRAME_SIZE - 1) / FRAME_SIZE + (n * MAX_WIDTH + 7) / 8;
+                }
+                return (int) size;
+        }
+
+        /**
+         * Encode raw data records in little endian order.
+         *
+         * @param header            the header of the recording
+         * @param records           the raw data records starting at index 0
+         * @param numberOfRecords   the number of data records to encode
+         * @param out               the buffer to encode into
+         */
+        static void encode(EDFHeader header, ByteBuffer records, int numberOfRecords, ByteBuffer out)
+        {
+                int bytesPerRecord = header.getBytesPerRecord();
+                int[] frame = new int[FRAME_SIZE + 2];
+                int[] residuals = new int[FRAME_SIZE];
+                int channelOffset = 0;
+                for (int channel = 0; channel < header.numberOfChannels; channel++)
+                {
+                        int nos = header.numberOfSamples[channel];
+                        // the first two elements of the frame are the two samples before the frame
+                        frame[0] = 0;
+                        frame[1] = 0;
+                        int length = 0;
+                        for (int r = 0; r < numberOfRecords; r++)
+                        {
+                                int position = r * bytesPerRecord + channelOffset;
+                                for (int k = 0; k < nos; k++, position += 2)
+                                {
+                                        frame[2 + length] = records.getShort(position);
+                                        if (++length == FRAME_SIZE)
+                                        {
+                                                encodeFrame(frame, length, residuals, out);
+                                                frame[0] = frame[FRAME_SIZE];
+                                                frame[1] = frame[FRAME_SIZE + 1];
+                                                length = 0;
+                                        }
+                                }
+                        }
+                        if (length > 0)
+                                encodeFrame(frame, length, residuals, out);
+                        channelOffset += nos * 2;
+                }
+        }
+
+        /**
+         * Decode a block into raw data records in little endian order.
+         *
+         * @param header            the header of the recording
+         * @param in                the encoded block
+         * @param numberOfRecords   the number of data records in the block
+         * @param records           the buffer for the raw data records starting at index 0
+         * @param channel           the only channel to decode or -1 to decode all channels
+         */
+        static void decode(EDFHeader header, ByteBuffer in, int numberOfRecords, ByteBuffer records, int channel)
+        {
+                int bytesPerRecord = header.getBytesPerRecord();
+                int channelOffset = 0;
+                for (int c = 0; c < header.numberOfChannels; c++)
+                {
+                        int nos = header.numberOfSamples[c];
+                        int n = numberOfRecords * nos;
+                        if (channel >= 0 && c != channel)
+                        {
+                                for (int first = 0; first < n; first += FRAME_SIZE)
+                                {
+                                        int width = in.get() & 0x1f;
+                                        int length = Math.min(FRAME_SIZE, n - first);
+                                        in.position(in.position() + (length * width + 7) / 8);
+                                }
+                        } else
+                        {
+                                int previous = 0;
+                                int beforePrevious = 0;
+                                int record = 0;
+                                int sample = 0;
+                                for (int first = 0; first < n; first += FRAME_SIZE)
+                                {
+                                        int flags = in.get();
+                                        int predictor = flags >>> 5 & 0x7;
+                                        int width = flags & 0x1f;
+                                        int length = Math.min(FRAME_SIZE, n - first);
+                                        long mask = (1L << width) - 1;
+                                        long accumulator = 0;
+                                        int bits = 0;
+                                        for (int i = 0; i < length; i++)
+                                        {
+                                                while (bits < width)
+                                                {
+                                                        accumulator |= (long) (in.get() & 0xff) << bits;
+                                                        bits += 8;
+                                                }
+                                                int zigzag = (int) (accumulator & mask);
+                                                accumulator >>>= width;
+                                                bits -= width;
+                                                int value = predict(predictor, previous, beforePrevious)
+                                                            + ((zigzag >>> 1) ^ -(zigzag & 1));
+                                                beforePrevious = previous;
+                                                previous = value;
+                                                records.putShort(record * bytesPerRecord + channelOffset + sample * 2,
+                                                                 (short) value);
+                                                if (++sample == nos)
+                                                {
+                                                        sample = 0;
+                                                        record++;
+                                                }
+                                        }
+                                }
+                        }
+                        channelOffset += nos * 2;
+                }
+        }
+
+        /**
+         * Encode a frame with the predictor giving the smallest residuals.
+         *
+         * @param frame     the two samples before the frame followed by the samples of the frame
+         * @param length    the number of samples of the frame
+         */
+        private static void encodeFrame(int[] frame, int length, int[] residuals, ByteBuffer out)
+        {
+                int bestPredictor = 0;
+                int bestBits = 0;
+                for (int predictor = 0; predictor < PREDICTORS; predictor++)
+                {
+                        int bits = 0;
+                        for (int i = 2; i < length + 2; i++)
+                        {
+                                int residual = frame[i] - predict(predictor, frame[i - 1], frame[i - 2]);
+                                bits |= (residual << 1) ^ (residual >> 31);
+                        }
+                        if (predictor == 0 || bits < bestBits)
+                        {
+                                bestPredictor = predictor;
+                                bestBits = bits;
+                        }
+                }
+                for (int i = 2; i < length + 2; i++)
+                {
+                        int residual = frame[i] - predict(bestPredictor, frame[i - 1], frame[i - 2]);
+                        residuals[i - 2] = (residual << 1) ^ (residual >> 31);
+                }
+                pack(residuals, length, bestPredictor, bestBits, out);
+        }
+
+        private static int predict(int predictor, int previous, int beforePrevious)
+        {
+                switch (predictor)
+                {
+                case 0:
+                        return 0;
+                case 1:
+                        return previous;
+                default:
+                        return 2 * previous - beforePrevious;
+                }
+        }
+
+        private static void pack(int[] frame, int length, int predictor, int bits, ByteBuffer out)
+        {
+                int width = 32 - Integer.numberOfLeadingZeros(bits);
+                out.put((byte) (predictor << 5 | width));
+                long accumulator = 0;
+                int count = 0;
+                for (int i = 0; i < length; i++)
+                {
+                        accumulator |= (long) frame[i] << count;
+                        count += width;
+                        while (count >= 8)
+                        {
+                                out.put((byte) accumulator);
+                                accumulator >>>= 8;
+                                count -= 8;
+                        }
+                }
+                if (count > 0)
+                        out.put((byte) accumulator);
+        }
+}
@@ -0,0 +1,309 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * This class is a catalog of the headers of all EDF-Files in a directory tree.
+ * A scan reads only the header bytes of the files, and only of files whose
+ * size or modification time changed since the previous scan. The catalog can
+ * be saved to and loaded from a file and is indexed by channel label, duration
+ * and start of the recording.
+ *
+ * Queries may run concurrently with a scan, they see the catalog as it was
+ * before or after the scan.
+ */
+public class EDFCatalog
+{
+        private static final int MAGIC = 0x45444643;
+        private static final int VERSION = 1;
+
+        private volatile Index index = new Index(Collections.<Path, EDFCatalogEntry>emptyMap());
+
+        /**
+         * Scan a directory tree for files with the extension .edf. The entries of
+         * the catalog are replaced by the files found, the headers of unchanged
+         * files are not read again.
+         *
+         * @param root
+         *            the root of the directory tree
+         * @param parallelism
+         *            the number of headers which are read concurrently
+         * @return the files which could not be read with the cause
+         * @throws IOException
+         *             if the directory tree can not be walked
+         */
+        public Map<Path, Exception> scan(Path root, int parallelism) throws IOException
+        {
+                final Map<Path, EDFCatalogEntry> previous = index.entries;
+                final Map<Path, EDFCatalogEntry> entries = new LinkedHashMap<>();
+                final Map<Path, Future<EDFCatalogEntry>> futures = new LinkedHashMap<>();
+                final Map<Path, Exception> failures = new LinkedHashMap<>();
+                final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+                try
+                {
+                        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+                        {
+                                @Override
+                                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+                                {
+                                        if (!attributes.isRegularFile()
+                                            || !file.getFileName().toString().toLowerCase().endsWith(".edf"))
+                                                return FileVisitResult.CONTINUE;
+
+                                        final long lastModified = attributes.lastModifiedTime().toMillis();
+                                        EDFCatalogEntry entry = previous.get(file);
+                                        if (entry != null && entry.isUpToDate(attributes.size(), lastModified))
+                                                entries.put(file, entry);
+                                        else
+                                                futures.put(file, executor.submit(
+                                                        () -> readEntry(file, attributes.size(), lastModified)));
+                                        return FileVisitResult.CONTINUE;
+                                }
+
+                                @Override
+                                public FileVisitResult visitFileFailed(Path file, IOException e)
+                                {
+                                        failures.put(file, e);
+                                        return FileVisitResult.CONTINUE;
+                                }
+                        });
+
+                        for (Map.Entry<Path, Future<EDFCatalogEntry>> future : futures.entrySet())
+                        {
+                                try
+                                {
+                                        entries.put(future.getKey(), future.getValue().get());
+                                } catch (ExecutionException e)
+                                {
+                                        failures.put(future.getKey(), (Exception) e.getCause());
+                                } catch (InterruptedException e)
+                                {
+                                        Thread.currentThread().interrupt();
+                                        throw new IOException(e);
+                                }
+                        }
+                } finally
+                {
+                        executor.shutdownNow();
+                }
+
+                index = new Index(entries);
+                return failures;
+        }
+
+        private static EDFCatalogEntry readEntry(Path file, long size, long lastModified) throws IOException
+        {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+                {
+                        return new EDFCatalogEntry(file, size, lastModified, ParseUtils.readHeaderBytes(ch));
+                }
+        }
+
+        /**
+         * Save the catalog into a file.
+         *
+         * @param file
+         *            the file to write the catalog to, it is replaced atomically
+         * @throws IOException
+         *             if the file can not be written
+         */
+        public void save(Path file) throws IOException
+        {
+                Collection<EDFCatalogEntry> entries = index.entries.values();
+                Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary))))
+                {
+                        out.writeInt(MAGIC);
+                        out.writeInt(VERSION);
+                        out.writeInt(entries.size());
+                        for (EDFCatalogEntry entry : entries)
+                        {
+                                out.writeUTF(entry.getPath().toString());
+                                out.writeLong(entry.getSize());
+                                out.writeLong(entry.getLastModified());
+                                out.writeInt(entry.getHeaderBytes().length);
+                                out.write(entry.getHeaderBytes());
+                        }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Load a catalog which was saved with {@link #save(Path)}.
+         *
+         * @param file
+         *            the file to read the catalog from
+         * @return the catalog
+         * @throws IOException
+         *             if the file can not be read or is not a catalog
+         */
+        public static EDFCatalog load(Path file) throws IOException
+        {
+                Map<Path, EDFCatalogEntry> entries = new LinkedHashMap<>();
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+                {
+                        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                                throw new IOException(file + " is not an EDF catalog.");
+                        int size = in.readInt();
+                        for (int i = 0; i < size; i++)
+                        {
+                                Path path = Paths.get(in.readUTF());
+                                long fileSize = in.readLong();
+                                long lastModified = in.readLong();
+                                byte[] headerBytes = new byte[in.readInt()];
+                                in.readFully(headerBytes);
+                                entries.put(path, new EDFCatalogEntry(path, fileSize, lastModified, headerBytes));
+                        }
+                }
+                EDFCatalog catalog = new EDFCatalog();
+                catalog.index = new Index(entries);
+                return catalog;
+        }
+
+        public int size()
+        {
+                return index.entries.size();
+        }
+
+        /**
+         * @return the entry of the file or null if the file is not in the catalog
+         */
+        public EDFCatalogEntry get(Path path)
+        {
+                return index.entries.get(path);
+        }
+
+        public Collection<EDFCatalogEntry> getEntries()
+        {
+                return Collections.unmodifiableCollection(index.entries.values());
+        }
+
+        /**
+         * @return the entries of the files with a channel with the label, leading and trailing spaces are ignored
+         */
+        public List<EDFCatalogEntry> findByChannel(String label)
+        {
+                List<EDFCatalogEntry> entries = index.byLabel.get(label.trim());
+                return entries != null ? Collections.unmodifiableList(entries)
+                                       : Collections.<EDFCatalogEntry>emptyList();
+        }
+
+        /**
+         * @return the entries of the files with a duration in seconds between the minimum and maximum (inclusive)
+         */
+        public List<EDFCatalogEntry> findByDuration(double minimum, double maximum)
+        {
+                return flatten(index.byDuration.subMap(minimum, true, maximum, true));
+        }
+
+        /**
+         * @return the entries of the files with a start of the recording from (inclusive) to (exclusive)
+         */
+        public List<EDFCatalogEntry> findByStartOfRecording(LocalDateTime from, LocalDateTime to)
+        {
+                return flatten(index.byStartOfRecording.subMap(from, true, to, false));
+        }
+
+        public List<EDFCatalogEntry> find(Predicate<EDFCatalogEntry> predicate)
+        {
+                List<EDFCatalogEntry> result = new ArrayList<>();
+                for (EDFCatalogEntry entry : index.entries.values())
+                        if (predicate.test(entry))
+                                result.add(entry);
+                return result;
+        }
+
+        private static List<EDFCatalogEntry> flatten(Map<?, List<EDFCatalogEntry>> map)
+        {
+                List<EDFCatalogEntry> result = new ArrayList<>();
+                for (List<EDFCatalogEntry> entries : map.values())
+                        result.addAll(entries);
+                return result;
+        }
+
+        private static final class Index
+        {
+                final Map<Path, EDFCatalogEntry> entries;
+                final Map<String, List<EDFCatalogEntry>> byLabel = new HashMap<>();
+                final NavigableMap<Double, List<EDFCatalogEntry>> byDuration = new TreeMap<>();
+                final NavigableMap<LocalDateTime, List<EDFCatalogEntry>> byStartOfRecording = new TreeMap<>();
+
+                Index(Map<Path, EDFCatalogEntry> entries)
+                {
+                        this.entries = Collections.unmodifiableMap(entries);
+                        for (EDFCatalogEntry entry : entries.values())
+                        {
+                                // a label may occur more than once in a file
+                                Set<String> labels = new HashSet<>();
+                                for (String label : entry.getHeader().channelLabels)
+                                        if (labels.add(label.trim()))
+                                                add(byLabel, label.trim(), entry);
+                                add(byDuration, entry.getDuration(), entry);
+                                if (entry.getStartOfRecording() != null)
+                                        add(byStartOfRecording, entry.getStartOfRecording(), entry);
+                        }
+                }
+
+                private static <K> void add(Map<K, List<EDFCatalogEntry>> map, K key, EDFCatalogEntry entry)
+                {
+                        List<EDFCatalogEntry> list = map.get(key);
+                        if (list == null)
+                        {
+                                list = new ArrayList<>();
+                                map.put(key, list);
+                        }
+                        list.add(entry);
+                }
+        }
+}
@@ -0,0 +1,121 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * This class represents the header of one EDF-File in an {@link EDFCatalog}
+ * together with the size and the modification time of the file.
+ */
+public class EDFCatalogEntry
+{
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+        private final byte[] headerBytes;
+        private final EDFHeader header;
+        private final LocalDateTime startOfRecording;
+
+        EDFCatalogEntry(Path path, long size, long lastModified, byte[] headerBytes) throws EDFParserException
+        {
+                this.path = path;
+                this.size = size;
+                this.lastModified = lastModified;
+                this.headerBytes = headerBytes;
+                header = EDFParser.parseHeader(new ByteArrayInputStream(headerBytes)).getHeader();
+                header.numberOfRecords = ParseUtils.numberOfRecords(header, size);
+
+                LocalDateTime start;
+                try
+                {
+                        long millis = ParseUtils.parseStartOfRecording(header);
+                        start = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), 0, ZoneOffset.UTC);
+                } catch (EDFParserException e)
+                {
+                        start = null;
+                }
+                startOfRecording = start;
+        }
+
+        public Path getPath()
+        {
+                return path;
+        }
+
+        public long getSize()
+        {
+                return size;
+        }
+
+        /**
+         * @return the modification time of the file in milliseconds since the epoch
+         */
+        public long getLastModified()
+        {
+                return lastModified;
+        }
+
+        /**
+         * @return the header of the file, the number of data records is resolved from the size of the file if
+         *         it is -1
+         */
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        /**
+         * @return the start of the recording or null if the header contains no valid start date and time
+         */
+        public LocalDateTime getStartOfRecording()
+        {
+                return startOfRecording;
+        }
+
+        /**
+         * @return the duration of the recording in seconds
+         */
+        public double getDuration()
+        {
+                return header.numberOfRecords * header.durationOfRecords;
+        }
+
+        byte[] getHeaderBytes()
+        {
+                return headerBytes;
+        }
+
+        boolean isUpToDate(long size, long lastModified)
+        {
+                return this.size == size && this.lastModified == lastModified;
+        }
+
+        @Override
+        public String toString()
+        {
+                return "CatalogEntry [path=" + path + ", size=" + size + ", startOfRecording=" + startOfRecording
+                       + ", duration=" + getDuration() + "]";
+        }
+}
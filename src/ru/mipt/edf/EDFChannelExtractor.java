@@ -0,0 +1,187 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.mipt.edf.EDFConstants.*;
+
+/**
+ * This class is capable of writing a reduced EDF or EDF+ file which contains
+ * only some channels of a source file. The header fields and the samples of
+ * the selected channels are sliced out of the source bytes, no sample is
+ * decoded.
+ *
+ * The "EDF Annotations" channels of an EDF+ file are always kept, because they
+ * contain the time-keeping of the data records.
+ */
+public class EDFChannelExtractor
+{
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        /**
+         * Write the channels with the given labels of the source file into the target file.
+         *
+         * @param source    the path to the source EDF-File
+         * @param target    the path to the EDF-File to create
+         * @param labels    the labels of the channels to keep, in the order of the target file
+         * @throws IOException if the files can not be read or written
+         */
+        public static void extract(Path source, Path target, String... labels) throws IOException
+        {
+                try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ))
+                {
+                        EDFHeader header = EDFParser.parseHeader(src).getHeader();
+                        int[] channels = new int[labels.length];
+                        for (int i = 0; i < labels.length; i++)
+                                channels[i] = indexOf(header, labels[i]);
+                        extract(src, header, target, channels);
+                }
+        }
+
+        /**
+         * Write the channels with the given indices of the source file into the target file.
+         *
+         * @param source    the path to the source EDF-File
+         * @param target    the path to the EDF-File to create
+         * @param channels  the indices of the channels to keep, in the order of the target file
+         * @throws IOException if the files can not be read or written
+         */
+        public static void extract(Path source, Path target, int... channels) throws IOException
+        {
+                try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ))
+                {
+                        extract(src, EDFParser.parseHeader(src).getHeader(), target, channels);
+                }
+        }
+
+        private static void extract(FileChannel src, EDFHeader header, Path target, int[] selected) throws IOException
+        {
+                int[] channels = withAnnotationChannels(header, selected);
+                int numberOfRecords = ParseUtils.numberOfRecords(header, src.size());
+
+                int[] sampleOffsets = new int[header.numberOfChannels];
+                for (int i = 1; i < header.numberOfChannels; i++)
+                        sampleOffsets[i] = sampleOffsets[i - 1] + header.numberOfSamples[i - 1];
+                int targetBytesPerRecord = 0;
+                for (int channel : channels)
+                        targetBytesPerRecord += header.numberOfSamples[channel] * 2;
+
+                try (FileChannel dst = FileChannel.open(target, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+                {
+                        int bytesInHeader = writeHeader(src, header, channels, dst);
+                        EDFWriter.writeField(dst, NUMBER_OF_DATA_RECORDS_OFFSET, NUMBER_OF_DATA_RECORDS_SIZE,
+                                             String.valueOf(numberOfRecords));
+
+                        int bytesPerRecord = header.getBytesPerRecord();
+                        int recordsPerBuffer = Math.max(1, BUFFER_SIZE / bytesPerRecord);
+                        ByteBuffer in = ByteBuffer.allocate(recordsPerBuffer * bytesPerRecord);
+                        ByteBuffer out = ByteBuffer.allocate(recordsPerBuffer * targetBytesPerRecord);
+                        long position = bytesInHeader;
+                        for (int first = 0; first < numberOfRecords; first += recordsPerBuffer)
+                        {
+                                int records = Math.min(recordsPerBuffer, numberOfRecords - first);
+                                in.clear().limit(records * bytesPerRecord);
+                                ParseUtils.readFully(src, in, header.bytesInHeader + (long) first * bytesPerRecord);
+
+                                int outIndex = 0;
+                                for (int i = 0; i < records; i++)
+                                        for (int channel : channels)
+                                        {
+                                                int length = header.numberOfSamples[channel] * 2;
+                                                System.arraycopy(in.array(), i * bytesPerRecord
+                                                                             + sampleOffsets[channel] * 2,
+                                                                 out.array(), outIndex, length);
+                                                outIndex += length;
+                                        }
+                                out.clear().limit(outIndex);
+                                EDFWriter.writeFully(dst, out, position);
+                                position += outIndex;
+                        }
+                }
+        }
+
+        private static int writeHeader(FileChannel src, EDFHeader header, int[] channels, FileChannel dst)
+                throws IOException
+        {
+                byte[] in = ParseUtils.readHeaderBytes(src);
+
+                int bytesInHeader = HEADER_SIZE_RECORDING_INFO + channels.length * HEADER_SIZE_PER_CHANNEL;
+                ByteBuffer out = ByteBuffer.allocate(bytesInHeader);
+                out.put(in, 0, HEADER_SIZE_RECORDING_INFO);
+                int fieldOffset = HEADER_SIZE_RECORDING_INFO;
+                for (int size : CHANNEL_FIELD_SIZES)
+                {
+                        for (int channel : channels)
+                                out.put(in, fieldOffset + channel * size, size);
+                        fieldOffset += header.numberOfChannels * size;
+                }
+                out.flip();
+                EDFWriter.writeFully(dst, out, 0);
+
+                EDFWriter.writeField(dst, HEADER_SIZE_OFFSET, HEADER_SIZE, String.valueOf(bytesInHeader));
+                EDFWriter.writeField(dst, NUMBER_OF_CHANELS_OFFSET, NUMBER_OF_CHANELS_SIZE,
+                                     String.valueOf(channels.length));
+                return bytesInHeader;
+        }
+
+        private static int[] withAnnotationChannels(EDFHeader header, int[] selected)
+        {
+                List<Integer> channels = new ArrayList<>();
+                for (int channel : selected)
+                {
+                        if (channel < 0 || channel >= header.numberOfChannels)
+                                throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+                        channels.add(channel);
+                }
+                if (header.formatVersion.startsWith("EDF+"))
+                {
+                        for (int i = 0; i < header.numberOfChannels; i++)
+                                if (isAnnotationChannel(header, i) && !channels.contains(i))
+                                        channels.add(i);
+                }
+
+                int[] result = new int[channels.size()];
+                for (int i = 0; i < result.length; i++)
+                        result[i] = channels.get(i);
+                return result;
+        }
+
+        static boolean isAnnotationChannel(EDFHeader header, int channel)
+        {
+                return "EDF Annotations".equals(header.channelLabels[channel].trim());
+        }
+
+        static int indexOf(EDFHeader header, String label)
+        {
+                int channel = header.indexOfChannel(label);
+                if (channel < 0)
+                        throw new IllegalArgumentException("Channel " + label + " does not exist.");
+                return channel;
+        }
+}
@@ -0,0 +1,270 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads EDFZ files written by {@link EDFCompressedWriter}. Reading
+ * samples only reads and decompresses the blocks of data records which cover
+ * them, and of these blocks only the requested channel.
+ *
+ * The reader only uses positional reads and can be shared by concurrent
+ * threads.
+ */
+public class EDFCompressedReader implements EDFSampleSource, Closeable
+{
+        private final FileChannel channel;
+        private final EDFHeader header;
+        private final byte[] headerBytes;
+        private final long tailOffset;
+        private final int tailLength;
+        private final long[] blockOffsets;
+        private final int numberOfRecords;
+        private final int recordsPerBlock;
+        private final int bytesPerRecord;
+        private final double[] unitsInDigit;
+
+        /**
+         * Open an EDFZ file for reading.
+         *
+         * @param path
+         *            the path to the EDFZ file
+         * @throws IOException
+         *             if the file can not be opened or is not an EDFZ file
+         */
+        public EDFCompressedReader(Path path) throws IOException
+        {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                try
+                {
+                        long size = channel.size();
+                        if (size < 8 + EDFCompressedWriter.TRAILER_SIZE)
+                                throw new EDFParserException("File is too short for an EDFZ file.", null);
+                        ByteBuffer trailer = ByteBuffer.allocate(EDFCompressedWriter.TRAILER_SIZE);
+                        ParseUtils.readFully(channel, trailer, size - EDFCompressedWriter.TRAILER_SIZE);
+                        trailer.flip();
+                        long headerOffset = trailer.getLong();
+                        int headerLength = trailer.getInt();
+                        tailOffset = trailer.getLong();
+                        tailLength = trailer.getInt();
+                        long indexOffset = trailer.getLong();
+                        int numberOfBlocks = trailer.getInt();
+                        numberOfRecords = trailer.getInt();
+                        recordsPerBlock = trailer.getInt();
+                        if (trailer.getInt() != EDFCompressedWriter.MAGIC)
+                                throw new EDFParserException("File is not an EDFZ file.", null);
+
+                        headerBytes = new byte[headerLength];
+                        ParseUtils.readFully(channel, ByteBuffer.wrap(headerBytes), headerOffset);
+                        header = EDFParser.parseHeader(new ByteArrayInputStream(headerBytes), path.toString())
+                                .getHeader();
+
+                        // the end of the last block is the start of the header
+                        ByteBuffer index = ByteBuffer.allocate(numberOfBlocks * 8);
+                        ParseUtils.readFully(channel, index, indexOffset);
+                        index.flip();
+                        blockOffsets = new long[numberOfBlocks + 1];
+                        for (int i = 0; i < numberOfBlocks; i++)
+                                blockOffsets[i] = index.getLong();
+                        blockOffsets[numberOfBlocks] = headerOffset;
+                } catch (IOException e)
+                {
+                        channel.close();
+                        throw e;
+                }
+                bytesPerRecord = header.getBytesPerRecord();
+
+                // the same scaling as EDFSignal.getUnitsInDigit()
+                unitsInDigit = new double[header.numberOfChannels];
+                for (int i = 0; i < unitsInDigit.length; i++)
+                        unitsInDigit[i] = (header.maxInUnits[i] - header.minInUnits[i])
+                                          / (header.digitalMax[i] - header.digitalMin[i]);
+        }
+
+        @Override
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        public int getNumberOfRecords()
+        {
+                return numberOfRecords;
+        }
+
+        @Override
+        public long getNumberOfSamples(int channel)
+        {
+                return (long) numberOfRecords * header.numberOfSamples[channel];
+        }
+
+        @Override
+        public double getUnitsInDigit(int channel)
+        {
+                return unitsInDigit[channel];
+        }
+
+        /**
+         * @param label the label of the channel
+         * @return the index of the channel
+         * @throws IllegalArgumentException if there is no channel with the label
+         */
+        public int getChannel(String label)
+        {
+                return EDFChannelExtractor.indexOf(header, label);
+        }
+
+        /**
+         * Read the digital values of all channels in the given range of data records.
+         *
+         * @param firstRecord       the index of the first data record
+         * @param numberOfRecords   the number of data records
+         * @return the digital values per channel
+         * @throws IOException      if the file can not be read
+         */
+        public short[][] readDigitalRecords(int firstRecord, int numberOfRecords) throws IOException
+        {
+                if (firstRecord < 0 || numberOfRecords < 0 || firstRecord + (long) numberOfRecords > this.numberOfRecords)
+                        throw new IndexOutOfBoundsException("Records " + firstRecord + " to "
+                                                            + (firstRecord + numberOfRecords) + " do not exist.");
+                short[][] values = new short[header.numberOfChannels][];
+                for (int i = 0; i < values.length; i++)
+                        values[i] = new short[numberOfRecords * header.numberOfSamples[i]];
+                for (int record = firstRecord; record < firstRecord + numberOfRecords; )
+                {
+                        int block = record / recordsPerBlock;
+                        int skip = record - block * recordsPerBlock;
+                        int n = Math.min(recordsInBlock(block) - skip, firstRecord + numberOfRecords - record);
+                        ByteBuffer records = readBlock(block, -1);
+                        for (int i = 0; i < values.length; i++)
+                        {
+                                int nos = header.numberOfSamples[i];
+                                copy(records, i, skip * nos, values[i], (record - firstRecord) * nos, n * nos);
+                        }
+                        record += n;
+                }
+                return values;
+        }
+
+        @Override
+        public short[] readDigitalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+        {
+                if (channel < 0 || channel >= header.numberOfChannels)
+                        throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+                if (firstSample < 0 || numberOfSamples < 0 || firstSample + numberOfSamples > getNumberOfSamples(channel))
+                        throw new IndexOutOfBoundsException("Samples " + firstSample + " to "
+                                                            + (firstSample + numberOfSamples) + " of channel "
+                                                            + channel + " do not exist.");
+                short[] values = new short[numberOfSamples];
+                long samplesPerBlock = (long) recordsPerBlock * header.numberOfSamples[channel];
+                for (int i = 0; i < numberOfSamples; )
+                {
+                        long sample = firstSample + i;
+                        int block = (int) (sample / samplesPerBlock);
+                        int skip = (int) (sample - block * samplesPerBlock);
+                        int n = Math.min(recordsInBlock(block) * header.numberOfSamples[channel] - skip,
+                                         numberOfSamples - i);
+                        copy(readBlock(block, channel), channel, skip, values, i, n);
+                        i += n;
+                }
+                return values;
+        }
+
+        /**
+         * Restore the EDF-File an EDFZ file was compressed from.
+         *
+         * @param source    the EDFZ file
+         * @param target    the EDF-File
+         * @throws IOException if a file can not be read or written
+         */
+        public static void decompress(Path source, Path target) throws IOException
+        {
+                try (EDFCompressedReader reader = new EDFCompressedReader(source);
+                     FileChannel dst = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING))
+                {
+                        long position = 0;
+                        EDFWriter.writeFully(dst, ByteBuffer.wrap(reader.headerBytes), position);
+                        position += reader.headerBytes.length;
+                        for (int block = 0; block < reader.blockOffsets.length - 1; block++)
+                        {
+                                ByteBuffer records = reader.readBlock(block, -1);
+                                records.limit(reader.recordsInBlock(block) * reader.bytesPerRecord);
+                                EDFWriter.writeFully(dst, records, position);
+                                position += (long) reader.recordsInBlock(block) * reader.bytesPerRecord;
+                        }
+                        ByteBuffer tail = ByteBuffer.allocate(reader.tailLength);
+                        ParseUtils.readFully(reader.channel, tail, reader.tailOffset);
+                        tail.flip();
+                        EDFWriter.writeFully(dst, tail, position);
+                }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+                channel.close();
+        }
+
+        private int recordsInBlock(int block)
+        {
+                return Math.min(recordsPerBlock, numberOfRecords - block * recordsPerBlock);
+        }
+
+        /**
+         * @return the raw data records of the block in little endian order, of
+         *         which only the channel is decoded unless channel is -1
+         */
+        private ByteBuffer readBlock(int block, int channel) throws IOException
+        {
+                ByteBuffer in = ByteBuffer.allocate((int) (blockOffsets[block + 1] - blockOffsets[block]));
+                ParseUtils.readFully(this.channel, in, blockOffsets[block]);
+                in.flip();
+                int records = recordsInBlock(block);
+                ByteBuffer out = ByteBuffer.allocate(records * bytesPerRecord).order(ByteOrder.LITTLE_ENDIAN);
+                EDFBlockCodec.decode(header, in, records, out, channel);
+                return out;
+        }
+
+        private void copy(ByteBuffer records, int channel, int skip, short[] values, int offset, int length)
+        {
+                int nos = header.numberOfSamples[channel];
+                int sampleOffset = 0;
+                for (int i = 0; i < channel; i++)
+                        sampleOffset += header.numberOfSamples[i];
+                int record = skip / nos;
+                int sample = skip % nos;
+                for (int i = 0; i < length; record++, sample = 0)
+                {
+                        int position = record * bytesPerRecord + (sampleOffset + sample) * 2;
+                        for (; sample < nos && i < length; sample++, i++, position += 2)
+                                values[offset + i] = records.getShort(position);
+                }
+        }
+}
@@ -0,0 +1,294 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static ru.mipt.edf.EDFConstants.*;
+
+/**
+ * This class writes EDFZ files, a lossless block compressed container for EDF
+ * and EDF+ files which keeps random access. The data records are compressed
+ * while they are appended in blocks of a fixed number of data records with
+ * {@link EDFBlockCodec}. EDFZ files are read with {@link EDFCompressedReader}.
+ *
+ * The layout of an EDFZ file is
+ * <ul>
+ * <li>the magic number "EDFZ" and the version</li>
+ * <li>the compressed blocks</li>
+ * <li>the bytes of the EDF header</li>
+ * <li>the bytes after the last complete data record of the EDF-File</li>
+ * <li>the index with the offset of every block</li>
+ * <li>a trailer with the offsets and lengths of the sections, the number of
+ * data records, the data records per block and the magic number</li>
+ * </ul>
+ */
+public class EDFCompressedWriter implements Closeable
+{
+        static final int MAGIC = 0x4544465A;
+        static final int VERSION = 1;
+        static final int TRAILER_SIZE = 48;
+
+        private final Path path;
+        private final FileChannel channel;
+        private final EDFHeader header;
+        private final byte[] headerBytes;
+        private final int recordsPerBlock;
+        private final int samplesPerRecord;
+        private final int bytesPerRecord;
+        private final ByteBuffer block;
+        private final ByteBuffer encoded;
+        private long[] blockOffsets = new long[16];
+        private int numberOfBlocks;
+        private long position;
+        private int numberOfRecords;
+        private byte[] tail = new byte[0];
+        private boolean closed;
+
+        /**
+         * Create an EDFZ file. The number of data records in the header is
+         * replaced by the number of appended data records when the file is closed.
+         *
+         * @param path              the path of the EDFZ file
+         * @param header            the header of the recording
+         * @param recordsPerBlock   the number of data records per compressed block
+         * @throws IOException      if the file can not be created
+         */
+        public EDFCompressedWriter(Path path, EDFHeader header, int recordsPerBlock) throws IOException
+        {
+                this(path, header, null, recordsPerBlock);
+        }
+
+        private EDFCompressedWriter(Path path, EDFHeader header, byte[] headerBytes, int recordsPerBlock)
+                throws IOException
+        {
+                if (recordsPerBlock <= 0)
+                        throw new IllegalArgumentException("The number of records per block has to be positive.");
+                this.path = path;
+                this.header = header;
+                this.headerBytes = headerBytes;
+                this.recordsPerBlock = recordsPerBlock;
+                samplesPerRecord = header.getSamplesPerRecord();
+                bytesPerRecord = header.getBytesPerRecord();
+                block = ByteBuffer.allocate(recordsPerBlock * bytesPerRecord).order(ByteOrder.LITTLE_ENDIAN);
+                encoded = ByteBuffer.allocate(EDFBlockCodec.maxEncodedSize(header, recordsPerBlock));
+
+                channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                           StandardOpenOption.TRUNCATE_EXISTING);
+                ByteBuffer preamble = ByteBuffer.allocate(8);
+                preamble.putInt(MAGIC).putInt(VERSION).flip();
+                try
+                {
+                        write(preamble);
+                } catch (IOException | RuntimeException e)
+                {
+                        abort(e);
+                        throw e;
+                }
+        }
+
+        public int getNumberOfRecords()
+        {
+                return numberOfRecords;
+        }
+
+        /**
+         * Append data records in the one dimension format produced by
+         * {@link EDFWriter#buildDataArray(short[][], EDFHeader)}.
+         *
+         * @param data          The samples of the data records grouped by time
+         * @throws IOException  Will be thrown if it is not possible to write into the file
+         */
+        public void appendRecords(short[] data) throws IOException
+        {
+                if (data.length % samplesPerRecord != 0)
+                        throw new IllegalArgumentException("Data length " + data.length
+                                                           + " is not a multiple of the record size "
+                                                           + samplesPerRecord + ".");
+                for (int i = 0; i < data.length; )
+                {
+                        int n = Math.min(data.length - i, block.remaining() / 2);
+                        block.asShortBuffer().put(data, i, n);
+                        block.position(block.position() + n * 2);
+                        i += n;
+                        if (!block.hasRemaining())
+                                flushBlock();
+                }
+        }
+
+        /**
+         * Append complete raw data records in little endian order.
+         */
+        void appendRawRecords(ByteBuffer records) throws IOException
+        {
+                while (records.hasRemaining())
+                {
+                        int n = Math.min(records.remaining(), block.remaining());
+                        ByteBuffer slice = records.duplicate();
+                        slice.limit(slice.position() + n);
+                        block.put(slice);
+                        records.position(records.position() + n);
+                        if (!block.hasRemaining())
+                                flushBlock();
+                }
+        }
+
+        /**
+         * Compress the remaining data records and write the header and the index.
+         */
+        @Override
+        public void close() throws IOException
+        {
+                if (closed)
+                        return;
+                closed = true;
+                try
+                {
+                        if (block.position() > 0)
+                                flushBlock();
+
+                        byte[] bytes = headerBytes;
+                        if (bytes == null)
+                        {
+                                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                                EDFWriter.writeIntoOutputStream(header, out);
+                                bytes = out.toByteArray();
+                                byte[] field = String.format("%-" + NUMBER_OF_DATA_RECORDS_SIZE + "s", numberOfRecords)
+                                        .getBytes(CHARSET);
+                                System.arraycopy(field, 0, bytes, NUMBER_OF_DATA_RECORDS_OFFSET, field.length);
+                        }
+                        long headerOffset = position;
+                        write(ByteBuffer.wrap(bytes));
+                        long tailOffset = position;
+                        write(ByteBuffer.wrap(tail));
+
+                        long indexOffset = position;
+                        ByteBuffer index = ByteBuffer.allocate(numberOfBlocks * 8 + TRAILER_SIZE);
+                        for (int i = 0; i < numberOfBlocks; i++)
+                                index.putLong(blockOffsets[i]);
+                        index.putLong(headerOffset).putInt(bytes.length).putLong(tailOffset).putInt(tail.length)
+                                .putLong(indexOffset).putInt(numberOfBlocks).putInt(numberOfRecords)
+                                .putInt(recordsPerBlock).putInt(MAGIC).flip();
+                        write(index);
+                } finally
+                {
+                        channel.close();
+                }
+        }
+
+        /**
+         * Compress an EDF-File into an EDFZ file. The EDF-File is restored byte
+         * by byte by {@link EDFCompressedReader#decompress(Path, Path)}.
+         *
+         * @param source            the EDF-File
+         * @param target            the EDFZ file
+         * @param recordsPerBlock   the number of data records per compressed block
+         * @throws IOException      if a file can not be read or written or the header is not valid, the
+         *                          target is deleted then
+         */
+        public static void compress(Path source, Path target, int recordsPerBlock) throws IOException
+        {
+                try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ))
+                {
+                        EDFHeader header = EDFParser.parseHeader(src, source.toString()).getHeader();
+                        int bytesPerRecord = header.getBytesPerRecord();
+                        long size = src.size();
+                        int records = (int) Math.min(ParseUtils.numberOfRecords(header, size),
+                                                     Math.max(0, (size - header.bytesInHeader) / bytesPerRecord));
+
+                        ByteBuffer headerBytes = ByteBuffer.allocate((int) Math.min(header.bytesInHeader, size));
+                        ParseUtils.readFully(src, headerBytes, 0);
+                        EDFCompressedWriter writer = new EDFCompressedWriter(target, header, headerBytes.array(),
+                                                                             recordsPerBlock);
+                        try
+                        {
+                                ByteBuffer buffer = ByteBuffer.allocate(recordsPerBlock * bytesPerRecord);
+                                for (int first = 0; first < records; first += recordsPerBlock)
+                                {
+                                        int n = Math.min(recordsPerBlock, records - first);
+                                        buffer.clear().limit(n * bytesPerRecord);
+                                        ParseUtils.readFully(src, buffer,
+                                                             header.bytesInHeader + (long) first * bytesPerRecord);
+                                        buffer.flip();
+                                        writer.appendRawRecords(buffer);
+                                }
+
+                                long tailOffset = header.bytesInHeader + (long) records * bytesPerRecord;
+                                ByteBuffer tail = ByteBuffer.allocate((int) Math.max(0, size - tailOffset));
+                                ParseUtils.readFully(src, tail, tailOffset);
+                                writer.tail = tail.array();
+                                writer.close();
+                        } catch (Throwable e)
+                        {
+                                // a finalized EDFZ file would look valid with only a part of the data records
+                                writer.abort(e);
+                                throw e;
+                        }
+                }
+        }
+
+        /**
+         * Close the file without writing the header and the index and delete it.
+         */
+        private void abort(Throwable cause)
+        {
+                closed = true;
+                try
+                {
+                        channel.close();
+                        Files.deleteIfExists(path);
+                } catch (IOException e)
+                {
+                        cause.addSuppressed(e);
+                }
+        }
+
+        private void flushBlock() throws IOException
+        {
+                int records = block.position() / bytesPerRecord;
+                encoded.clear();
+                EDFBlockCodec.encode(header, block, records, encoded);
+                encoded.flip();
+
+                if (numberOfBlocks == blockOffsets.length)
+                        blockOffsets = Arrays.copyOf(blockOffsets, numberOfBlocks * 2);
+                blockOffsets[numberOfBlocks++] = position;
+                write(encoded);
+                numberOfRecords += records;
+                block.clear();
+        }
+
+        private void write(ByteBuffer buffer) throws IOException
+        {
+                int length = buffer.remaining();
+                EDFWriter.writeFully(channel, buffer, position);
+                position += length;
+        }
+}
@@ -64,4 +64,19 @@ class EDFConstants
                 = LABEL_OF_CHANNEL_SIZE + TRANSDUCER_TYPE_SIZE + PHYSICAL_DIMENSION_OF_CHANNEL_SIZE
                   + PHYSICAL_MIN_IN_UNITS_SIZE + PHYSICAL_MAX_IN_UNITS_SIZE + DIGITAL_MIN_SIZE + DIGITAL_MAX_SIZE
                   + PREFILTERING_SIZE + NUMBER_OF_SAMPLES_SIZE + RESERVED_SIZE;
+
+        /** The offsets of the fixed-width fields from the start of the EDF-Header-Record */
+        static final int LOCAL_SUBJECT_IDENTIFICATION_OFFSET = IDENTIFICATION_CODE_SIZE;
+        static final int LOCAL_RECORDING_IDENTIFICATION_OFFSET
+                = LOCAL_SUBJECT_IDENTIFICATION_OFFSET + LOCAL_SUBJECT_IDENTIFICATION_SIZE;
+        static final int START_DATE_OFFSET = LOCAL_RECORDING_IDENTIFICATION_OFFSET + LOCAL_REOCRDING_IDENTIFICATION_SIZE;
+        static final int START_TIME_OFFSET = START_DATE_OFFSET + START_DATE_SIZE;
+        static final int HEADER_SIZE_OFFSET = START_TIME_OFFSET + START_TIME_SIZE;
+        static final int NUMBER_OF_DATA_RECORDS_OFFSET = HEADER_SIZE_OFFSET + HEADER_SIZE + DATA_FORMAT_VERSION_SIZE;
+        static final int NUMBER_OF_CHANELS_OFFSET = HEADER_SIZE_RECORDING_INFO - NUMBER_OF_CHANELS_SIZE;
+
+        /** The sizes of the fields per channel in the order of the EDF-Header-Record */
+        static final int[] CHANNEL_FIELD_SIZES = { LABEL_OF_CHANNEL_SIZE, TRANSDUCER_TYPE_SIZE,
+                PHYSICAL_DIMENSION_OF_CHANNEL_SIZE, PHYSICAL_MIN_IN_UNITS_SIZE, PHYSICAL_MAX_IN_UNITS_SIZE,
+                DIGITAL_MIN_SIZE, DIGITAL_MAX_SIZE, PREFILTERING_SIZE, NUMBER_OF_SAMPLES_SIZE, RESERVED_SIZE };
 }
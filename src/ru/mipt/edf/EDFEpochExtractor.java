@@ -0,0 +1,351 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * This class cuts windows of fixed length around the onsets of annotations,
+ * for example from -0.2 to 0.8 seconds around every stimulus. The windows are
+ * sorted, the data records they need are read in runs of consecutive data
+ * records, each data record at most once even when windows overlap, and only
+ * the selected channels are decoded. The epochs are stored in one contiguous
+ * array.
+ *
+ * <pre>
+ * EDFEpochExtractor.Epochs epochs = new EDFEpochExtractor(reader).window(-0.2, 0.8).filter("Stimulus")
+ *                 .average(true).extract();
+ * double[] evoked = epochs.getAverage();
+ * </pre>
+ */
+public class EDFEpochExtractor
+{
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        /**
+         * The extracted epochs in the order of their onsets.
+         */
+        public static final class Epochs
+        {
+                private final int[] channels;
+                private final int numberOfSamples;
+                private final double samplingRate;
+                private final double start;
+                private final double[] onsets;
+                private final double[] values;
+                private final double[] average;
+                private final int skipped;
+                private final long recordsRead;
+
+                Epochs(int[] channels, int numberOfSamples, double samplingRate, double start, double[] onsets,
+                       double[] values, double[] average, int skipped, long recordsRead)
+                {
+                        this.channels = channels;
+                        this.numberOfSamples = numberOfSamples;
+                        this.samplingRate = samplingRate;
+                        this.start = start;
+                        this.onsets = onsets;
+                        this.values = values;
+                        this.average = average;
+                        this.skipped = skipped;
+                        this.recordsRead = recordsRead;
+                }
+
+                public int getNumberOfEpochs()
+                {
+                        return onsets.length;
+                }
+
+                /**
+                 * @return the indices of the channels in the file
+                 */
+                public int[] getChannels()
+                {
+                        return channels.clone();
+                }
+
+                /**
+                 * @return the number of samples of a channel in an epoch
+                 */
+                public int getNumberOfSamples()
+                {
+                        return numberOfSamples;
+                }
+
+                public double getSamplingRate()
+                {
+                        return samplingRate;
+                }
+
+                /**
+                 * @return the time of the first sample of an epoch relative to the onset in seconds
+                 */
+                public double getStart()
+                {
+                        return start;
+                }
+
+                /**
+                 * @return the onsets of the epochs in seconds from the start of the recording
+                 */
+                public double[] getOnsets()
+                {
+                        return onsets.clone();
+                }
+
+                /**
+                 * @return the physical values indexed by epoch, then channel, then sample
+                 */
+                public double[] getValues()
+                {
+                        return values;
+                }
+
+                /**
+                 * @param epoch     the index of the epoch
+                 * @param channel   the position of the channel among the selected channels
+                 * @param sample    the index of the sample in the epoch
+                 */
+                public double getValue(int epoch, int channel, int sample)
+                {
+                        return values[(epoch * channels.length + channel) * numberOfSamples + sample];
+                }
+
+                /**
+                 * @return the mean over the epochs indexed by channel, then sample, or
+                 *         null if no average was computed
+                 */
+                public double[] getAverage()
+                {
+                        return average;
+                }
+
+                /**
+                 * @return the number of matching annotations whose windows are not completely in the recording
+                 */
+                public int getNumberOfSkippedEpochs()
+                {
+                        return skipped;
+                }
+
+                /**
+                 * @return the number of data records read from the file
+                 */
+                public long getNumberOfRecordsRead()
+                {
+                        return recordsRead;
+                }
+        }
+
+        private final EDFReader reader;
+        private double windowStart = -0.2;
+        private double windowEnd = 0.8;
+        private Predicate<EDFAnnotation> filter = annotation -> !annotation.getAnnotations().isEmpty();
+        private int[] channels;
+        private boolean average;
+
+        public EDFEpochExtractor(EDFReader reader)
+        {
+                this.reader = reader;
+        }
+
+        /**
+         * @param start the start of the window relative to the onset in seconds, -0.2 by default
+         * @param end   the end of the window relative to the onset in seconds, 0.8 by default
+         */
+        public EDFEpochExtractor window(double start, double end)
+        {
+                if (!(end > start))
+                        throw new IllegalArgumentException("The window ends at " + end + " s before it starts at "
+                                                           + start + " s.");
+                windowStart = start;
+                windowEnd = end;
+                return this;
+        }
+
+        /**
+         * @param val selects the annotations to cut windows around, by default
+         *            all annotations with a text
+         */
+        public EDFEpochExtractor filter(Predicate<EDFAnnotation> val)
+        {
+                assert val != null;
+                filter = val;
+                return this;
+        }
+
+        /**
+         * Select the annotations which have one of the texts.
+         */
+        public EDFEpochExtractor filter(String... texts)
+        {
+                List<String> list = Arrays.asList(texts);
+                return filter(annotation -> annotation.getAnnotations().stream().anyMatch(list::contains));
+        }
+
+        /**
+         * @param val the indices of the channels, which must have the same
+         *            sampling rate, by default all channels except annotation channels
+         */
+        public EDFEpochExtractor channels(int... val)
+        {
+                for (int channel : val)
+                        if (channel < 0 || channel >= reader.getHeader().numberOfChannels)
+                                throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+                channels = val.clone();
+                return this;
+        }
+
+        /**
+         * @param val if the mean over the epochs is computed, false by default
+         */
+        public EDFEpochExtractor average(boolean val)
+        {
+                average = val;
+                return this;
+        }
+
+        /**
+         * Extract the epochs around the annotations of the file.
+         */
+        public Epochs extract() throws IOException
+        {
+                return extract(reader.readAnnotations());
+        }
+
+        /**
+         * Extract the epochs around the given annotations.
+         */
+        public Epochs extract(List<EDFAnnotation> annotations) throws IOException
+        {
+                EDFHeader header = reader.getHeader();
+                int[] selected = channels != null ? channels
+                                                  : IntStream.range(0, header.numberOfChannels)
+                                                             .filter(i -> !EDFChannelExtractor.isAnnotationChannel(header, i))
+                                                             .toArray();
+                if (selected.length == 0)
+                        throw new IllegalArgumentException("No channels are selected.");
+                int nos = header.numberOfSamples[selected[0]];
+                for (int channel : selected)
+                        if (header.numberOfSamples[channel] != nos)
+                                throw new IllegalArgumentException("The channels " + Arrays.toString(selected)
+                                                                   + " have different sampling rates.");
+                double rate = header.getSamplingRate(selected[0]);
+                long offset = Math.round(windowStart * rate);
+                int length = (int) Math.max(1, Math.round(windowEnd * rate) - offset);
+                long totalSamples = reader.getNumberOfSamples(selected[0]);
+
+                // the first samples of the windows in the recording, in order
+                List<double[]> windows = new ArrayList<>();
+                int skipped = 0;
+                for (EDFAnnotation annotation : annotations)
+                {
+                        if (!filter.test(annotation))
+                                continue;
+                        long first = Math.round(annotation.getOnSet() * rate) + offset;
+                        if (first < 0 || first + length > totalSamples)
+                                skipped++;
+                        else
+                                windows.add(new double[] { first, annotation.getOnSet() });
+                }
+                windows.sort((a, b) -> Double.compare(a[0], b[0]));
+                int epochs = windows.size();
+                double[] onsets = new double[epochs];
+                long[] firstSamples = new long[epochs];
+                for (int e = 0; e < epochs; e++)
+                {
+                        firstSamples[e] = (long) windows.get(e)[0];
+                        onsets[e] = windows.get(e)[1];
+                }
+
+                double[] values = new double[Math.multiplyExact(epochs, Math.multiplyExact(selected.length, length))];
+                double[] unitsInDigit = new double[selected.length];
+                for (int c = 0; c < selected.length; c++)
+                        unitsInDigit[c] = reader.getUnitsInDigit(selected[c]);
+
+                int bytesPerRecord = header.getBytesPerRecord();
+                int recordsPerWindow = (length + nos - 1) / nos + 1;
+                int capacity = Math.max(recordsPerWindow, BUFFER_SIZE / bytesPerRecord);
+                byte[] buffer = new byte[capacity * bytesPerRecord];
+                ByteBuffer records = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+                short[] samples = new short[length];
+                double[] mean = average ? new double[selected.length * length] : null;
+                // the data records in the buffer
+                int bufferFirst = 0;
+                int bufferCount = 0;
+                long recordsRead = 0;
+                for (int e = 0; e < epochs; e++)
+                {
+                        int firstRecord = (int) (firstSamples[e] / nos);
+                        int lastRecord = (int) ((firstSamples[e] + length - 1) / nos);
+                        if (firstRecord < bufferFirst || lastRecord >= bufferFirst + bufferCount)
+                        {
+                                // the run ends with the last window which overlaps or touches the previous ones
+                                int runEnd = lastRecord;
+                                for (int next = e + 1; next < epochs; next++)
+                                {
+                                        int nextFirst = (int) (firstSamples[next] / nos);
+                                        int nextLast = (int) ((firstSamples[next] + length - 1) / nos);
+                                        if (nextFirst > runEnd + 1 || nextLast - firstRecord >= capacity)
+                                                break;
+                                        runEnd = Math.max(runEnd, nextLast);
+                                }
+                                // data records of the previous run which are needed again are kept
+                                int keep = 0;
+                                if (firstRecord >= bufferFirst && firstRecord < bufferFirst + bufferCount)
+                                {
+                                        keep = bufferFirst + bufferCount - firstRecord;
+                                        System.arraycopy(buffer, (firstRecord - bufferFirst) * bytesPerRecord, buffer, 0,
+                                                         keep * bytesPerRecord);
+                                }
+                                int count = runEnd - firstRecord + 1 - keep;
+                                ByteBuffer target = ByteBuffer.wrap(buffer, keep * bytesPerRecord,
+                                                                    count * bytesPerRecord).slice();
+                                reader.readRecords(firstRecord + keep, count, target);
+                                recordsRead += count;
+                                bufferFirst = firstRecord;
+                                bufferCount = keep + count;
+                        }
+                        int skip = (int) (firstSamples[e] - (long) bufferFirst * nos);
+                        for (int c = 0; c < selected.length; c++)
+                        {
+                                reader.decode(records, selected[c], skip, samples, 0, length);
+                                int position = (e * selected.length + c) * length;
+                                double factor = unitsInDigit[c];
+                                for (int i = 0; i < length; i++)
+                                        values[position + i] = samples[i] * factor;
+                                if (mean != null)
+                                        for (int i = 0; i < length; i++)
+                                                mean[c * length + i] += (values[position + i] - mean[c * length + i])
+                                                                        / (e + 1);
+                        }
+                }
+                return new Epochs(selected.clone(), length, rate, offset / rate, onsets, values, mean, skipped,
+                                  recordsRead);
+        }
+}
@@ -0,0 +1,161 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * The JDK Flight Recorder events of EDF4J. The events are in the category
+ * "EDF4J" and are recorded like any JDK event, for example with
+ * -XX:StartFlightRecording. When no recording is running creating and
+ * committing an event costs almost nothing.
+ *
+ * The events are recorded by {@link EDFJfrEvents} if the jdk.jfr module is
+ * present, which is probed once. Without it the events do nothing, so
+ * EDF4J also runs on runtimes that are linked without jdk.jfr.
+ *
+ * The path of an event is empty if the file is only known as a stream.
+ *
+ * If an event is not enabled a shared instance which is never committed is
+ * returned, so the fields of an event may only be set after shouldCommit()
+ * returned true.
+ */
+final class EDFEvents
+{
+        private static final boolean ENABLED = isFlightRecorderPresent();
+
+        static final FileOpen DISABLED_FILE_OPEN = new FileOpen();
+        static final HeaderParse DISABLED_HEADER_PARSE = new HeaderParse();
+        static final RecordDecode DISABLED_RECORD_DECODE = new RecordDecode();
+        static final AnnotationParse DISABLED_ANNOTATION_PARSE = new AnnotationParse();
+        static final WriteFlush DISABLED_WRITE_FLUSH = new WriteFlush();
+
+        private EDFEvents() {}
+
+        static FileOpen fileOpen()
+        {
+                return ENABLED ? EDFJfrEvents.fileOpen() : DISABLED_FILE_OPEN;
+        }
+
+        static HeaderParse headerParse()
+        {
+                return ENABLED ? EDFJfrEvents.headerParse() : DISABLED_HEADER_PARSE;
+        }
+
+        static RecordDecode recordDecode()
+        {
+                return ENABLED ? EDFJfrEvents.recordDecode() : DISABLED_RECORD_DECODE;
+        }
+
+        static AnnotationParse annotationParse()
+        {
+                return ENABLED ? EDFJfrEvents.annotationParse() : DISABLED_ANNOTATION_PARSE;
+        }
+
+        static WriteFlush writeFlush()
+        {
+                return ENABLED ? EDFJfrEvents.writeFlush() : DISABLED_WRITE_FLUSH;
+        }
+
+        private static boolean isFlightRecorderPresent()
+        {
+                try
+                {
+                        Class.forName("jdk.jfr.Event", false, EDFEvents.class.getClassLoader());
+                        return true;
+                } catch (ClassNotFoundException | LinkageError e)
+                {
+                        return false;
+                }
+        }
+
+        /**
+         * An event that is never committed.
+         */
+        static class Event
+        {
+                void begin()
+                {
+                }
+
+                boolean shouldCommit()
+                {
+                        return false;
+                }
+
+                void commit()
+                {
+                }
+        }
+
+        /**
+         * Opening an EDF-File and parsing its header.
+         */
+        static class FileOpen extends Event
+        {
+                String path;
+                int channels;
+                int records;
+                long bytes;
+        }
+
+        /**
+         * Reading and parsing the header of an EDF-File.
+         */
+        static class HeaderParse extends Event
+        {
+                String path;
+                int channels;
+                long bytes;
+        }
+
+        /**
+         * Reading and decoding a batch of data records.
+         */
+        static class RecordDecode extends Event
+        {
+                String path;
+                int firstRecord;
+                int records;
+                int channels;
+                long bytes;
+        }
+
+        /**
+         * Parsing the annotation channel of an EDF+ file.
+         */
+        static class AnnotationParse extends Event
+        {
+                String path;
+                int annotations;
+                long bytes;
+        }
+
+        /**
+         * Writing a header or data records.
+         */
+        static class WriteFlush extends Event
+        {
+                String path;
+                int firstRecord;
+                int records;
+                int channels;
+                long bytes;
+        }
+}
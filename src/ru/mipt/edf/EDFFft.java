@@ -0,0 +1,122 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * A plan of a real FFT of a power of two length. The real input is transformed
+ * as a complex sequence of half the length, in place with precomputed twiddle
+ * factors and bit reversal, so computing a spectrum does not allocate. A plan
+ * is not thread safe, every thread uses its own.
+ */
+final class EDFFft
+{
+        private final int size;
+        private final int half;
+        private final double[] re;
+        private final double[] im;
+        private final int[] reverse;
+        // cos and sin of 2 pi k / size for k below half
+        private final double[] cos;
+        private final double[] sin;
+
+        /**
+         * @param size the length of the input, a power of two and at least 4
+         */
+        EDFFft(int size)
+        {
+                if (size < 4 || Integer.bitCount(size) != 1)
+                        throw new IllegalArgumentException("The FFT size " + size + " is not a power of two above 2.");
+                this.size = size;
+                half = size / 2;
+                re = new double[half];
+                im = new double[half];
+                reverse = new int[half];
+                int bits = Integer.numberOfTrailingZeros(half);
+                for (int i = 0; i < half; i++)
+                        reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+                cos = new double[half];
+                sin = new double[half];
+                for (int k = 0; k < half; k++)
+                {
+                        cos[k] = Math.cos(2 * Math.PI * k / size);
+                        sin[k] = Math.sin(2 * Math.PI * k / size);
+                }
+        }
+
+        int size()
+        {
+                return size;
+        }
+
+        /**
+         * Compute the squared magnitudes of the spectrum of the input.
+         *
+         * @param input the input of the length of the plan
+         * @param power receives the squared magnitudes of the bins 0 to size / 2
+         */
+        void powerSpectrum(double[] input, double[] power)
+        {
+                // the even samples are the real and the odd samples the imaginary parts
+                for (int i = 0; i < half; i++)
+                {
+                        re[reverse[i]] = input[2 * i];
+                        im[reverse[i]] = input[2 * i + 1];
+                }
+                for (int length = 2; length <= half; length <<= 1)
+                {
+                        int step = size / length;
+                        int span = length / 2;
+                        for (int start = 0; start < half; start += length)
+                        {
+                                for (int j = 0; j < span; j++)
+                                {
+                                        double wr = cos[j * step];
+                                        double wi = -sin[j * step];
+                                        int a = start + j;
+                                        int b = a + span;
+                                        double br = re[b] * wr - im[b] * wi;
+                                        double bi = re[b] * wi + im[b] * wr;
+                                        re[b] = re[a] - br;
+                                        im[b] = im[a] - bi;
+                                        re[a] += br;
+                                        im[a] += bi;
+                                }
+                        }
+                }
+                // split the spectrum of the complex sequence into the spectrum of the real input
+                power[0] = (re[0] + im[0]) * (re[0] + im[0]);
+                power[half] = (re[0] - im[0]) * (re[0] - im[0]);
+                for (int k = 1; k < half; k++)
+                {
+                        double ar = re[k], ai = im[k];
+                        double cr = re[half - k], ci = im[half - k];
+                        double evenRe = (ar + cr) / 2;
+                        double evenIm = (ai - ci) / 2;
+                        double oddRe = (ai + ci) / 2;
+                        double oddIm = -(ar - cr) / 2;
+                        double wr = cos[k];
+                        double wi = -sin[k];
+                        double xr = evenRe + wr * oddRe - wi * oddIm;
+                        double xi = evenIm + wr * oddIm + wi * oddRe;
+                        power[k] = xr * xr + xi * xi;
+                }
+        }
+}
@@ -0,0 +1,51 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * A stateful filter of the physical values of one channel. The values are
+ * filtered in place and the state is kept between calls, so a channel can be
+ * filtered in consecutive blocks, for example one block per data record, with
+ * the same result as filtering it at once. A filter instance belongs to one
+ * channel.
+ */
+public interface EDFFilter
+{
+        /**
+         * Filter the next values of the channel in place.
+         *
+         * @param values    the values
+         * @param offset    the offset of the first value
+         * @param length    the number of values
+         */
+        void process(double[] values, int offset, int length);
+
+        /**
+         * @return a filter applying this filter and then the next filter
+         */
+        default EDFFilter andThen(EDFFilter next)
+        {
+                return (values, offset, length) -> {
+                        process(values, offset, length);
+                        next.process(values, offset, length);
+                };
+        }
+}
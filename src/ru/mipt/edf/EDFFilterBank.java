@@ -0,0 +1,137 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.util.function.DoubleFunction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds a filter per channel of a recording. It is used by
+ * {@link EDFParser#parseEDF(java.io.InputStream, EDFFilterBank)} to filter the
+ * physical values while they are converted, and can filter streamed data
+ * records with {@link #process(EDFRecord)}. Channels can be filtered in
+ * parallel.
+ *
+ * <pre>
+ * EDFFilterBank filters = new EDFFilterBank(header, rate -&gt; EDFBiquadFilter.bandpass(rate, 0.5, 35, 4)
+ *                 .andThen(EDFBiquadFilter.notch(rate, 50, 30)));
+ * </pre>
+ */
+public class EDFFilterBank
+{
+        private final EDFFilter[] filters;
+        private boolean parallel;
+
+        /**
+         * Create a bank without filters.
+         */
+        public EDFFilterBank(int numberOfChannels)
+        {
+                filters = new EDFFilter[numberOfChannels];
+        }
+
+        /**
+         * Create a bank with a new filter for every channel except annotation
+         * channels and channels without samples.
+         *
+         * @param header    the header of the recording
+         * @param factory   creates the filter of a channel for its sampling rate
+         */
+        public EDFFilterBank(EDFHeader header, DoubleFunction<EDFFilter> factory)
+        {
+                this(header.numberOfChannels);
+                for (int i = 0; i < filters.length; i++)
+                        if (header.numberOfSamples[i] > 0 && !EDFChannelExtractor.isAnnotationChannel(header, i))
+                                filters[i] = factory.apply(header.getSamplingRate(i));
+        }
+
+        /**
+         * @param channel   the index of the channel
+         * @param filter    the filter of the channel or null to not filter the channel
+         */
+        public EDFFilterBank set(int channel, EDFFilter filter)
+        {
+                filters[channel] = filter;
+                return this;
+        }
+
+        public EDFFilter get(int channel)
+        {
+                return filters[channel];
+        }
+
+        /**
+         * @param val if channels are filtered in parallel
+         */
+        public EDFFilterBank parallel(boolean val)
+        {
+                parallel = val;
+                return this;
+        }
+
+        public boolean isParallel()
+        {
+                return parallel;
+        }
+
+        public int getNumberOfChannels()
+        {
+                return filters.length;
+        }
+
+        /**
+         * Filter the next values of a channel in place.
+         */
+        public void process(int channel, double[] values, int offset, int length)
+        {
+                if (filters[channel] != null)
+                        filters[channel].process(values, offset, length);
+        }
+
+        /**
+         * Convert the data records following the previously filtered ones into
+         * physical values and filter them.
+         *
+         * @return the filtered physical values per channel, null for channels which were not read
+         */
+        public double[][] process(EDFRecord record)
+        {
+                short[][] digitalValues = record.getDigitalValues();
+                double[][] values = new double[digitalValues.length][];
+                forEachChannel(channel -> {
+                        if (digitalValues[channel] == null)
+                                return;
+                        values[channel] = record.getPhysicalValues(channel);
+                        process(channel, values[channel], 0, values[channel].length);
+                });
+                return values;
+        }
+
+        /**
+         * Run the action for every channel, in parallel if enabled.
+         */
+        void forEachChannel(IntConsumer action)
+        {
+                IntStream channels = IntStream.range(0, filters.length);
+                (parallel ? channels.parallel() : channels).forEach(action);
+        }
+}
@@ -0,0 +1,121 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * A FIR filter. The factory methods design linear phase filters with a
+ * Hamming windowed sinc.
+ */
+public class EDFFirFilter implements EDFFilter
+{
+        // the coefficients reversed, to be applied from the oldest to the newest input
+        private final double[] coefficients;
+        // the inputs twice, so the window of the last inputs is contiguous
+        private final double[] history;
+        private int write;
+
+        public EDFFirFilter(double[] coefficients)
+        {
+                if (coefficients.length == 0)
+                        throw new IllegalArgumentException("A FIR filter needs at least one coefficient.");
+                int n = coefficients.length;
+                this.coefficients = new double[n];
+                for (int i = 0; i < n; i++)
+                        this.coefficients[i] = coefficients[n - 1 - i];
+                history = new double[2 * n];
+        }
+
+        /**
+         * @param taps the number of coefficients, an odd number gives a delay of whole samples
+         */
+        public static EDFFirFilter lowpass(double samplingRate, double cutoff, int taps)
+        {
+                return new EDFFirFilter(windowedSinc(samplingRate, 0, cutoff, taps));
+        }
+
+        /**
+         * @param taps the number of coefficients, an odd number gives a delay of whole samples
+         */
+        public static EDFFirFilter bandpass(double samplingRate, double low, double high, int taps)
+        {
+                if (low >= high)
+                        throw new IllegalArgumentException("The lower edge " + low + " Hz is not below the upper edge "
+                                                           + high + " Hz.");
+                return new EDFFirFilter(windowedSinc(samplingRate, low, high, taps));
+        }
+
+        /**
+         * @return the delay of the filter in samples
+         */
+        public double getDelay()
+        {
+                return (coefficients.length - 1) / 2.0;
+        }
+
+        @Override
+        public void process(double[] values, int offset, int length)
+        {
+                int n = coefficients.length;
+                for (int i = offset; i < offset + length; i++)
+                {
+                        history[write] = values[i];
+                        history[write + n] = values[i];
+                        write = write + 1 == n ? 0 : write + 1;
+                        double sum = 0;
+                        for (int k = 0; k < n; k++)
+                                sum += coefficients[k] * history[write + k];
+                        values[i] = sum;
+                }
+        }
+
+        private static double[] windowedSinc(double samplingRate, double low, double high, int taps)
+        {
+                if (taps <= 0)
+                        throw new IllegalArgumentException("The number of taps has to be positive.");
+                if (low < 0 || !(high > 0) || high >= samplingRate / 2)
+                        throw new IllegalArgumentException("The band " + low + " to " + high
+                                                           + " Hz is not between 0 and " + samplingRate / 2 + " Hz.");
+                double fl = low / samplingRate;
+                double fh = high / samplingRate;
+                double center = (taps - 1) / 2.0;
+                double[] h = new double[taps];
+                for (int i = 0; i < taps; i++)
+                {
+                        double x = i - center;
+                        double ideal = x == 0 ? 2 * (fh - fl)
+                                              : (Math.sin(2 * Math.PI * fh * x) - Math.sin(2 * Math.PI * fl * x)) / (Math.PI * x);
+                        double window = taps == 1 ? 1 : 0.54 - 0.46 * Math.cos(2 * Math.PI * i / (taps - 1));
+                        h[i] = ideal * window;
+                }
+                // a low pass has a gain of 1 at 0 Hz, a band pass at its center
+                double f = low == 0 ? 0 : (fl + fh) / 2;
+                double re = 0, im = 0;
+                for (int i = 0; i < taps; i++)
+                {
+                        re += h[i] * Math.cos(2 * Math.PI * f * i);
+                        im += h[i] * Math.sin(2 * Math.PI * f * i);
+                }
+                double gain = Math.hypot(re, im);
+                for (int i = 0; i < taps; i++)
+                        h[i] /= gain;
+                return h;
+        }
+}
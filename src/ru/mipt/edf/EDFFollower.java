@@ -0,0 +1,250 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class follows an EDF-File while it is written, like tail -f. The number
+ * of available data records is computed from the size of the file, because
+ * the number in the header is -1 or stale during a recording. Every poll only
+ * reads the data records completed since the last poll, data records are never
+ * read twice. Polling only costs a call for the size of the file if nothing
+ * was written.
+ *
+ * <pre>
+ * EDFFollower follower = new EDFFollower(path).pollInterval(100);
+ * follower.follow((first, values) -&gt; view.append(values));
+ * ...
+ * follower.close();
+ * </pre>
+ */
+public class EDFFollower implements Closeable
+{
+        /**
+         * Receives the data records of a followed file.
+         */
+        public interface Listener
+        {
+                /**
+                 * Called with newly completed data records, in the order of the file.
+                 *
+                 * @param firstRecord   the index of the first data record
+                 * @param digitalValues the digital values per channel of the data records
+                 */
+                void onRecords(int firstRecord, short[][] digitalValues);
+
+                /**
+                 * Called if the file can not be read or {@link #onRecords} throws a
+                 * RuntimeException while following in the background. Following
+                 * continues with the next poll, the data records passed to the
+                 * failed call are not delivered again. Not called after
+                 * {@link EDFFollower#close()} returned.
+                 */
+                default void onError(Exception e)
+                {
+                }
+        }
+
+        private final FileChannel channel;
+        private final EDFHeader header;
+        private final int bytesPerRecord;
+        private long pollInterval = 200;
+        private int maxRecordsPerDelivery = 1024;
+        private int numberOfRecordsDelivered;
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+        private ScheduledExecutorService executor;
+        private volatile Thread thread;
+        private volatile boolean closed;
+
+        /**
+         * Open an EDF-File to follow, its header has to be written completely.
+         *
+         * @param path
+         *            the path to the EDF-File
+         * @throws IOException
+         *             if the file can not be opened or its header is not valid
+         */
+        public EDFFollower(Path path) throws IOException
+        {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                try
+                {
+                        header = EDFParser.parseHeader(channel, path.toString()).getHeader();
+                } catch (IOException e)
+                {
+                        channel.close();
+                        throw e;
+                }
+                bytesPerRecord = header.getBytesPerRecord();
+        }
+
+        /**
+         * @param val the milliseconds between two polls of {@link #follow(Listener)}
+         */
+        public EDFFollower pollInterval(long val)
+        {
+                assert val > 0;
+                pollInterval = val;
+                return this;
+        }
+
+        /**
+         * @param val the maximum number of data records per call of the listener
+         */
+        public EDFFollower maxRecordsPerDelivery(int val)
+        {
+                assert val > 0;
+                maxRecordsPerDelivery = val;
+                return this;
+        }
+
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        /**
+         * @return the number of data records delivered to listeners
+         */
+        public synchronized int getNumberOfRecordsDelivered()
+        {
+                return numberOfRecordsDelivered;
+        }
+
+        /**
+         * @return the number of complete data records in the file now
+         */
+        public int getNumberOfRecordsAvailable() throws IOException
+        {
+                return (int) Math.max(0, (channel.size() - header.bytesInHeader) / bytesPerRecord);
+        }
+
+        /**
+         * Deliver the data records completed since the last poll to the listener.
+         *
+         * @return the number of delivered data records
+         * @throws IOException if the file can not be read
+         */
+        public synchronized int poll(Listener listener) throws IOException
+        {
+                int available = getNumberOfRecordsAvailable();
+                if (available < numberOfRecordsDelivered)
+                        throw new EDFParserException("The file has " + available + " data records but "
+                                                     + numberOfRecordsDelivered + " were delivered.", null);
+                int delivered = 0;
+                while (numberOfRecordsDelivered < available)
+                {
+                        int records = Math.min(maxRecordsPerDelivery, available - numberOfRecordsDelivered);
+                        short[][] values = read(numberOfRecordsDelivered, records);
+                        int first = numberOfRecordsDelivered;
+                        numberOfRecordsDelivered += records;
+                        delivered += records;
+                        listener.onRecords(first, values);
+                }
+                return delivered;
+        }
+
+        /**
+         * Poll the file in a background thread until this follower is closed.
+         */
+        public synchronized void follow(Listener listener)
+        {
+                if (executor != null)
+                        throw new IllegalStateException("The file is already followed.");
+                executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        thread = new Thread(runnable, "EDFFollower");
+                        thread.setDaemon(true);
+                        return thread;
+                });
+                executor.scheduleWithFixedDelay(() -> {
+                        try
+                        {
+                                poll(listener);
+                        } catch (IOException | RuntimeException e)
+                        {
+                                // an exception escaping the task would cancel following silently
+                                if (!closed)
+                                        listener.onError(e);
+                        }
+                }, 0, pollInterval, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stop following and close the file. A poll in progress in the background
+         * is waited for, unless this is called by the listener.
+         */
+        @Override
+        public void close() throws IOException
+        {
+                ScheduledExecutorService executor;
+                synchronized (this)
+                {
+                        closed = true;
+                        executor = this.executor;
+                        if (executor != null)
+                                executor.shutdown();
+                }
+                try
+                {
+                        if (executor != null && Thread.currentThread() != thread)
+                                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e)
+                {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                } finally
+                {
+                        channel.close();
+                }
+        }
+
+        private short[][] read(int firstRecord, int numberOfRecords) throws IOException
+        {
+                int length = numberOfRecords * bytesPerRecord;
+                if (buffer.capacity() < length)
+                        buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.clear().limit(length);
+                ParseUtils.readFully(channel, buffer, header.bytesInHeader + (long) firstRecord * bytesPerRecord);
+                buffer.flip();
+
+                short[][] values = new short[header.numberOfChannels][];
+                for (int i = 0; i < values.length; i++)
+                        values[i] = new short[numberOfRecords * header.numberOfSamples[i]];
+                for (int r = 0; r < numberOfRecords; r++)
+                        for (int i = 0; i < values.length; i++)
+                        {
+                                int nos = header.numberOfSamples[i];
+                                buffer.asShortBuffer().get(values[i], r * nos, nos);
+                                buffer.position(buffer.position() + nos * 2);
+                        }
+                return values;
+        }
+}
@@ -0,0 +1,364 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * This class generates synthetic EDF and EDF+ recordings of any size. The
+ * recording is built with {@link EDFAnnotationFileHeaderBuilder} and streamed
+ * through {@link EDFWriter} in blocks of data records, so it is never held in
+ * memory. The same configuration and seed always generate the same bytes, the
+ * dates and numbers of the header are formatted in UTC independent of the
+ * default locale.
+ */
+public class EDFGenerator
+{
+        /**
+         * The shape of a generated signal. Every shape except NOISE has the
+         * amplitude and frequency of its channel.
+         */
+        public enum Shape
+        {
+                SINE, SQUARE, SAWTOOTH, NOISE
+        }
+
+        private static final int BUFFER_SIZE = 1 << 20;
+        private static final double PHYSICAL_RANGE = 3200.0;
+
+        private final List<Channel> channels = new ArrayList<>();
+        private long seed = 0;
+        private double durationOfRecord = 1;
+        private int numberOfRecords = 1;
+        private int annotationsPerRecord = 0;
+        private double noise = 0.02;
+        // 01.01.00 UTC, the two-digit year is read as 1985-2084 in every time zone
+        private Date startOfRecording = new Date(946684800000L);
+
+        /**
+         * Add a signal channel.
+         *
+         * @param label         the label of the channel
+         * @param samplingRate  the samples per second, the samples per data record are rounded
+         * @param shape         the shape of the signal
+         * @param frequency     the frequency of the signal in Hz
+         * @param amplitude     the amplitude as fraction of the digital range
+         */
+        public EDFGenerator channel(String label, double samplingRate, Shape shape, double frequency, double amplitude)
+        {
+                if (!(samplingRate > 0))
+                        throw new IllegalArgumentException("The sampling rate has to be positive.");
+                channels.add(new Channel(label, samplingRate, shape, frequency, amplitude));
+                return this;
+        }
+
+        /**
+         * Add signal channels labelled "label 0", "label 1", ... with frequencies
+         * between 1 and 30 Hz chosen by the seed when the recording is generated.
+         */
+        public EDFGenerator channels(int count, String label, double samplingRate, Shape shape)
+        {
+                for (int i = 0; i < count; i++)
+                        channel(label + " " + i, samplingRate, shape, Double.NaN, 0.25);
+                return this;
+        }
+
+        public EDFGenerator seed(long val)
+        {
+                seed = val;
+                return this;
+        }
+
+        public EDFGenerator durationOfRecord(double val)
+        {
+                if (!(val > 0))
+                        throw new IllegalArgumentException("The duration of a data record has to be positive.");
+                durationOfRecord = val;
+                return this;
+        }
+
+        public EDFGenerator numberOfRecords(int val)
+        {
+                if (val < 0)
+                        throw new IllegalArgumentException("The number of data records can not be negative.");
+                numberOfRecords = val;
+                return this;
+        }
+
+        /**
+         * @param val the number of annotations per data record, with at least one an EDF+ file with an
+         *            "EDF Annotations" channel is generated
+         */
+        public EDFGenerator annotationsPerRecord(int val)
+        {
+                if (val < 0)
+                        throw new IllegalArgumentException("The number of annotations per data record can not be "
+                                                           + "negative.");
+                annotationsPerRecord = val;
+                return this;
+        }
+
+        /**
+         * @param val the standard deviation of the gaussian noise added to every signal as fraction of the
+         *            digital range
+         */
+        public EDFGenerator noise(double val)
+        {
+                if (!(val >= 0))
+                        throw new IllegalArgumentException("The noise can not be negative.");
+                noise = val;
+                return this;
+        }
+
+        public EDFGenerator startOfRecording(Date val)
+        {
+                if (val == null)
+                        throw new IllegalArgumentException("The start of the recording is missing.");
+                startOfRecording = val;
+                return this;
+        }
+
+        /**
+         * @return the header of the generated recording
+         */
+        public EDFHeader buildHeader()
+        {
+                boolean edfPlus = annotationsPerRecord > 0;
+                int numberOfChannels = channels.size() + (edfPlus ? 1 : 0);
+                String[] labels = new String[numberOfChannels];
+                String[] transducerTypes = new String[numberOfChannels];
+                String[] dimensions = new String[numberOfChannels];
+                Double[] minInUnits = new Double[numberOfChannels];
+                Double[] maxInUnits = new Double[numberOfChannels];
+                Integer[] digitalMin = new Integer[numberOfChannels];
+                Integer[] digitalMax = new Integer[numberOfChannels];
+                String[] prefilterings = new String[numberOfChannels];
+                Integer[] numberOfSamples = new Integer[numberOfChannels];
+                for (int i = 0; i < numberOfChannels; i++)
+                {
+                        boolean annotations = i == channels.size();
+                        labels[i] = annotations ? "EDF Annotations" : channels.get(i).label;
+                        transducerTypes[i] = annotations ? "" : "Synthetic " + channels.get(i).shape.name().toLowerCase();
+                        dimensions[i] = annotations ? "" : "uV";
+                        minInUnits[i] = annotations ? -1.0 : -PHYSICAL_RANGE;
+                        maxInUnits[i] = annotations ? 1.0 : PHYSICAL_RANGE;
+                        digitalMin[i] = (int) Short.MIN_VALUE;
+                        digitalMax[i] = (int) Short.MAX_VALUE;
+                        prefilterings[i] = "";
+                        numberOfSamples[i] = annotations ? (maxAnnotationBytes() + 1) / 2
+                                                         : (int) Math.round(channels.get(i).samplingRate
+                                                                            * durationOfRecord);
+                }
+
+                EDFAnnotationFileHeaderBuilder builder = new EDFAnnotationFileHeaderBuilder()
+                        .startOfRecording(startOfRecording).durationOfRecord(durationOfRecord)
+                        .patientCode("X").recordingEquipment("EDFGenerator").channelLabels(labels)
+                        .transducerTypes(transducerTypes).dimensions(dimensions).minInUnits(minInUnits)
+                        .maxInUnits(maxInUnits).digitalMin(digitalMin).digitalMax(digitalMax)
+                        .prefilterings(prefilterings).numberOfSamples(numberOfSamples)
+                        .reserveds(new byte[numberOfChannels][EDFConstants.RESERVED_SIZE]);
+                builder.numberOfChannels(numberOfChannels);
+                builder.numberOfRecords(numberOfRecords);
+                EDFHeader header = builder.build();
+                if (edfPlus)
+                        header.formatVersion = "EDF+C" + header.formatVersion.substring(5);
+                // the builder formats in the default time zone and locale
+                header.startDate = utcFormat("dd.MM.yy").format(startOfRecording);
+                header.startTime = utcFormat("HH.mm.ss").format(startOfRecording);
+                String recording = "Startdate " + utcFormat("dd-MMM-yyyy").format(startOfRecording).toUpperCase(Locale.ROOT)
+                                   + " X X EDFGenerator";
+                header.recordingID = String.format("%-" + EDFConstants.LOCAL_REOCRDING_IDENTIFICATION_SIZE + "s",
+                                                   recording);
+                return header;
+        }
+
+        /**
+         * Generate the recording into a file.
+         */
+        public void write(Path path) throws IOException
+        {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path)))
+                {
+                        write(out);
+                }
+        }
+
+        /**
+         * Generate the recording into the OutputStream.
+         */
+        public void write(OutputStream out) throws IOException
+        {
+                if (channels.isEmpty() && annotationsPerRecord == 0)
+                        throw new IllegalStateException("There are no channels to generate.");
+
+                EDFHeader header = buildHeader();
+                EDFWriter.writeIntoOutputStream(header, out);
+
+                int samplesPerRecord = header.getSamplesPerRecord();
+                int recordsPerBuffer = Math.max(1, BUFFER_SIZE / header.getBytesPerRecord());
+                double[] frequencies = frequencies();
+                Random[] randoms = new Random[channels.size()];
+                for (int i = 0; i < randoms.length; i++)
+                        randoms[i] = new Random(seed * 31 + i);
+                DecimalFormat onsetFormat = onsetFormat();
+
+                short[] data = null;
+                for (int first = 0; first < numberOfRecords; first += recordsPerBuffer)
+                {
+                        int records = Math.min(recordsPerBuffer, numberOfRecords - first);
+                        if (data == null || data.length != records * samplesPerRecord)
+                                data = new short[records * samplesPerRecord];
+
+                        int index = 0;
+                        for (int r = first; r < first + records; r++)
+                        {
+                                for (int i = 0; i < channels.size(); i++)
+                                {
+                                        Channel channel = channels.get(i);
+                                        int nos = header.numberOfSamples[i];
+                                        for (int k = 0; k < nos; k++)
+                                                data[index++] = channel.sample((long) r * nos + k, nos / durationOfRecord,
+                                                                               frequencies[i], noise, randoms[i]);
+                                }
+                                if (annotationsPerRecord > 0)
+                                {
+                                        int nos = header.numberOfSamples[channels.size()];
+                                        byte[] tal = annotations(r, onsetFormat);
+                                        for (int k = 0; k < nos; k++)
+                                        {
+                                                int low = 2 * k < tal.length ? tal[2 * k] & 0xff : 0;
+                                                int high = 2 * k + 1 < tal.length ? tal[2 * k + 1] & 0xff : 0;
+                                                data[index++] = (short) (low | high << 8);
+                                        }
+                                }
+                        }
+                        EDFWriter.writeIntoOutputStream(data, out);
+                }
+        }
+
+        /**
+         * @return the frequencies of the channels, those added by {@link #channels} are drawn from the seed
+         */
+        private double[] frequencies()
+        {
+                Random random = new Random(seed);
+                double[] frequencies = new double[channels.size()];
+                for (int i = 0; i < frequencies.length; i++)
+                        frequencies[i] = Double.isNaN(channels.get(i).frequency) ? 1 + random.nextInt(30)
+                                                                                  : channels.get(i).frequency;
+                return frequencies;
+        }
+
+        /**
+         * @return the time-keeping annotation and the annotations of a data record as TALs
+         */
+        private byte[] annotations(int record, DecimalFormat onsetFormat)
+        {
+                double onset = record * durationOfRecord;
+                StringBuilder tal = new StringBuilder();
+                tal.append('+').append(onsetFormat.format(onset)).append("\u0014\u0014\u0000");
+                for (int i = 0; i < annotationsPerRecord; i++)
+                        tal.append('+').append(onsetFormat.format(onset + i * durationOfRecord / annotationsPerRecord))
+                                .append("\u00151\u0014Event ").append(i).append("\u0014\u0000");
+                return tal.toString().getBytes(EDFConstants.CHARSET);
+        }
+
+        /**
+         * @return an upper bound of the number of bytes of the annotations of a data record
+         */
+        private int maxAnnotationBytes()
+        {
+                // the onsets are formatted with at most 6 decimals
+                int onsetWidth = String.valueOf((long) Math.ceil(numberOfRecords * durationOfRecord)).length() + 7;
+                int eventWidth = String.valueOf(annotationsPerRecord).length();
+                return 1 + onsetWidth + 3 + annotationsPerRecord * (1 + onsetWidth + 3 + 6 + eventWidth + 2);
+        }
+
+        private static DecimalFormat onsetFormat()
+        {
+                DecimalFormatSymbols dfs = new DecimalFormatSymbols(Locale.ROOT);
+                dfs.setDecimalSeparator('.');
+                return new DecimalFormat("0.######", dfs);
+        }
+
+        private static SimpleDateFormat utcFormat(String pattern)
+        {
+                SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.ROOT);
+                format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                return format;
+        }
+
+        private static final class Channel
+        {
+                final String label;
+                final double samplingRate;
+                final Shape shape;
+                final double frequency; // NaN if drawn from the seed
+                final double amplitude;
+
+                Channel(String label, double samplingRate, Shape shape, double frequency, double amplitude)
+                {
+                        this.label = label;
+                        this.samplingRate = samplingRate;
+                        this.shape = shape;
+                        this.frequency = frequency;
+                        this.amplitude = amplitude;
+                }
+
+                short sample(long n, double samplingRate, double frequency, double noise, Random random)
+                {
+                        double phase = frequency * n / samplingRate;
+                        phase -= Math.floor(phase);
+                        double value;
+                        switch (shape)
+                        {
+                        case SINE:
+                                value = amplitude * Math.sin(2 * Math.PI * phase);
+                                break;
+                        case SQUARE:
+                                value = phase < 0.5 ? amplitude : -amplitude;
+                                break;
+                        case SAWTOOTH:
+                                value = amplitude * (2 * phase - 1);
+                                break;
+                        default:
+                                value = 0;
+                        }
+                        if (noise > 0 || shape == Shape.NOISE)
+                                value += (shape == Shape.NOISE ? amplitude : noise) * random.nextGaussian();
+                        long digital = Math.round(value * Short.MAX_VALUE);
+                        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, digital));
+                }
+        }
+}
@@ -0,0 +1,368 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An InputStream decompressing a gzip file made of concatenated members, as
+ * written by bgzip or by concatenating gzip files, with several threads. While
+ * the current member is read, the following members are decompressed
+ * speculatively: the next 16 MB of the file are scanned for the magic bytes of
+ * member headers and every candidate is decompressed in the background. A
+ * candidate is used only if it starts exactly where the previous member ends,
+ * so false candidates inside compressed data just waste work. Members which
+ * are larger than 64 MB uncompressed are not kept in memory but decompressed
+ * while they are read.
+ *
+ * A file with a single member, as written by gzip and pigz, is decompressed
+ * with one thread.
+ */
+public class EDFGzipInputStream extends InputStream
+{
+        private static final int CHUNK_SIZE = 1 << 16;
+        private static final int MAX_SPECULATIVE_SIZE = 64 << 20;
+        private static final int MAX_SCAN_DISTANCE = 16 << 20;
+
+        private final FileChannel channel;
+        private final long size;
+        private final ExecutorService executor;
+        private final int window;
+        private final TreeMap<Long, Future<Member>> speculative = new TreeMap<>();
+        private long scanPosition;
+        private long memberStart;
+        private Member member;
+        private final byte[] single = new byte[1];
+
+        /**
+         * Open a gzip file.
+         *
+         * @param path      the path to the gzip file
+         * @param threads   the number of threads decompressing members
+         * @throws IOException if the file can not be opened
+         */
+        public EDFGzipInputStream(Path path, int threads) throws IOException
+        {
+                if (threads <= 0)
+                        throw new IllegalArgumentException("The number of threads has to be positive.");
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                size = channel.size();
+                window = threads;
+                executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "EDFGzipInputStream");
+                        thread.setDaemon(true);
+                        return thread;
+                });
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+                if (len == 0)
+                        return 0;
+                while (true)
+                {
+                        if (member != null)
+                        {
+                                int n = member.read(b, off, len);
+                                if (n >= 0)
+                                        return n;
+                                memberStart = member.end;
+                                member = null;
+                        }
+                        if (!nextMember())
+                                return -1;
+                }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+                if (member != null)
+                        member.end();
+                executor.shutdownNow();
+                channel.close();
+        }
+
+        /**
+         * @return if there is a member at memberStart
+         */
+        private boolean nextMember() throws IOException
+        {
+                Iterator<Map.Entry<Long, Future<Member>>> passed = speculative.headMap(memberStart).entrySet().iterator();
+                while (passed.hasNext())
+                {
+                        // an interrupt would close the channel for all threads
+                        passed.next().getValue().cancel(false);
+                        passed.remove();
+                }
+                Future<Member> future = speculative.remove(memberStart);
+                speculate();
+
+                if (future != null)
+                {
+                        try
+                        {
+                                member = future.get();
+                        } catch (ExecutionException e)
+                        {
+                                member = null;
+                        } catch (InterruptedException e)
+                        {
+                                Thread.currentThread().interrupt();
+                                throw new IOException(e);
+                        }
+                        if (member != null)
+                                return true;
+                }
+                // the data after the last member is ignored, like GZIPInputStream does
+                if (!isCandidate(memberStart))
+                        return false;
+                member = new Member(channel, memberStart);
+                return true;
+        }
+
+        /**
+         * Decompress candidates after the current member in the background. Only
+         * a bounded distance is scanned, so the first bytes of a large file with
+         * a single member are not delayed by a scan of the whole file.
+         */
+        private void speculate() throws IOException
+        {
+                scanPosition = Math.max(scanPosition, memberStart + 1);
+                long scanEnd = Math.min(size - 3, memberStart + MAX_SCAN_DISTANCE);
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+                while (speculative.size() < window && scanPosition < scanEnd)
+                {
+                        buffer.clear();
+                        channel.read(buffer, scanPosition);
+                        byte[] bytes = buffer.array();
+                        int length = buffer.position() - 3;
+                        int i = 0;
+                        for (; i < length && speculative.size() < window; i++)
+                                if (isCandidate(bytes, i))
+                                {
+                                        final long start = scanPosition + i;
+                                        speculative.put(start, executor.submit(() -> decompress(start)));
+                                }
+                        scanPosition += Math.max(1, i);
+                }
+        }
+
+        private Member decompress(long start)
+        {
+                Member candidate = null;
+                try
+                {
+                        candidate = new Member(channel, start);
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[CHUNK_SIZE];
+                        int n;
+                        while ((n = candidate.read(buffer, 0, buffer.length)) >= 0)
+                        {
+                                out.write(buffer, 0, n);
+                                if (out.size() > MAX_SPECULATIVE_SIZE)
+                                        return null;
+                        }
+                        return new Member(out.toByteArray(), candidate.end);
+                } catch (IOException | RuntimeException e)
+                {
+                        return null;
+                } finally
+                {
+                        // the Inflater of a rejected candidate holds native memory
+                        if (candidate != null)
+                                candidate.end();
+                }
+        }
+
+        private boolean isCandidate(long position) throws IOException
+        {
+                ByteBuffer buffer = ByteBuffer.allocate(4);
+                channel.read(buffer, position);
+                return buffer.position() == 4 && isCandidate(buffer.array(), 0);
+        }
+
+        private static boolean isCandidate(byte[] b, int i)
+        {
+                // the magic bytes, the compression method deflate and no reserved flags
+                return b[i] == 0x1f && b[i + 1] == (byte) 0x8b && b[i + 2] == 8 && (b[i + 3] & 0xe0) == 0;
+        }
+
+        /**
+         * A member of a gzip file, either decompressed while it is read or
+         * decompressed in advance.
+         */
+        private static final class Member
+        {
+                private static final int FHCRC = 2;
+                private static final int FEXTRA = 4;
+                private static final int FNAME = 8;
+                private static final int FCOMMENT = 16;
+
+                private final FileChannel channel;
+                private final Inflater inflater;
+                private final CRC32 crc = new CRC32();
+                private final ByteBuffer input;
+                private long position;
+                private byte[] data;
+                private int dataPosition;
+                long end = -1;
+
+                Member(byte[] data, long end)
+                {
+                        this.channel = null;
+                        this.inflater = null;
+                        this.input = null;
+                        this.data = data;
+                        this.end = end;
+                }
+
+                Member(FileChannel channel, long start) throws IOException
+                {
+                        this.channel = channel;
+                        position = start;
+                        input = ByteBuffer.allocate(CHUNK_SIZE);
+                        input.flip();
+                        if (next() != 0x1f || next() != 0x8b || next() != 8)
+                                throw new ZipException("Not a gzip member at " + start + ".");
+                        int flags = next();
+                        skip(6);
+                        if ((flags & FEXTRA) != 0)
+                                skip(next() | next() << 8);
+                        if ((flags & FNAME) != 0)
+                                while (next() != 0);
+                        if ((flags & FCOMMENT) != 0)
+                                while (next() != 0);
+                        if ((flags & FHCRC) != 0)
+                                skip(2);
+                        inflater = new Inflater(true);
+                        inflater.setInput(input);
+                }
+
+                int read(byte[] b, int off, int len) throws IOException
+                {
+                        if (data != null)
+                        {
+                                if (dataPosition == data.length)
+                                        return -1;
+                                int n = Math.min(len, data.length - dataPosition);
+                                System.arraycopy(data, dataPosition, b, off, n);
+                                dataPosition += n;
+                                return n;
+                        }
+                        if (end >= 0)
+                                return -1;
+                        try
+                        {
+                                while (true)
+                                {
+                                        int n = inflater.inflate(b, off, len);
+                                        if (n > 0)
+                                        {
+                                                crc.update(b, off, n);
+                                                return n;
+                                        }
+                                        if (inflater.finished())
+                                                return finish();
+                                        if (inflater.needsDictionary())
+                                                throw new ZipException("A gzip member needs a dictionary.");
+                                        if (inflater.needsInput())
+                                        {
+                                                fill();
+                                                inflater.setInput(input);
+                                        }
+                                }
+                        } catch (DataFormatException e)
+                        {
+                                throw new ZipException(e.getMessage());
+                        }
+                }
+
+                private int finish() throws IOException
+                {
+                        long trailer = position - inflater.getRemaining();
+                        long bytesWritten = inflater.getBytesWritten();
+                        inflater.end();
+                        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                        ParseUtils.readFully(channel, buffer, trailer);
+                        if ((buffer.getInt(0) & 0xffffffffL) != crc.getValue()
+                            || (buffer.getInt(4) & 0xffffffffL) != (bytesWritten & 0xffffffffL))
+                                throw new ZipException("Corrupt gzip member before " + trailer + ".");
+                        end = trailer + 8;
+                        return -1;
+                }
+
+                void end()
+                {
+                        if (inflater != null)
+                                inflater.end();
+                }
+
+                private int next() throws IOException
+                {
+                        if (!input.hasRemaining())
+                                fill();
+                        return input.get() & 0xff;
+                }
+
+                private void skip(int n) throws IOException
+                {
+                        for (int i = 0; i < n; i++)
+                                next();
+                }
+
+                private void fill() throws IOException
+                {
+                        input.clear();
+                        int n = channel.read(input, position);
+                        if (n <= 0)
+                                throw new EOFException("Unexpected end of a gzip member.");
+                        position += n;
+                        input.flip();
+                }
+        }
+}
@@ -146,4 +146,68 @@ public class EDFHeader
                 return reserveds;
         }
 
+        /**
+         * @return the number of samples of all channels in one data record
+         */
+        public int getSamplesPerRecord()
+        {
+                int samplesPerRecord = 0;
+                for (int nos : numberOfSamples)
+                        samplesPerRecord += nos;
+                return samplesPerRecord;
+        }
+
+        /**
+         * @return the size of one data record in bytes
+         */
+        public int getBytesPerRecord()
+        {
+                return getSamplesPerRecord() * 2;
+        }
+
+        /**
+         * @param channel the index of the channel
+         * @return the number of samples per second of the channel
+         */
+        public double getSamplingRate(int channel)
+        {
+                return numberOfSamples[channel] / durationOfRecords;
+        }
+
+        /**
+         * @param label the label of the channel, leading and trailing spaces are ignored
+         * @return the index of the first channel with the label or -1 if there is none
+         */
+        public int indexOfChannel(String label)
+        {
+                for (int i = 0; i < numberOfChannels; i++)
+                        if (channelLabels[i].trim().equals(label.trim()))
+                                return i;
+                return -1;
+        }
+
+        /**
+         * Check if the data records of both headers have the same layout and
+         * meaning, so the records of one file can follow the records of the other.
+         *
+         * @param other the header to compare with
+         * @return true if the channels and the duration of the data records are equal
+         */
+        public boolean hasSameLayout(EDFHeader other)
+        {
+                if (numberOfChannels != other.numberOfChannels
+                    || Double.compare(durationOfRecords, other.durationOfRecords) != 0)
+                        return false;
+                for (int i = 0; i < numberOfChannels; i++)
+                {
+                        if (!channelLabels[i].trim().equals(other.channelLabels[i].trim())
+                            || !dimensions[i].trim().equals(other.dimensions[i].trim())
+                            || !minInUnits[i].equals(other.minInUnits[i]) || !maxInUnits[i].equals(other.maxInUnits[i])
+                            || !digitalMin[i].equals(other.digitalMin[i]) || !digitalMax[i].equals(other.digitalMax[i])
+                            || !numberOfSamples[i].equals(other.numberOfSamples[i]))
+                                return false;
+                }
+                return true;
+        }
+
 }
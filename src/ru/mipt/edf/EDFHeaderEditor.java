@@ -0,0 +1,117 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static ru.mipt.edf.EDFConstants.*;
+
+/**
+ * This class is capable of editing the fixed-width fields of the header of an
+ * existing EDF or EDF+ file in place. Every change is a positional write of the
+ * field, the data records are never read or copied and the number of bytes in
+ * the header stays unchanged.
+ */
+public class EDFHeaderEditor implements Closeable
+{
+        private final FileChannel channel;
+        private final EDFHeader header;
+
+        /**
+         * Open an existing EDF-File for editing its header.
+         *
+         * @param path
+         *            the path to the EDF-File
+         * @throws IOException
+         *             if the file can not be opened or its header is not valid
+         */
+        public EDFHeaderEditor(Path path) throws IOException
+        {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try
+                {
+                        header = EDFParser.parseHeader(channel).getHeader();
+                } catch (IOException e)
+                {
+                        channel.close();
+                        throw e;
+                }
+        }
+
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        public void setSubjectID(String subjectID) throws IOException
+        {
+                header.subjectID = writeField(LOCAL_SUBJECT_IDENTIFICATION_OFFSET, LOCAL_SUBJECT_IDENTIFICATION_SIZE,
+                                              subjectID);
+        }
+
+        public void setRecordingID(String recordingID) throws IOException
+        {
+                header.recordingID = writeField(LOCAL_RECORDING_IDENTIFICATION_OFFSET,
+                                                LOCAL_REOCRDING_IDENTIFICATION_SIZE, recordingID);
+        }
+
+        /**
+         * @param startDate the start date of the recording in the format dd.mm.yy
+         */
+        public void setStartDate(String startDate) throws IOException
+        {
+                header.startDate = writeField(START_DATE_OFFSET, START_DATE_SIZE, startDate);
+        }
+
+        /**
+         * @param startTime the start time of the recording in the format hh.mm.ss
+         */
+        public void setStartTime(String startTime) throws IOException
+        {
+                header.startTime = writeField(START_TIME_OFFSET, START_TIME_SIZE, startTime);
+        }
+
+        public void setChannelLabel(int channel, String label) throws IOException
+        {
+                if (channel < 0 || channel >= header.numberOfChannels)
+                        throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+                header.channelLabels[channel] = writeField(HEADER_SIZE_RECORDING_INFO + channel * LABEL_OF_CHANNEL_SIZE,
+                                                           LABEL_OF_CHANNEL_SIZE, label);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the value is longer than the field
+         */
+        private String writeField(int offset, int length, String value) throws IOException
+        {
+                return EDFWriter.writeField(channel, offset, length, value);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+                channel.close();
+        }
+}
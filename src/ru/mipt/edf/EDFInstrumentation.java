@@ -0,0 +1,104 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * The registry of {@link EDFListener}s. Registered listeners receive the
+ * events of all threads.
+ */
+public final class EDFInstrumentation
+{
+        private static final Object LOCK = new Object();
+        private static volatile EDFListener[] listeners = new EDFListener[0];
+        private static volatile EDFListener listener;
+
+        private EDFInstrumentation() {}
+
+        public static void addListener(EDFListener val)
+        {
+                if (val == null)
+                        throw new IllegalArgumentException("The listener must not be null.");
+                synchronized (LOCK)
+                {
+                        EDFListener[] next = new EDFListener[listeners.length + 1];
+                        System.arraycopy(listeners, 0, next, 0, listeners.length);
+                        next[listeners.length] = val;
+                        update(next);
+                }
+        }
+
+        public static void removeListener(EDFListener val)
+        {
+                synchronized (LOCK)
+                {
+                        for (int i = 0; i < listeners.length; i++)
+                                if (listeners[i] == val)
+                                {
+                                        EDFListener[] next = new EDFListener[listeners.length - 1];
+                                        System.arraycopy(listeners, 0, next, 0, i);
+                                        System.arraycopy(listeners, i + 1, next, i, next.length - i);
+                                        update(next);
+                                        return;
+                                }
+                }
+        }
+
+        /**
+         * @return the listener to notify or null if no listener is registered
+         */
+        static EDFListener listener()
+        {
+                return listener;
+        }
+
+        private static void update(EDFListener[] next)
+        {
+                listeners = next;
+                if (next.length == 0)
+                        listener = null;
+                else if (next.length == 1)
+                        listener = next[0];
+                else
+                        listener = new EDFListener()
+                        {
+                                @Override
+                                public void onPhase(Phase phase, long nanos, long bytes, int records)
+                                {
+                                        for (EDFListener l : next)
+                                                l.onPhase(phase, nanos, bytes, records);
+                                }
+
+                                @Override
+                                public void onAnnotations(int count)
+                                {
+                                        for (EDFListener l : next)
+                                                l.onAnnotations(count);
+                                }
+
+                                @Override
+                                public void onAllocation(long bytes)
+                                {
+                                        for (EDFListener l : next)
+                                                l.onAllocation(bytes);
+                                }
+                        };
+        }
+}
@@ -0,0 +1,301 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JDK Flight Recorder implementation of {@link EDFEvents}. This class is
+ * only loaded if the jdk.jfr module is present. While no recording enables an
+ * event the shared disabled instance of {@link EDFEvents} is returned, so
+ * nothing is allocated.
+ */
+final class EDFJfrEvents
+{
+        private static final EventType FILE_OPEN = EventType.getEventType(FileOpenEvent.class);
+        private static final EventType HEADER_PARSE = EventType.getEventType(HeaderParseEvent.class);
+        private static final EventType RECORD_DECODE = EventType.getEventType(RecordDecodeEvent.class);
+        private static final EventType ANNOTATION_PARSE = EventType.getEventType(AnnotationParseEvent.class);
+        private static final EventType WRITE_FLUSH = EventType.getEventType(WriteFlushEvent.class);
+
+        private EDFJfrEvents() {}
+
+        static EDFEvents.FileOpen fileOpen()
+        {
+                if (!FILE_OPEN.isEnabled())
+                        return EDFEvents.DISABLED_FILE_OPEN;
+                FileOpenEvent event = new FileOpenEvent();
+                return new EDFEvents.FileOpen()
+                {
+                        @Override
+                        void begin()
+                        {
+                                event.begin();
+                        }
+
+                        @Override
+                        boolean shouldCommit()
+                        {
+                                return event.shouldCommit();
+                        }
+
+                        @Override
+                        void commit()
+                        {
+                                event.path = path;
+                                event.channels = channels;
+                                event.records = records;
+                                event.bytes = bytes;
+                                event.commit();
+                        }
+                };
+        }
+
+        static EDFEvents.HeaderParse headerParse()
+        {
+                if (!HEADER_PARSE.isEnabled())
+                        return EDFEvents.DISABLED_HEADER_PARSE;
+                HeaderParseEvent event = new HeaderParseEvent();
+                return new EDFEvents.HeaderParse()
+                {
+                        @Override
+                        void begin()
+                        {
+                                event.begin();
+                        }
+
+                        @Override
+                        boolean shouldCommit()
+                        {
+                                return event.shouldCommit();
+                        }
+
+                        @Override
+                        void commit()
+                        {
+                                event.path = path;
+                                event.channels = channels;
+                                event.bytes = bytes;
+                                event.commit();
+                        }
+                };
+        }
+
+        static EDFEvents.RecordDecode recordDecode()
+        {
+                if (!RECORD_DECODE.isEnabled())
+                        return EDFEvents.DISABLED_RECORD_DECODE;
+                RecordDecodeEvent event = new RecordDecodeEvent();
+                return new EDFEvents.RecordDecode()
+                {
+                        @Override
+                        void begin()
+                        {
+                                event.begin();
+                        }
+
+                        @Override
+                        boolean shouldCommit()
+                        {
+                                return event.shouldCommit();
+                        }
+
+                        @Override
+                        void commit()
+                        {
+                                event.path = path;
+                                event.firstRecord = firstRecord;
+                                event.records = records;
+                                event.channels = channels;
+                                event.bytes = bytes;
+                                event.commit();
+                        }
+                };
+        }
+
+        static EDFEvents.AnnotationParse annotationParse()
+        {
+                if (!ANNOTATION_PARSE.isEnabled())
+                        return EDFEvents.DISABLED_ANNOTATION_PARSE;
+                AnnotationParseEvent event = new AnnotationParseEvent();
+                return new EDFEvents.AnnotationParse()
+                {
+                        @Override
+                        void begin()
+                        {
+                                event.begin();
+                        }
+
+                        @Override
+                        boolean shouldCommit()
+                        {
+                                return event.shouldCommit();
+                        }
+
+                        @Override
+                        void commit()
+                        {
+                                event.path = path;
+                                event.annotations = annotations;
+                                event.bytes = bytes;
+                                event.commit();
+                        }
+                };
+        }
+
+        static EDFEvents.WriteFlush writeFlush()
+        {
+                if (!WRITE_FLUSH.isEnabled())
+                        return EDFEvents.DISABLED_WRITE_FLUSH;
+                WriteFlushEvent event = new WriteFlushEvent();
+                return new EDFEvents.WriteFlush()
+                {
+                        @Override
+                        void begin()
+                        {
+                                event.begin();
+                        }
+
+                        @Override
+                        boolean shouldCommit()
+                        {
+                                return event.shouldCommit();
+                        }
+
+                        @Override
+                        void commit()
+                        {
+                                event.path = path;
+                                event.firstRecord = firstRecord;
+                                event.records = records;
+                                event.channels = channels;
+                                event.bytes = bytes;
+                                event.commit();
+                        }
+                };
+        }
+
+        @Name("ru.mipt.edf.FileOpen")
+        @Label("EDF File Open")
+        @Category("EDF4J")
+        @Description("Opening an EDF-File and parsing its header")
+        static final class FileOpenEvent extends Event
+        {
+                @Label("Path")
+                String path;
+
+                @Label("Channels")
+                int channels;
+
+                @Label("Records")
+                int records;
+
+                @Label("File Size")
+                @DataAmount
+                long bytes;
+        }
+
+        @Name("ru.mipt.edf.HeaderParse")
+        @Label("EDF Header Parse")
+        @Category("EDF4J")
+        @Description("Reading and parsing the header of an EDF-File")
+        static final class HeaderParseEvent extends Event
+        {
+                @Label("Path")
+                String path;
+
+                @Label("Channels")
+                int channels;
+
+                @Label("Bytes")
+                @DataAmount
+                long bytes;
+        }
+
+        @Name("ru.mipt.edf.RecordDecode")
+        @Label("EDF Record Batch Decode")
+        @Category("EDF4J")
+        @Description("Reading and decoding a batch of data records")
+        static final class RecordDecodeEvent extends Event
+        {
+                @Label("Path")
+                String path;
+
+                @Label("First Record")
+                int firstRecord;
+
+                @Label("Records")
+                int records;
+
+                @Label("Channels")
+                int channels;
+
+                @Label("Bytes")
+                @DataAmount
+                long bytes;
+        }
+
+        @Name("ru.mipt.edf.AnnotationParse")
+        @Label("EDF Annotation Parse")
+        @Category("EDF4J")
+        @Description("Parsing the annotation channel of an EDF+ file")
+        static final class AnnotationParseEvent extends Event
+        {
+                @Label("Path")
+                String path;
+
+                @Label("Annotations")
+                int annotations;
+
+                @Label("Bytes")
+                @DataAmount
+                long bytes;
+        }
+
+        @Name("ru.mipt.edf.WriteFlush")
+        @Label("EDF Write Flush")
+        @Category("EDF4J")
+        @Description("Writing a header or data records")
+        static final class WriteFlushEvent extends Event
+        {
+                @Label("Path")
+                String path;
+
+                @Label("First Record")
+                int firstRecord;
+
+                @Label("Records")
+                int records;
+
+                @Label("Channels")
+                int channels;
+
+                @Label("Bytes")
+                @DataAmount
+                long bytes;
+        }
+}
@@ -0,0 +1,80 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+/**
+ * A listener for the work done by {@link EDFParser}, {@link EDFWriter} and
+ * {@link EDFReader}. Listeners are registered with
+ * {@link EDFInstrumentation#addListener(EDFListener)} and are called on the
+ * thread doing the work, so they should return quickly and be thread safe.
+ * When no listener is registered no timings are taken.
+ */
+public interface EDFListener
+{
+        /**
+         * The phases of parsing and writing an EDF-File.
+         */
+        enum Phase
+        {
+                /** Reading and parsing the header */
+                HEADER,
+                /** Reading the bytes of data records */
+                READ,
+                /** De-interleaving the samples of data records into channels */
+                DECODE,
+                /** Converting digital values into physical values */
+                CONVERT,
+                /** Parsing the annotation channel */
+                ANNOTATIONS,
+                /** Writing a header or data records */
+                WRITE
+        }
+
+        /**
+         * Called after a phase is completed.
+         *
+         * @param phase    the completed phase
+         * @param nanos    the duration of the phase in nanoseconds
+         * @param bytes    the number of bytes read or written, 0 if the phase has no I/O
+         * @param records  the number of data records processed, 0 if unknown
+         */
+        default void onPhase(Phase phase, long nanos, long bytes, int records)
+        {
+        }
+
+        /**
+         * Called after annotations are parsed.
+         *
+         * @param count  the number of parsed annotations
+         */
+        default void onAnnotations(int count)
+        {
+        }
+
+        /**
+         * Called when a buffer for samples or record bytes is allocated.
+         *
+         * @param bytes  the size of the buffer in bytes
+         */
+        default void onAllocation(long bytes)
+        {
+        }
+}
@@ -0,0 +1,213 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EDFListener} which keeps counters and a histogram of the durations
+ * per phase. The histogram has power of two buckets, bucket i counts the
+ * durations from 2^i up to 2^(i+1) nanoseconds.
+ *
+ * <pre>
+ * EDFMetrics metrics = new EDFMetrics();
+ * EDFInstrumentation.addListener(metrics);
+ * ...
+ * System.out.println(metrics);
+ * </pre>
+ */
+public class EDFMetrics implements EDFListener
+{
+        private static final int BUCKETS = 64;
+
+        private final Map<Phase, PhaseMetrics> phases = new EnumMap<>(Phase.class);
+        private final LongAdder annotations = new LongAdder();
+        private final LongAdder allocations = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        public EDFMetrics()
+        {
+                for (Phase phase : Phase.values())
+                        phases.put(phase, new PhaseMetrics());
+        }
+
+        @Override
+        public void onPhase(Phase phase, long nanos, long bytes, int records)
+        {
+                PhaseMetrics metrics = phases.get(phase);
+                metrics.count.increment();
+                metrics.nanos.add(nanos);
+                metrics.bytes.add(bytes);
+                metrics.records.add(records);
+                metrics.histogram.incrementAndGet(bucket(nanos));
+        }
+
+        @Override
+        public void onAnnotations(int count)
+        {
+                annotations.add(count);
+        }
+
+        @Override
+        public void onAllocation(long bytes)
+        {
+                allocations.increment();
+                allocatedBytes.add(bytes);
+        }
+
+        /**
+         * @return how often the phase was completed
+         */
+        public long getCount(Phase phase)
+        {
+                return phases.get(phase).count.sum();
+        }
+
+        /**
+         * @return the total duration of the phase in nanoseconds
+         */
+        public long getNanos(Phase phase)
+        {
+                return phases.get(phase).nanos.sum();
+        }
+
+        public long getBytes(Phase phase)
+        {
+                return phases.get(phase).bytes.sum();
+        }
+
+        public long getRecords(Phase phase)
+        {
+                return phases.get(phase).records.sum();
+        }
+
+        /**
+         * @return the throughput of the phase in MB/s, 0 if the phase took no time
+         */
+        public double getThroughput(Phase phase)
+        {
+                long nanos = getNanos(phase);
+                return nanos == 0 ? 0 : getBytes(phase) * 1000.0 / nanos;
+        }
+
+        /**
+         * @return the number of durations per power of two bucket
+         */
+        public long[] getHistogram(Phase phase)
+        {
+                AtomicLongArray histogram = phases.get(phase).histogram;
+                long[] values = new long[BUCKETS];
+                for (int i = 0; i < BUCKETS; i++)
+                        values[i] = histogram.get(i);
+                return values;
+        }
+
+        /**
+         * @param percentile  the percentile between 0 and 100
+         * @return the upper bound of the bucket of the percentile in nanoseconds, 0 if the phase was never
+         *         completed
+         */
+        public long getPercentile(Phase phase, double percentile)
+        {
+                long[] histogram = getHistogram(phase);
+                long total = 0;
+                for (long count : histogram)
+                        total += count;
+                long rank = (long) Math.ceil(total * percentile / 100);
+                long seen = 0;
+                for (int i = 0; i < BUCKETS; i++)
+                {
+                        seen += histogram[i];
+                        if (seen >= rank && seen > 0)
+                                return i >= 62 ? Long.MAX_VALUE : 2L << i;
+                }
+                return 0;
+        }
+
+        public long getAnnotations()
+        {
+                return annotations.sum();
+        }
+
+        public long getAllocations()
+        {
+                return allocations.sum();
+        }
+
+        public long getAllocatedBytes()
+        {
+                return allocatedBytes.sum();
+        }
+
+        /**
+         * Reset all counters. Events recorded while resetting may be partly lost.
+         */
+        public void reset()
+        {
+                for (PhaseMetrics metrics : phases.values())
+                {
+                        metrics.count.reset();
+                        metrics.nanos.reset();
+                        metrics.bytes.reset();
+                        metrics.records.reset();
+                        for (int i = 0; i < BUCKETS; i++)
+                                metrics.histogram.set(i, 0);
+                }
+                annotations.reset();
+                allocations.reset();
+                allocatedBytes.reset();
+        }
+
+        @Override
+        public String toString()
+        {
+                StringBuilder sb = new StringBuilder();
+                for (Phase phase : Phase.values())
+                {
+                        long count = getCount(phase);
+                        if (count == 0)
+                                continue;
+                        sb.append(String.format("%-11s count=%d time=%.3fms bytes=%d records=%d throughput=%.1fMB/s "
+                                                + "p99<=%dns%n", phase, count, getNanos(phase) / 1e6, getBytes(phase),
+                                                getRecords(phase), getThroughput(phase), getPercentile(phase, 99)));
+                }
+                sb.append(String.format("annotations=%d allocations=%d allocatedBytes=%d", getAnnotations(),
+                                        getAllocations(), getAllocatedBytes()));
+                return sb.toString();
+        }
+
+        private static int bucket(long nanos)
+        {
+                return nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        }
+
+        private static final class PhaseMetrics
+        {
+                final LongAdder count = new LongAdder();
+                final LongAdder nanos = new LongAdder();
+                final LongAdder bytes = new LongAdder();
+                final LongAdder records = new LongAdder();
+                final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        }
+}
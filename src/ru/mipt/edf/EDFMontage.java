@@ -0,0 +1,284 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class defines virtual channels, for example the derivations of a
+ * bipolar or an average reference montage, as linear combinations of the
+ * channels of a sample source. Nothing is computed in advance: a read of a
+ * window reads the source channels of the window once and combines them, so
+ * switching montages costs no memory. Reading through
+ * {@link EDFBlockCache#cached(EDFReader)} shares the decoded blocks between
+ * derivations and windows.
+ *
+ * <pre>
+ * EDFMontage montage = new EDFMontage(cache.cached(reader)).bipolar("Fp1-F3", fp1, f3).bipolar("F3-C3", f3, c3);
+ * double[][] page = montage.readPhysicalSamples(new int[] { 0, 1 }, firstSample, 10 * 256);
+ * </pre>
+ */
+public class EDFMontage implements EDFSampleSource
+{
+        private static final int DIGITAL_MAX = 32767;
+
+        private static final class Derivation
+        {
+                final String label;
+                final int[] channels;
+                final double[] weights;
+
+                Derivation(String label, int[] channels, double[] weights)
+                {
+                        this.label = label;
+                        this.channels = channels;
+                        this.weights = weights;
+                }
+        }
+
+        private final EDFSampleSource source;
+        private final List<Derivation> derivations = new ArrayList<>();
+        private EDFHeader header;
+
+        public EDFMontage(EDFSampleSource source)
+        {
+                this.source = source;
+        }
+
+        /**
+         * Add a virtual channel which is the weighted sum of source channels
+         * with the same sampling rate.
+         *
+         * @param label     the label of the virtual channel
+         * @param channels  the indices of the source channels
+         * @param weights   the weights of the source channels
+         */
+        public EDFMontage add(String label, int[] channels, double[] weights)
+        {
+                if (channels.length == 0 || channels.length != weights.length)
+                        throw new IllegalArgumentException("A virtual channel needs a weight for each of at least one "
+                                                           + "source channel.");
+                EDFHeader sourceHeader = source.getHeader();
+                for (int channel : channels)
+                {
+                        if (channel < 0 || channel >= sourceHeader.numberOfChannels)
+                                throw new IndexOutOfBoundsException("Channel " + channel + " of "
+                                                                    + sourceHeader.numberOfChannels);
+                        if (EDFChannelExtractor.isAnnotationChannel(sourceHeader, channel))
+                                throw new IllegalArgumentException("Channel " + channel + " is an annotation channel.");
+                        if (!sourceHeader.numberOfSamples[channel].equals(sourceHeader.numberOfSamples[channels[0]]))
+                                throw new IllegalArgumentException("The channels of " + label
+                                                                   + " have different sampling rates.");
+                }
+                derivations.add(new Derivation(label, channels.clone(), weights.clone()));
+                header = null;
+                return this;
+        }
+
+        /**
+         * Add the difference of a channel and a reference channel.
+         */
+        public EDFMontage bipolar(String label, int channel, int reference)
+        {
+                return add(label, new int[] { channel, reference }, new double[] { 1, -1 });
+        }
+
+        /**
+         * Add the difference of a channel and the mean of reference channels,
+         * which may include the channel itself.
+         */
+        public EDFMontage averageReference(String label, int channel, int... references)
+        {
+                int[] channels = new int[references.length + 1];
+                double[] weights = new double[references.length + 1];
+                channels[0] = channel;
+                weights[0] = 1;
+                int n = 1;
+                for (int reference : references)
+                {
+                        int index = 0;
+                        while (index < n && channels[index] != reference)
+                                index++;
+                        channels[index] = reference;
+                        weights[index] -= 1.0 / references.length;
+                        n = Math.max(n, index + 1);
+                }
+                return add(label, Arrays.copyOf(channels, n), Arrays.copyOf(weights, n));
+        }
+
+        /**
+         * Add the average reference derivation of each of the channels against
+         * all of them, labeled with the label of the channel and "-AVG".
+         */
+        public EDFMontage averageReference(int... channels)
+        {
+                for (int channel : channels)
+                {
+                        if (channel < 0 || channel >= source.getHeader().numberOfChannels)
+                                throw new IndexOutOfBoundsException("Channel " + channel + " of "
+                                                                    + source.getHeader().numberOfChannels);
+                        averageReference(source.getHeader().channelLabels[channel].trim() + "-AVG", channel, channels);
+                }
+                return this;
+        }
+
+        /**
+         * @return the header of the virtual channels, the physical range of a
+         *         channel is the largest range its source channels can produce
+         */
+        @Override
+        public EDFHeader getHeader()
+        {
+                if (header != null)
+                        return header;
+                EDFHeader sourceHeader = source.getHeader();
+                EDFHeader h = new EDFHeader();
+                h.idCode = sourceHeader.idCode;
+                h.subjectID = sourceHeader.subjectID;
+                h.recordingID = sourceHeader.recordingID;
+                h.startDate = sourceHeader.startDate;
+                h.startTime = sourceHeader.startTime;
+                h.formatVersion = sourceHeader.formatVersion;
+                h.numberOfRecords = sourceHeader.numberOfRecords;
+                h.durationOfRecords = sourceHeader.durationOfRecords;
+                h.numberOfChannels = derivations.size();
+                h.bytesInHeader = EDFConstants.HEADER_SIZE_RECORDING_INFO
+                                  + h.numberOfChannels * EDFConstants.HEADER_SIZE_PER_CHANNEL;
+                h.channelLabels = new String[h.numberOfChannels];
+                h.transducerTypes = new String[h.numberOfChannels];
+                h.dimensions = new String[h.numberOfChannels];
+                h.minInUnits = new Double[h.numberOfChannels];
+                h.maxInUnits = new Double[h.numberOfChannels];
+                h.digitalMin = new Integer[h.numberOfChannels];
+                h.digitalMax = new Integer[h.numberOfChannels];
+                h.prefilterings = new String[h.numberOfChannels];
+                h.numberOfSamples = new Integer[h.numberOfChannels];
+                h.reserveds = new byte[h.numberOfChannels][];
+                for (int i = 0; i < h.numberOfChannels; i++)
+                {
+                        Derivation derivation = derivations.get(i);
+                        int first = derivation.channels[0];
+                        double range = 0;
+                        for (int j = 0; j < derivation.channels.length; j++)
+                        {
+                                int channel = derivation.channels[j];
+                                range += Math.abs(derivation.weights[j])
+                                         * Math.max(Math.abs(sourceHeader.minInUnits[channel]),
+                                                    Math.abs(sourceHeader.maxInUnits[channel]));
+                        }
+                        if (range == 0)
+                                range = 1;
+                        h.channelLabels[i] = derivation.label;
+                        h.transducerTypes[i] = sourceHeader.transducerTypes[first];
+                        h.dimensions[i] = sourceHeader.dimensions[first];
+                        h.minInUnits[i] = -range;
+                        h.maxInUnits[i] = range;
+                        h.digitalMin[i] = -DIGITAL_MAX;
+                        h.digitalMax[i] = DIGITAL_MAX;
+                        h.prefilterings[i] = sourceHeader.prefilterings[first];
+                        h.numberOfSamples[i] = sourceHeader.numberOfSamples[first];
+                        h.reserveds[i] = new byte[EDFConstants.RESERVED_SIZE];
+                        Arrays.fill(h.reserveds[i], (byte) ' ');
+                }
+                header = h;
+                return h;
+        }
+
+        @Override
+        public long getNumberOfSamples(int channel)
+        {
+                return source.getNumberOfSamples(derivations.get(channel).channels[0]);
+        }
+
+        @Override
+        public double getUnitsInDigit(int channel)
+        {
+                EDFHeader h = getHeader();
+                // the same scaling as EDFSignal.getUnitsInDigit()
+                return (h.maxInUnits[channel] - h.minInUnits[channel]) / (h.digitalMax[channel] - h.digitalMin[channel]);
+        }
+
+        /**
+         * Read the values of a virtual channel quantized to the digital range
+         * of the header of this montage.
+         */
+        @Override
+        public short[] readDigitalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+        {
+                double[] values = readPhysicalSamples(channel, firstSample, numberOfSamples);
+                double unitsInDigit = getUnitsInDigit(channel);
+                short[] digitalValues = new short[values.length];
+                for (int i = 0; i < values.length; i++)
+                        digitalValues[i] = (short) Math.max(-DIGITAL_MAX, Math.min(DIGITAL_MAX,
+                                                                                   Math.round(values[i] / unitsInDigit)));
+                return digitalValues;
+        }
+
+        @Override
+        public double[] readPhysicalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+        {
+                return readPhysicalSamples(new int[] { channel }, firstSample, numberOfSamples)[0];
+        }
+
+        /**
+         * Read the physical values of several virtual channels with the same
+         * sampling rate. Every source channel is read once.
+         *
+         * @param channels          the indices of the virtual channels
+         * @param firstSample       the index of the first sample of the channels
+         * @param numberOfSamples   the number of samples
+         * @return the physical values per requested channel
+         * @throws IOException      if the samples can not be read
+         */
+        public double[][] readPhysicalSamples(int[] channels, long firstSample, int numberOfSamples) throws IOException
+        {
+                EDFHeader h = getHeader();
+                for (int channel : channels)
+                        if (!h.numberOfSamples[channel].equals(h.numberOfSamples[channels[0]]))
+                                throw new IllegalArgumentException("The channels " + Arrays.toString(channels)
+                                                                   + " have different sampling rates.");
+                short[][] digitalValues = new short[source.getHeader().numberOfChannels][];
+                double[][] values = new double[channels.length][];
+                for (int i = 0; i < channels.length; i++)
+                {
+                        Derivation derivation = derivations.get(channels[i]);
+                        double[] sum = null;
+                        for (int j = 0; j < derivation.channels.length; j++)
+                        {
+                                int channel = derivation.channels[j];
+                                if (digitalValues[channel] == null)
+                                        digitalValues[channel] = source.readDigitalSamples(channel, firstSample,
+                                                                                           numberOfSamples);
+                                short[] digital = digitalValues[channel];
+                                if (sum == null)
+                                        sum = new double[digital.length];
+                                double factor = derivation.weights[j] * source.getUnitsInDigit(channel);
+                                for (int k = 0; k < sum.length; k++)
+                                        sum[k] += digital[k] * factor;
+                        }
+                        values[i] = sum;
+                }
+                return values;
+        }
+}
@@ -20,11 +20,13 @@
  */
 package ru.mipt.edf;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,8 +53,45 @@ public class EDFParser
          */
         public static EDFParserResult parseEDF(InputStream is) throws EDFParserException
         {
-                EDFParserResult result = parseHeader(is);
-                parseSignal(is, result);
+                return parseEDF(is, null, null);
+        }
+
+        /**
+         * Parse the InputStream of the EDF-File at the path, the path is only
+         * used for the recorded events.
+         */
+        static EDFParserResult parseEDF(InputStream is, String path) throws EDFParserException
+        {
+                return parseEDF(is, path, null);
+        }
+
+        /**
+         * Parse the InputStream which should be at the start of an EDF-File and
+         * filter the physical values while they are converted, every data record
+         * of a channel is passed to the filter of the channel in order. The
+         * digital values stay unfiltered.
+         *
+         * @param is
+         *            the InputStream to the EDF-File
+         * @param filters
+         *            the filters per channel of the EDF-File
+         * @return the parsed result
+         * @throws EDFParserException
+         *             if there is an error during parsing
+         */
+        public static EDFParserResult parseEDF(InputStream is, EDFFilterBank filters) throws EDFParserException
+        {
+                return parseEDF(is, null, filters);
+        }
+
+        static EDFParserResult parseEDF(InputStream is, String path, EDFFilterBank filters) throws EDFParserException
+        {
+                EDFParserResult result = parseHeader(is, path);
+                if (filters != null && filters.getNumberOfChannels() != result.getHeader().numberOfChannels)
+                        throw new IllegalArgumentException("The filter bank has " + filters.getNumberOfChannels()
+                                                           + " channels, the EDF-File "
+                                                           + result.getHeader().numberOfChannels + ".");
+                parseSignal(is, result, path, filters);
 
                 return result;
         }
@@ -69,6 +108,15 @@ public class EDFParser
          */
         public static EDFParserResult parseHeader(InputStream is) throws EDFParserException
         {
+                return parseHeader(is, null);
+        }
+
+        static EDFParserResult parseHeader(InputStream is, String path) throws EDFParserException
+        {
+                EDFListener listener = EDFInstrumentation.listener();
+                long start = listener == null ? 0 : System.nanoTime();
+                EDFEvents.HeaderParse event = EDFEvents.headerParse();
+                event.begin();
                 try
                 {
                         EDFHeader header = new EDFHeader();
@@ -94,6 +142,15 @@ public class EDFParser
 
                         parseChannelInformation(is, result);
 
+                        if (listener != null)
+                                listener.onPhase(EDFListener.Phase.HEADER, System.nanoTime() - start, header.bytesInHeader, 0);
+                        if (event.shouldCommit())
+                        {
+                                event.path = path;
+                                event.channels = header.numberOfChannels;
+                                event.bytes = header.bytesInHeader;
+                                event.commit();
+                        }
                         return result;
                 } catch (IOException e)
                 {
@@ -101,6 +158,33 @@ public class EDFParser
                 }
         }
 
+        /**
+         * Parse the header of an EDF-File with positional reads on the channel.
+         * Only the header bytes are read and the position of the channel is not
+         * changed.
+         *
+         * @param ch
+         *            the FileChannel to the EDF-File
+         * @return the parsed result
+         * @throws EDFParserException
+         *             if there is an error during parsing
+         */
+        public static EDFParserResult parseHeader(FileChannel ch) throws EDFParserException
+        {
+                return parseHeader(ch, null);
+        }
+
+        static EDFParserResult parseHeader(FileChannel ch, String path) throws EDFParserException
+        {
+                try
+                {
+                        return parseHeader(new ByteArrayInputStream(ParseUtils.readHeaderBytes(ch)), path);
+                } catch (IOException e)
+                {
+                        throw new EDFParserException(e);
+                }
+        }
+
         /**
          * Parse only data EDF file. This method should be invoked only after
          * parseHeader method.
@@ -110,14 +194,20 @@ public class EDFParser
          *            stream with EDF file.
          * @param result
          *            results from {parseHeader(is) parseHeader} method
+         * @param path
+         *            the path of the EDF file for the recorded events or null
+         * @param filters
+         *            the filters of the physical values or null
          * @throws EDFParserException
          *             throws if parser don't recognized EDF (EDF+) format in
          *             stream.
          */
-        private static void parseSignal(InputStream is, EDFParserResult result) throws EDFParserException
+        static void parseSignal(InputStream is, EDFParserResult result, String path, EDFFilterBank filters)
+                        throws EDFParserException
         {
                 try
                 {
+                        EDFListener listener = EDFInstrumentation.listener();
                         EDFSignal signal = new EDFSignal();
                         EDFHeader header = result.getHeader();
 
@@ -143,24 +233,135 @@ public class EDFParser
                         ReadableByteChannel ch = Channels.newChannel(is);
                         ByteBuffer bytebuf = ByteBuffer.allocate(samplesPerRecord * 2);
                         bytebuf.order(ByteOrder.LITTLE_ENDIAN);
+                        if (listener != null)
+                                listener.onAllocation((long) header.numberOfRecords * samplesPerRecord * 10
+                                                      + samplesPerRecord * 2);
 
+                        // without filters or a listener the values are converted while they are decoded, otherwise
+                        // in a pass of their own
+                        boolean convert = filters == null && listener == null;
+                        EDFEvents.RecordDecode event = EDFEvents.recordDecode();
+                        event.begin();
+                        long readNanos = 0;
+                        long decodeNanos = 0;
+                        long bytesRead = 0;
                         for (int i = 0; i < header.numberOfRecords; i++)
                         {
+                                long start = listener == null ? 0 : System.nanoTime();
                                 bytebuf.rewind();
-                                ch.read(bytebuf);
+                                // a stream may return a data record in several parts
+                                while (bytebuf.hasRemaining())
+                                {
+                                        int len = ch.read(bytebuf);
+                                        if (len < 0)
+                                                throw new EDFParserException("The stream ends in data record " + i
+                                                                             + " of " + header.numberOfRecords + ".",
+                                                                             null);
+                                        bytesRead += len;
+                                }
                                 bytebuf.rewind();
+                                long read = listener == null ? 0 : System.nanoTime();
                                 for (int j = 0; j < header.numberOfChannels; j++)
-                                        for (int k = 0; k < header.numberOfSamples[j]; k++)
+                                {
+                                        int s = header.numberOfSamples[j] * i;
+                                        short[] digital = signal.digitalValues[j];
+                                        if (convert)
+                                        {
+                                                double[] physical = signal.valuesInUnits[j];
+                                                double unitsInDigit = signal.unitsInDigit[j];
+                                                for (int k = s; k < s + header.numberOfSamples[j]; k++)
+                                                {
+                                                        digital[k] = bytebuf.getShort();
+                                                        physical[k] = digital[k] * unitsInDigit;
+                                                }
+                                        }
+                                        else
+                                        {
+                                                for (int k = s; k < s + header.numberOfSamples[j]; k++)
+                                                        digital[k] = bytebuf.getShort();
+                                        }
+                                }
+                                if (listener != null)
+                                {
+                                        long decoded = System.nanoTime();
+                                        readNanos += read - start;
+                                        decodeNanos += decoded - read;
+                                }
+                        }
+                        if (event.shouldCommit())
+                        {
+                                event.path = path;
+                                event.records = header.numberOfRecords;
+                                event.channels = header.numberOfChannels;
+                                event.bytes = bytesRead;
+                                event.commit();
+                        }
+                        if (listener != null)
+                        {
+                                listener.onPhase(EDFListener.Phase.READ, readNanos, bytesRead, header.numberOfRecords);
+                                listener.onPhase(EDFListener.Phase.DECODE, decodeNanos, 0, header.numberOfRecords);
+                        }
+
+                        if (!convert)
+                        {
+                                long start = listener == null ? 0 : System.nanoTime();
+                                if (filters == null)
+                                {
+                                        for (int j = 0; j < header.numberOfChannels; j++)
                                         {
-                                                int s = header.numberOfSamples[j] * i + k;
-                                                signal.digitalValues[j][s] = bytebuf.getShort();
-                                                signal.valuesInUnits[j][s] = signal.digitalValues[j][s] * signal.unitsInDigit[j];
+                                                short[] digital = signal.digitalValues[j];
+                                                double[] physical = signal.valuesInUnits[j];
+                                                double unitsInDigit = signal.unitsInDigit[j];
+                                                for (int k = 0; k < digital.length; k++)
+                                                        physical[k] = digital[k] * unitsInDigit;
                                         }
+                                }
+                                else
+                                {
+                                        // a data record is filtered right after its conversion while it is in the cache
+                                        filters.forEachChannel(j -> {
+                                                short[] digital = signal.digitalValues[j];
+                                                double[] physical = signal.valuesInUnits[j];
+                                                double unitsInDigit = signal.unitsInDigit[j];
+                                                int n = header.numberOfSamples[j];
+                                                for (int s = 0; s < digital.length; s += n)
+                                                {
+                                                        for (int k = s; k < s + n; k++)
+                                                                physical[k] = digital[k] * unitsInDigit;
+                                                        filters.process(j, physical, s, n);
+                                                }
+                                        });
+                                }
+                                if (listener != null)
+                                        listener.onPhase(EDFListener.Phase.CONVERT, System.nanoTime() - start, 0,
+                                                         header.numberOfRecords);
                         }
 
+                        long start = listener == null ? 0 : System.nanoTime();
+                        EDFEvents.AnnotationParse annotationEvent = EDFEvents.annotationParse();
+                        annotationEvent.begin();
+                        int annotationChannel = header.indexOfChannel("EDF Annotations");
+                        long annotationBytes = annotationChannel < 0 ? 0
+                                               : 2L * header.numberOfRecords * header.numberOfSamples[annotationChannel];
                         result.annotations = parseAnnotation(header, signal);
+                        if (result.annotations != null && annotationEvent.shouldCommit())
+                        {
+                                annotationEvent.path = path;
+                                annotationEvent.annotations = result.annotations.size();
+                                annotationEvent.bytes = annotationBytes;
+                                annotationEvent.commit();
+                        }
+                        if (listener != null && result.annotations != null)
+                        {
+                                listener.onPhase(EDFListener.Phase.ANNOTATIONS, System.nanoTime() - start, 0,
+                                                 header.numberOfRecords);
+                                listener.onAnnotations(result.annotations.size());
+                        }
 
                         result.signal = signal;
+                } catch (EDFParserException e)
+                {
+                        throw e;
                 } catch (IOException e)
                 {
                         throw new EDFParserException(e);
@@ -199,14 +400,24 @@ public class EDFParser
 
         }
 
-        private static List<EDFAnnotation> parseAnnotations(byte[] b)
+        static List<EDFAnnotation> parseAnnotations(byte[] b)
+        {
+                return parseAnnotations(b, b.length);
+        }
+
+        /**
+         * Parse the TALs in the first length bytes. An annotation is only added
+         * when the next TAL starts, so the last annotation is dropped unless the
+         * bytes end with the start of another TAL.
+         */
+        static List<EDFAnnotation> parseAnnotations(byte[] b, int length)
         {
                 List<EDFAnnotation> annotations = new ArrayList<>();
                 int onSetIndex = 0;
                 int durationIndex = -1;
                 int annotationIndex = -2;
                 int endIndex = -3;
-                for (int i = 0; i < b.length - 1; i++)
+                for (int i = 0; i < length - 1; i++)
                 {
                         if (b[i] == 21)
                         {
@@ -290,7 +501,8 @@ public class EDFParser
                         for (int i = 0; i < header.reserveds.length; i++)
                         {
                                 header.reserveds[i] = new byte[RESERVED_SIZE];
-                                is.read(header.reserveds[i]);
+                                if (ParseUtils.readFully(is, header.reserveds[i], 0, RESERVED_SIZE) != RESERVED_SIZE)
+                                        throw new EDFParserException();
                         }
                 } catch (IOException e)
                 {
@@ -0,0 +1,463 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class checks the signal quality of the channels of a recording in one
+ * pass over the digital values of streamed data records. It counts samples at
+ * the limits of the digital range (saturation), finds runs of identical
+ * samples (flat lines) and keeps the standard deviation of every window. A
+ * window is a dropout if its standard deviation is far below the median of the
+ * channel. Annotation channels are not analyzed. Channels can be analyzed in
+ * parallel.
+ *
+ * <pre>
+ * EDFQualityAnalyzer analyzer = new EDFQualityAnalyzer(reader.getHeader()).window(1).flatLine(0.5).parallel(true);
+ * analyzer.analyze(reader);
+ * analyzer.writeReport(writer);
+ * </pre>
+ */
+public class EDFQualityAnalyzer
+{
+        /** The flag of a window with saturated samples */
+        public static final int SATURATED = 1;
+        /** The flag of a window with samples of a flat line */
+        public static final int FLAT = 2;
+        /** The flag of a window with a standard deviation far below the median of the channel */
+        public static final int DROPOUT = 4;
+
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        /**
+         * The quality of one channel.
+         */
+        public static final class ChannelQuality
+        {
+                private final int channel;
+                private final String label;
+                private final double samplingRate;
+                private final int windowLength;
+                private final long samples;
+                private final long saturatedSamples;
+                private final long flatSamples;
+                private final int flatLines;
+                private final long longestFlatLine;
+                private final float[] deviations;
+                private final byte[] flags;
+
+                ChannelQuality(int channel, String label, double samplingRate, int windowLength, long samples,
+                               long saturatedSamples, long flatSamples, int flatLines, long longestFlatLine,
+                               float[] deviations, byte[] flags)
+                {
+                        this.channel = channel;
+                        this.label = label;
+                        this.samplingRate = samplingRate;
+                        this.windowLength = windowLength;
+                        this.samples = samples;
+                        this.saturatedSamples = saturatedSamples;
+                        this.flatSamples = flatSamples;
+                        this.flatLines = flatLines;
+                        this.longestFlatLine = longestFlatLine;
+                        this.deviations = deviations;
+                        this.flags = flags;
+                }
+
+                public int getChannel()
+                {
+                        return channel;
+                }
+
+                public String getLabel()
+                {
+                        return label;
+                }
+
+                public long getNumberOfSamples()
+                {
+                        return samples;
+                }
+
+                /**
+                 * @return the number of samples at digitalMin or digitalMax or beyond
+                 */
+                public long getNumberOfSaturatedSamples()
+                {
+                        return saturatedSamples;
+                }
+
+                /**
+                 * @return the number of samples in flat lines
+                 */
+                public long getNumberOfFlatSamples()
+                {
+                        return flatSamples;
+                }
+
+                public int getNumberOfFlatLines()
+                {
+                        return flatLines;
+                }
+
+                /**
+                 * @return the duration of the longest run of identical samples in seconds
+                 */
+                public double getLongestFlatLine()
+                {
+                        return longestFlatLine / samplingRate;
+                }
+
+                public int getNumberOfWindows()
+                {
+                        return flags.length;
+                }
+
+                /**
+                 * @return the start of a window in seconds from the start of the recording
+                 */
+                public double getWindowStart(int window)
+                {
+                        return (double) window * windowLength / samplingRate;
+                }
+
+                /**
+                 * @return the standard deviation of the physical values of a window
+                 */
+                public float getDeviation(int window)
+                {
+                        return deviations[window];
+                }
+
+                /**
+                 * @return the flags SATURATED, FLAT and DROPOUT of a window
+                 */
+                public int getFlags(int window)
+                {
+                        return flags[window];
+                }
+
+                public int getNumberOfFlaggedWindows()
+                {
+                        int n = 0;
+                        for (byte flag : flags)
+                                if (flag != 0)
+                                        n++;
+                        return n;
+                }
+        }
+
+        /**
+         * The counters of a channel, updated by one thread at a time.
+         */
+        private static final class State
+        {
+                final int digitalMin;
+                final int digitalMax;
+                final int windowLength;
+                final int flatLength;
+
+                long samples;
+                long saturated;
+                long flatSamples;
+                int flatLines;
+                long longestRun;
+                int runValue;
+                long runStart;
+                // the sums of the digital values of the current window, exact for any window of shorts
+                long sum;
+                long sumOfSquares;
+                int count;
+                boolean windowSaturated;
+                boolean windowFlat;
+                float[] deviations = new float[64];
+                byte[] flags = new byte[64];
+                int windows;
+
+                State(int digitalMin, int digitalMax, int windowLength, int flatLength)
+                {
+                        this.digitalMin = digitalMin;
+                        this.digitalMax = digitalMax;
+                        this.windowLength = windowLength;
+                        this.flatLength = flatLength;
+                }
+
+                void process(short[] values)
+                {
+                        int i = 0;
+                        while (i < values.length)
+                        {
+                                int start = i;
+                                int end = Math.min(values.length, i + windowLength - count);
+                                for (; i < end; i++)
+                                {
+                                        int v = values[i];
+                                        if (v <= digitalMin || v >= digitalMax)
+                                        {
+                                                saturated++;
+                                                windowSaturated = true;
+                                        }
+                                        if (v != runValue || samples == 0)
+                                        {
+                                                endRun();
+                                                runValue = v;
+                                                runStart = samples;
+                                        }
+                                        else if (samples - runStart + 1 == flatLength)
+                                                startFlatLine();
+                                        else if (samples - runStart + 1 > flatLength)
+                                                windowFlat = true;
+                                        sum += v;
+                                        sumOfSquares += (long) v * v;
+                                        samples++;
+                                }
+                                count += end - start;
+                                if (count == windowLength)
+                                        endWindow();
+                        }
+                }
+
+                /**
+                 * The run reaches the length of a flat line, the windows since its start are flagged.
+                 */
+                private void startFlatLine()
+                {
+                        flatLines++;
+                        windowFlat = true;
+                        for (long w = runStart / windowLength; w < windows; w++)
+                                flags[(int) w] |= FLAT;
+                }
+
+                private void endRun()
+                {
+                        if (samples == 0)
+                                return;
+                        long length = samples - runStart;
+                        longestRun = Math.max(longestRun, length);
+                        if (length >= flatLength)
+                                flatSamples += length;
+                }
+
+                private void endWindow()
+                {
+                        if (windows == flags.length)
+                        {
+                                flags = Arrays.copyOf(flags, 2 * windows);
+                                deviations = Arrays.copyOf(deviations, 2 * windows);
+                        }
+                        double mean = (double) sum / count;
+                        double variance = Math.max(0, (double) sumOfSquares / count - mean * mean);
+                        deviations[windows] = (float) Math.sqrt(variance);
+                        flags[windows] |= (windowSaturated ? SATURATED : 0) | (windowFlat ? FLAT : 0);
+                        windows++;
+                        sum = 0;
+                        sumOfSquares = 0;
+                        count = 0;
+                        windowSaturated = false;
+                        // a flat line continuing into the next window flags it with its first identical sample
+                        windowFlat = false;
+                }
+        }
+
+        private final EDFHeader header;
+        private double windowDuration = 1;
+        private double flatLineDuration = 1;
+        private double dropoutRatio = 0.05;
+        private boolean parallel;
+        private State[] states;
+        private double[] unitsInDigit;
+
+        public EDFQualityAnalyzer(EDFHeader header)
+        {
+                this.header = header;
+        }
+
+        /**
+         * @param seconds the duration of a window, 1 second by default
+         */
+        public EDFQualityAnalyzer window(double seconds)
+        {
+                checkNotStarted();
+                assert seconds > 0;
+                windowDuration = seconds;
+                return this;
+        }
+
+        /**
+         * @param seconds the minimum duration of a run of identical samples to
+         *                count as flat line, 1 second by default
+         */
+        public EDFQualityAnalyzer flatLine(double seconds)
+        {
+                checkNotStarted();
+                assert seconds > 0;
+                flatLineDuration = seconds;
+                return this;
+        }
+
+        /**
+         * @param val a window is a dropout if its standard deviation is below
+         *            this fraction of the median of the channel, 0.05 by default
+         */
+        public EDFQualityAnalyzer dropoutRatio(double val)
+        {
+                assert val >= 0;
+                dropoutRatio = val;
+                return this;
+        }
+
+        /**
+         * @param val if channels are analyzed in parallel
+         */
+        public EDFQualityAnalyzer parallel(boolean val)
+        {
+                parallel = val;
+                return this;
+        }
+
+        /**
+         * Analyze the next data records.
+         *
+         * @param digitalValues the digital values per channel of the data records following the previous
+         *                      ones, null for channels which are skipped
+         */
+        public void process(short[][] digitalValues)
+        {
+                if (states == null)
+                        start();
+                IntStream channels = IntStream.range(0, states.length);
+                (parallel ? channels.parallel() : channels).forEach(i -> {
+                        if (states[i] != null && digitalValues[i] != null)
+                                states[i].process(digitalValues[i]);
+                });
+        }
+
+        /**
+         * Analyze all data records of a file.
+         */
+        public EDFQualityAnalyzer analyze(EDFReader reader) throws IOException
+        {
+                int recordsPerBuffer = Math.max(1, BUFFER_SIZE / Math.max(1, header.getBytesPerRecord()));
+                for (int first = 0; first < reader.getNumberOfRecords(); first += recordsPerBuffer)
+                        process(reader.readDigitalRecords(first, Math.min(recordsPerBuffer,
+                                                                          reader.getNumberOfRecords() - first)));
+                return this;
+        }
+
+        /**
+         * @return the quality of the analyzed channels, a last incomplete window
+         *         is not included
+         */
+        public List<ChannelQuality> getReport()
+        {
+                if (states == null)
+                        start();
+                List<ChannelQuality> report = new ArrayList<>();
+                for (int i = 0; i < states.length; i++)
+                {
+                        State state = states[i];
+                        if (state == null)
+                                continue;
+                        float[] deviations = new float[state.windows];
+                        for (int w = 0; w < deviations.length; w++)
+                                deviations[w] = (float) (state.deviations[w] * unitsInDigit[i]);
+                        byte[] flags = Arrays.copyOf(state.flags, state.windows);
+                        float[] sorted = deviations.clone();
+                        Arrays.sort(sorted);
+                        double threshold = sorted.length == 0 ? 0 : dropoutRatio * sorted[sorted.length / 2];
+                        for (int w = 0; w < deviations.length; w++)
+                                if (deviations[w] == 0 || deviations[w] < threshold)
+                                        flags[w] |= DROPOUT;
+                        // a flat line at the end of the data is not ended by a different sample
+                        long run = state.samples - state.runStart;
+                        long flatSamples = state.flatSamples + (state.samples > 0 && run >= state.flatLength ? run : 0);
+                        report.add(new ChannelQuality(i, header.channelLabels[i].trim(), header.getSamplingRate(i),
+                                                      state.windowLength, state.samples, state.saturated, flatSamples,
+                                                      state.flatLines, Math.max(state.longestRun, run), deviations,
+                                                      flags));
+                }
+                return Collections.unmodifiableList(report);
+        }
+
+        /**
+         * Write the report as tab separated values: a table with one line per
+         * channel, an empty line and a table with one line per flagged window.
+         */
+        public void writeReport(Writer writer) throws IOException
+        {
+                List<ChannelQuality> report = getReport();
+                writer.write("channel\tlabel\tsamples\tsaturated\tflat\tflat_lines\tlongest_flat_s\tflagged_windows\n");
+                for (ChannelQuality quality : report)
+                        writer.write(quality.channel + "\t" + quality.label + "\t" + quality.samples + "\t"
+                                     + quality.saturatedSamples + "\t" + quality.flatSamples + "\t" + quality.flatLines
+                                     + "\t" + quality.getLongestFlatLine() + "\t" + quality.getNumberOfFlaggedWindows()
+                                     + "\n");
+                writer.write("\nchannel\twindow\tstart_s\tdeviation\tflags\n");
+                for (ChannelQuality quality : report)
+                        for (int w = 0; w < quality.flags.length; w++)
+                                if (quality.flags[w] != 0)
+                                        writer.write(quality.channel + "\t" + w + "\t" + quality.getWindowStart(w) + "\t"
+                                                     + quality.deviations[w] + "\t" + flagNames(quality.flags[w]) + "\n");
+                writer.flush();
+        }
+
+        private static String flagNames(int flags)
+        {
+                List<String> names = new ArrayList<>();
+                if ((flags & SATURATED) != 0)
+                        names.add("SATURATED");
+                if ((flags & FLAT) != 0)
+                        names.add("FLAT");
+                if ((flags & DROPOUT) != 0)
+                        names.add("DROPOUT");
+                return String.join(",", names);
+        }
+
+        private void checkNotStarted()
+        {
+                if (states != null)
+                        throw new IllegalStateException("The analyzer is configured before the first data records.");
+        }
+
+        private void start()
+        {
+                states = new State[header.numberOfChannels];
+                unitsInDigit = new double[header.numberOfChannels];
+                for (int i = 0; i < states.length; i++)
+                {
+                        if (EDFChannelExtractor.isAnnotationChannel(header, i))
+                                continue;
+                        double rate = header.getSamplingRate(i);
+                        states[i] = new State(header.digitalMin[i], header.digitalMax[i],
+                                              (int) Math.max(1, Math.round(windowDuration * rate)),
+                                              (int) Math.max(2, Math.round(flatLineDuration * rate)));
+                        // the same scaling as EDFSignal.getUnitsInDigit()
+                        unitsInDigit[i] = (header.maxInUnits[i] - header.minInUnits[i])
+                                          / (header.digitalMax[i] - header.digitalMin[i]);
+                }
+        }
+}
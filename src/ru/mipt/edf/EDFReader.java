@@ -0,0 +1,461 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class gives random access to the data records of an EDF or EDF+ file.
+ * The header is parsed once when the reader is opened and every read is a
+ * positional read of the file, so one reader can serve any number of
+ * concurrent threads without a shared file position and without locks.
+ *
+ * Interrupting a thread while it reads closes the underlying FileChannel. The
+ * interrupted read fails with a ClosedByInterruptException, the file is opened
+ * again and the reads of the other threads are repeated on the new channel.
+ */
+public class EDFReader implements EDFSampleSource, Closeable
+{
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final Path file;
+        private final String path;
+        private volatile FileChannel channel;
+        private boolean closed;
+        private final Object fileKey;
+        private final EDFHeader header;
+        private final int numberOfRecords;
+        private final int bytesPerRecord;
+        private final int[] sampleOffsets;
+        private final double[] unitsInDigit;
+
+        /**
+         * Open an EDF-File for reading. If the number of data records in the
+         * header is -1 (recording still in progress) it is computed from the size
+         * of the file.
+         *
+         * @param path
+         *            the path to the EDF-File
+         * @throws IOException
+         *             if the file can not be opened or its header is not valid
+         */
+        public EDFReader(Path path) throws IOException
+        {
+                EDFEvents.FileOpen event = EDFEvents.fileOpen();
+                event.begin();
+                file = path;
+                this.path = path.toString();
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                try
+                {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        Object key = attributes.fileKey() != null ? attributes.fileKey()
+                                                                  : path.toAbsolutePath().normalize();
+                        fileKey = Arrays.asList(key, attributes.size(), attributes.lastModifiedTime());
+                        header = EDFParser.parseHeader(channel, this.path).getHeader();
+                        numberOfRecords = ParseUtils.numberOfRecords(header, channel.size());
+                        if (event.shouldCommit())
+                        {
+                                event.path = this.path;
+                                event.channels = header.numberOfChannels;
+                                event.records = numberOfRecords;
+                                event.bytes = attributes.size();
+                                event.commit();
+                        }
+                } catch (IOException e)
+                {
+                        channel.close();
+                        throw e;
+                }
+                bytesPerRecord = header.getBytesPerRecord();
+
+                sampleOffsets = new int[header.numberOfChannels];
+                for (int i = 1; i < sampleOffsets.length; i++)
+                        sampleOffsets[i] = sampleOffsets[i - 1] + header.numberOfSamples[i - 1];
+
+                // the same scaling as EDFSignal.getUnitsInDigit()
+                unitsInDigit = new double[header.numberOfChannels];
+                for (int i = 0; i < unitsInDigit.length; i++)
+                        unitsInDigit[i] = (header.maxInUnits[i] - header.minInUnits[i])
+                                          / (header.digitalMax[i] - header.digitalMin[i]);
+        }
+
+        @Override
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        public int getNumberOfRecords()
+        {
+                return numberOfRecords;
+        }
+
+        /**
+         * @param channel the index of the channel
+         * @return the number of samples of the channel in the file
+         */
+        @Override
+        public long getNumberOfSamples(int channel)
+        {
+                return (long) numberOfRecords * header.numberOfSamples[channel];
+        }
+
+        /**
+         * @param channel the index of the channel
+         * @return the factor to convert digital values of the channel into physical values
+         */
+        @Override
+        public double getUnitsInDigit(int channel)
+        {
+                return unitsInDigit[channel];
+        }
+
+        /**
+         * @param label the label of the channel
+         * @return the index of the channel
+         * @throws IllegalArgumentException if there is no channel with the label
+         */
+        public int getChannel(String label)
+        {
+                return EDFChannelExtractor.indexOf(header, label);
+        }
+
+        /**
+         * Read the digital values of all channels in the given range of data records.
+         *
+         * @param firstRecord       the index of the first data record
+         * @param numberOfRecords   the number of data records
+         * @return the digital values per channel
+         * @throws IOException      if the file can not be read
+         */
+        public short[][] readDigitalRecords(int firstRecord, int numberOfRecords) throws IOException
+        {
+                checkRecords(firstRecord, numberOfRecords);
+                short[][] values = new short[header.numberOfChannels][];
+                for (int i = 0; i < values.length; i++)
+                        values[i] = new short[Math.multiplyExact(numberOfRecords, header.numberOfSamples[i])];
+                int recordsPerBuffer = recordsPerBuffer(numberOfRecords);
+                ByteBuffer records = allocateRecords(recordsPerBuffer);
+                for (int done = 0; done < numberOfRecords; done += recordsPerBuffer)
+                {
+                        int n = Math.min(recordsPerBuffer, numberOfRecords - done);
+                        readRecords(firstRecord + done, n, records);
+                        for (int i = 0; i < values.length; i++)
+                                decode(records, i, 0, values[i], done * header.numberOfSamples[i],
+                                       n * header.numberOfSamples[i]);
+                }
+                return values;
+        }
+
+        /**
+         * Read digital values of a channel.
+         *
+         * @param channel           the index of the channel
+         * @param firstSample       the index of the first sample of the channel
+         * @param numberOfSamples   the number of samples
+         * @return the digital values
+         * @throws IOException      if the file can not be read
+         */
+        @Override
+        public short[] readDigitalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+        {
+                checkSamples(channel, firstSample, numberOfSamples);
+                short[] values = new short[numberOfSamples];
+                if (numberOfSamples == 0)
+                        return values;
+
+                // the data records are read in chunks, a long window of one channel needs little memory
+                int nos = header.numberOfSamples[channel];
+                int firstRecord = (int) (firstSample / nos);
+                int lastRecord = (int) ((firstSample + numberOfSamples - 1) / nos);
+                int recordsPerBuffer = recordsPerBuffer(lastRecord - firstRecord + 1);
+                ByteBuffer records = allocateRecords(recordsPerBuffer);
+                int skip = (int) (firstSample - (long) firstRecord * nos);
+                int done = 0;
+                for (int record = firstRecord; record <= lastRecord; record += recordsPerBuffer)
+                {
+                        int n = Math.min(recordsPerBuffer, lastRecord - record + 1);
+                        readRecords(record, n, records);
+                        int length = Math.min(numberOfSamples - done, n * nos - skip);
+                        decode(records, channel, skip, values, done, length);
+                        done += length;
+                        skip = 0;
+                }
+                return values;
+        }
+
+        /**
+         * Read the annotations of the annotation channels of an EDF+ file, the
+         * other channels are not decoded. The annotation channels are read one
+         * after the other: the result contains the annotations of the first
+         * annotation channel in the order of the data records, followed by the
+         * annotations of the next annotation channel, so the annotations of
+         * different channels are not merged by data record or onset.
+         *
+         * {@link EDFParser#parseEDF(java.io.InputStream)} only parses the first
+         * annotation channel and drops its last annotation. The result includes
+         * the last annotation of every channel, so for a file with one annotation
+         * channel it has one annotation more than the annotations of the parser.
+         *
+         * @return the annotations channel by channel, empty if there is no annotation channel
+         * @throws IOException if the file can not be read
+         */
+        public List<EDFAnnotation> readAnnotations() throws IOException
+        {
+                List<EDFAnnotation> annotations = new ArrayList<>();
+                int recordsPerBuffer = recordsPerBuffer(numberOfRecords);
+                ByteBuffer records = null;
+                short[] values = null;
+                byte[] b = null;
+                for (int i = 0; i < header.numberOfChannels; i++)
+                {
+                        if (!EDFChannelExtractor.isAnnotationChannel(header, i))
+                                continue;
+                        int nos = header.numberOfSamples[i];
+                        if (records == null)
+                                records = allocateRecords(recordsPerBuffer);
+                        if (values == null || values.length < recordsPerBuffer * nos)
+                        {
+                                values = new short[recordsPerBuffer * nos];
+                                b = new byte[values.length * 2 + 2];
+                        }
+                        for (int first = 0; first < numberOfRecords; first += recordsPerBuffer)
+                        {
+                                int n = Math.min(recordsPerBuffer, numberOfRecords - first);
+                                decode(readRecords(first, n, records), i, 0, values, 0, n * nos);
+                                int length = n * nos * 2;
+                                for (int k = 0; k < n * nos; k++)
+                                {
+                                        b[2 * k] = (byte) values[k];
+                                        b[2 * k + 1] = (byte) (values[k] >> 8);
+                                }
+                                // the start of another TAL ends the last annotation for the parser
+                                b[length] = '+';
+                                b[length + 1] = 0;
+                                annotations.addAll(EDFParser.parseAnnotations(b, length + 2));
+                        }
+                }
+                return annotations;
+        }
+
+        /**
+         * @return a sequential stream of all data records, one data record per element
+         */
+        public Stream<EDFRecord> records()
+        {
+                return records(1);
+        }
+
+        /**
+         * Stream the data records in blocks. A parallel stream splits the file by
+         * halving the range of data records.
+         *
+         * @param recordsPerItem the number of data records per element, the last element may contain less
+         * @return a sequential stream of all data records
+         */
+        public Stream<EDFRecord> records(int recordsPerItem)
+        {
+                if (recordsPerItem <= 0)
+                        throw new IllegalArgumentException("The number of records per item has to be positive.");
+                return StreamSupport.stream(new EDFRecordSpliterator(this, recordsPerItem, 0, numberOfRecords), false);
+        }
+
+        /**
+         * @return an identity of the file which changes when the file is modified
+         */
+        Object getFileKey()
+        {
+                return fileKey;
+        }
+
+        /**
+         * Read raw data records into a new buffer in little endian order.
+         */
+        ByteBuffer readRecords(int firstRecord, int numberOfRecords) throws IOException
+        {
+                checkRecords(firstRecord, numberOfRecords);
+                return readRecords(firstRecord, numberOfRecords, allocateRecords(numberOfRecords));
+        }
+
+        /**
+         * @return a buffer for the data records
+         * @throws IllegalArgumentException if the data records do not fit into a buffer
+         */
+        private ByteBuffer allocateRecords(int numberOfRecords)
+        {
+                long size = (long) numberOfRecords * bytesPerRecord;
+                if (size > Integer.MAX_VALUE)
+                        throw new IllegalArgumentException(numberOfRecords + " data records of " + bytesPerRecord
+                                                           + " bytes do not fit into a buffer.");
+                EDFListener listener = EDFInstrumentation.listener();
+                if (listener != null)
+                        listener.onAllocation(size);
+                return ByteBuffer.allocate((int) size);
+        }
+
+        /**
+         * @return the number of data records to read at once for a read of the given number of data records
+         */
+        private int recordsPerBuffer(int numberOfRecords)
+        {
+                return Math.max(1, Math.min(numberOfRecords, BUFFER_SIZE / Math.max(1, bytesPerRecord)));
+        }
+
+        /**
+         * Read raw data records into the buffer, which has to be large enough, in
+         * little endian order.
+         */
+        ByteBuffer readRecords(int firstRecord, int numberOfRecords, ByteBuffer records) throws IOException
+        {
+                checkRecords(firstRecord, numberOfRecords);
+                long size = (long) numberOfRecords * bytesPerRecord;
+                if (size > records.capacity())
+                        throw new IllegalArgumentException(numberOfRecords + " data records of " + bytesPerRecord
+                                                           + " bytes do not fit into the buffer.");
+                records.clear().limit((int) size);
+                records.order(ByteOrder.LITTLE_ENDIAN);
+                EDFListener listener = EDFInstrumentation.listener();
+                long start = listener == null ? 0 : System.nanoTime();
+                EDFEvents.RecordDecode event = EDFEvents.recordDecode();
+                event.begin();
+                readFully(records, header.bytesInHeader + (long) firstRecord * bytesPerRecord);
+                if (listener != null)
+                        listener.onPhase(EDFListener.Phase.READ, System.nanoTime() - start, records.position(),
+                                         numberOfRecords);
+                if (event.shouldCommit())
+                {
+                        event.path = path;
+                        event.firstRecord = firstRecord;
+                        event.records = numberOfRecords;
+                        event.channels = header.numberOfChannels;
+                        event.bytes = records.position();
+                        event.commit();
+                }
+                records.flip();
+                return records;
+        }
+
+        /**
+         * Copy samples of a channel out of raw data records.
+         *
+         * @param records   the raw data records starting at a record boundary
+         * @param channel   the index of the channel
+         * @param skip      the number of samples of the channel to skip in the records
+         * @param values    the array to copy into
+         * @param offset    the offset in the array
+         * @param length    the number of samples to copy
+         */
+        void decode(ByteBuffer records, int channel, int skip, short[] values, int offset, int length)
+        {
+                if (length == 0)
+                        return;
+                int nos = header.numberOfSamples[channel];
+                int record = skip / nos;
+                int sample = skip % nos;
+                for (int i = 0; i < length; record++, sample = 0)
+                {
+                        int position = record * bytesPerRecord + (sampleOffsets[channel] + sample) * 2;
+                        for (; sample < nos && i < length; sample++, i++, position += 2)
+                                values[offset + i] = records.getShort(position);
+                }
+        }
+
+        /**
+         * Read from the channel, opening the file again if an interrupt of any
+         * thread closed the channel.
+         */
+        private void readFully(ByteBuffer buffer, long position) throws IOException
+        {
+                int start = buffer.position();
+                while (true)
+                {
+                        FileChannel current = channel;
+                        try
+                        {
+                                ParseUtils.readFully(current, buffer, position);
+                                return;
+                        } catch (ClosedByInterruptException e)
+                        {
+                                reopen(current);
+                                throw e;
+                        } catch (ClosedChannelException e)
+                        {
+                                // closed by the interrupt of another thread
+                                reopen(current);
+                                buffer.position(start);
+                        }
+                }
+        }
+
+        private synchronized void reopen(FileChannel closedChannel) throws IOException
+        {
+                if (closed)
+                        throw new ClosedChannelException();
+                if (channel == closedChannel)
+                        channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+
+        private void checkChannel(int channel)
+        {
+                if (channel < 0 || channel >= header.numberOfChannels)
+                        throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+        }
+
+        private void checkRecords(int firstRecord, int numberOfRecords)
+        {
+                if (firstRecord < 0 || numberOfRecords < 0 || firstRecord + numberOfRecords > this.numberOfRecords)
+                        throw new IndexOutOfBoundsException("Records " + firstRecord + " to "
+                                                            + (firstRecord + numberOfRecords) + " of "
+                                                            + this.numberOfRecords + " do not exist.");
+        }
+
+        private void checkSamples(int channel, long firstSample, int numberOfSamples)
+        {
+                checkChannel(channel);
+                if (firstSample < 0 || numberOfSamples < 0 || firstSample + numberOfSamples > getNumberOfSamples(channel))
+                        throw new IndexOutOfBoundsException("Samples " + firstSample + " to "
+                                                            + (firstSample + numberOfSamples) + " of channel "
+                                                            + channel + " do not exist.");
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+                closed = true;
+                channel.close();
+        }
+}
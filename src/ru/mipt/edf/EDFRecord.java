@@ -0,0 +1,103 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents a block of consecutive data records of an EDF-File,
+ * decoded into the digital values of each channel.
+ */
+public class EDFRecord
+{
+        private final EDFSampleSource source;
+        int firstRecord;
+        int numberOfRecords;
+        final short[][] digitalValues;
+
+        EDFRecord(EDFSampleSource source)
+        {
+                this.source = source;
+                digitalValues = new short[source.getHeader().numberOfChannels][];
+        }
+
+        /**
+         * @return the index of the first data record in the file
+         */
+        public int getFirstRecord()
+        {
+                return firstRecord;
+        }
+
+        public int getNumberOfRecords()
+        {
+                return numberOfRecords;
+        }
+
+        /**
+         * @return the digital values per channel, null for channels which were not read
+         */
+        public short[][] getDigitalValues()
+        {
+                return digitalValues;
+        }
+
+        /**
+         * @param channel the index of the channel
+         * @return the physical values of the channel
+         */
+        public double[] getPhysicalValues(int channel)
+        {
+                short[] values = digitalValues[channel];
+                double unitsInDigit = source.getUnitsInDigit(channel);
+                double[] valuesInUnits = new double[values.length];
+                for (int i = 0; i < values.length; i++)
+                        valuesInUnits[i] = values[i] * unitsInDigit;
+                return valuesInUnits;
+        }
+
+        /**
+         * Read data records into this block. The arrays of the channels are
+         * reused if they have the right length and reuse is allowed.
+         *
+         * @param reader            the reader to read with
+         * @param firstRecord       the index of the first data record
+         * @param numberOfRecords   the number of data records
+         * @param channels          the indices of the channels to decode
+         * @param buffer            the buffer for the raw data records
+         * @param reuse             whether the arrays of the channels may be reused
+         */
+        void read(EDFReader reader, int firstRecord, int numberOfRecords, int[] channels, ByteBuffer buffer,
+                  boolean reuse) throws IOException
+        {
+                ByteBuffer records = reader.readRecords(firstRecord, numberOfRecords, buffer);
+                this.firstRecord = firstRecord;
+                this.numberOfRecords = numberOfRecords;
+                for (int channel : channels)
+                {
+                        int length = numberOfRecords * reader.getHeader().numberOfSamples[channel];
+                        if (!reuse || digitalValues[channel] == null || digitalValues[channel].length != length)
+                                digitalValues[channel] = new short[length];
+                        reader.decode(records, channel, 0, digitalValues[channel], 0, length);
+                }
+        }
+}
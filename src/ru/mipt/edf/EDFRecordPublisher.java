@@ -0,0 +1,209 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class publishes the data records of an EDF-File as a
+ * {@link Flow.Publisher}. A data record (or block of data records) is read
+ * and decoded only when a subscriber requested it, so a slow subscriber
+ * throttles the reading of the file. Every subscriber gets its own
+ * subscription over all data records of the file.
+ *
+ * If buffers are reused, a subscriber must not keep the arrays of an
+ * {@link EDFRecord} after its onNext returned.
+ */
+public class EDFRecordPublisher implements Flow.Publisher<EDFRecord>
+{
+        private final EDFReader reader;
+        private final Executor executor;
+        private int recordsPerItem = 1;
+        private int[] channels;
+        private boolean reuseBuffers = false;
+
+        /**
+         * @param reader    the reader of the EDF-File
+         * @param executor  the executor to read the file and to signal the subscribers on
+         */
+        public EDFRecordPublisher(EDFReader reader, Executor executor)
+        {
+                this.reader = reader;
+                this.executor = executor;
+                channels = new int[reader.getHeader().numberOfChannels];
+                for (int i = 0; i < channels.length; i++)
+                        channels[i] = i;
+        }
+
+        /**
+         * @param val the number of data records per published item
+         * @throws IllegalArgumentException if val is not positive
+         */
+        public EDFRecordPublisher recordsPerItem(int val)
+        {
+                if (val <= 0)
+                        throw new IllegalArgumentException("The number of records per item has to be positive.");
+                recordsPerItem = val;
+                return this;
+        }
+
+        /**
+         * @param val the indices of the channels to decode, the values of other channels are null
+         */
+        public EDFRecordPublisher channels(int... val)
+        {
+                for (int channel : val)
+                        if (channel < 0 || channel >= reader.getHeader().numberOfChannels)
+                                throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+                channels = val.clone();
+                return this;
+        }
+
+        /**
+         * @param val whether the same EDFRecord and arrays are published again after onNext returned
+         */
+        public EDFRecordPublisher reuseBuffers(boolean val)
+        {
+                reuseBuffers = val;
+                return this;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super EDFRecord> subscriber)
+        {
+                RecordSubscription subscription = new RecordSubscription(subscriber);
+                subscriber.onSubscribe(subscription);
+        }
+
+        private final class RecordSubscription implements Flow.Subscription, Runnable
+        {
+                private final Flow.Subscriber<? super EDFRecord> subscriber;
+                private final int recordsPerItem = EDFRecordPublisher.this.recordsPerItem;
+                private final int[] channels = EDFRecordPublisher.this.channels;
+                private final boolean reuseBuffers = EDFRecordPublisher.this.reuseBuffers;
+                private final AtomicLong requested = new AtomicLong();
+                private final AtomicInteger wip = new AtomicInteger();
+                private volatile boolean cancelled = false;
+                private volatile Throwable error = null;
+
+                // only accessed by the draining thread
+                private int nextRecord = 0;
+                private ByteBuffer buffer;
+                private EDFRecord record;
+
+                RecordSubscription(Flow.Subscriber<? super EDFRecord> subscriber)
+                {
+                        this.subscriber = subscriber;
+                }
+
+                @Override
+                public void request(long n)
+                {
+                        if (n <= 0)
+                        {
+                                error = new IllegalArgumentException("The number of requested items has to be "
+                                                                     + "positive, but was " + n + ".");
+                        } else
+                        {
+                                long current;
+                                do
+                                {
+                                        current = requested.get();
+                                } while (!requested.compareAndSet(current, current + Math.min(n, Long.MAX_VALUE
+                                                                                                  - current)));
+                        }
+                        drain();
+                }
+
+                @Override
+                public void cancel()
+                {
+                        cancelled = true;
+                }
+
+                private void drain()
+                {
+                        if (wip.getAndIncrement() == 0)
+                                executor.execute(this);
+                }
+
+                @Override
+                public void run()
+                {
+                        int missed = 1;
+                        do
+                        {
+                                if (!emit())
+                                        return;
+                                missed = wip.addAndGet(-missed);
+                        } while (missed != 0);
+                }
+
+                /**
+                 * @return false if the subscription is terminated
+                 */
+                private boolean emit()
+                {
+                        int numberOfRecords = reader.getNumberOfRecords();
+                        while (!cancelled)
+                        {
+                                if (error != null)
+                                {
+                                        cancelled = true;
+                                        subscriber.onError(error);
+                                        return false;
+                                }
+                                if (nextRecord >= numberOfRecords)
+                                {
+                                        cancelled = true;
+                                        subscriber.onComplete();
+                                        return false;
+                                }
+                                if (requested.get() == 0)
+                                        return true;
+
+                                int records = Math.min(recordsPerItem, numberOfRecords - nextRecord);
+                                try
+                                {
+                                        if (buffer == null)
+                                                buffer = ByteBuffer.allocate(recordsPerItem
+                                                                             * reader.getHeader().getBytesPerRecord());
+                                        if (record == null || !reuseBuffers)
+                                                record = new EDFRecord(reader);
+                                        record.read(reader, nextRecord, records, channels, buffer, reuseBuffers);
+                                } catch (IOException | RuntimeException e)
+                                {
+                                        error = e;
+                                        continue;
+                                }
+                                nextRecord += records;
+                                requested.decrementAndGet();
+                                subscriber.onNext(record);
+                        }
+                        return false;
+                }
+        }
+}
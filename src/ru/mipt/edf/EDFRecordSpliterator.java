@@ -0,0 +1,111 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * This class is a Spliterator over blocks of data records of an EDF-File.
+ * It splits by halving the range of data records and every part reads its
+ * records with positional reads, so parallel streams over a file need no
+ * coordination between the threads.
+ */
+class EDFRecordSpliterator implements Spliterator<EDFRecord>
+{
+        private final EDFReader reader;
+        private final int recordsPerItem;
+        private final int[] channels;
+        private int firstRecord;
+        private final int endRecord;
+        private final int bufferSize;
+        private ByteBuffer buffer;
+
+        /**
+         * @throws IllegalArgumentException if the data records of an item do not fit into a buffer
+         */
+        EDFRecordSpliterator(EDFReader reader, int recordsPerItem, int firstRecord, int endRecord)
+        {
+                int bytesPerRecord = reader.getHeader().getBytesPerRecord();
+                long size = (long) recordsPerItem * bytesPerRecord;
+                if (size > Integer.MAX_VALUE)
+                        throw new IllegalArgumentException(recordsPerItem + " data records of " + bytesPerRecord
+                                                           + " bytes do not fit into a buffer.");
+                bufferSize = (int) size;
+                this.reader = reader;
+                this.recordsPerItem = recordsPerItem;
+                this.firstRecord = firstRecord;
+                this.endRecord = endRecord;
+                channels = new int[reader.getHeader().numberOfChannels];
+                for (int i = 0; i < channels.length; i++)
+                        channels[i] = i;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super EDFRecord> action)
+        {
+                if (firstRecord >= endRecord)
+                        return false;
+                int records = Math.min(recordsPerItem, endRecord - firstRecord);
+                EDFRecord record = new EDFRecord(reader);
+                try
+                {
+                        // a spliterator is traversed by one thread only, the raw buffer can be reused
+                        if (buffer == null)
+                                buffer = ByteBuffer.allocate(bufferSize);
+                        record.read(reader, firstRecord, records, channels, buffer, false);
+                } catch (IOException e)
+                {
+                        throw new UncheckedIOException(e);
+                }
+                firstRecord += records;
+                action.accept(record);
+                return true;
+        }
+
+        @Override
+        public Spliterator<EDFRecord> trySplit()
+        {
+                // at most half of the remaining data records, which fits into an int
+                long half = estimateSize() / 2 * recordsPerItem;
+                if (half == 0)
+                        return null;
+                EDFRecordSpliterator prefix = new EDFRecordSpliterator(reader, recordsPerItem, firstRecord,
+                                                                       firstRecord + (int) half);
+                firstRecord += (int) half;
+                return prefix;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+                return ((long) endRecord - firstRecord + recordsPerItem - 1) / recordsPerItem;
+        }
+
+        @Override
+        public int characteristics()
+        {
+                return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+}
@@ -0,0 +1,303 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.util.Arrays;
+
+/**
+ * This class resamples the channels of a recording to a common sampling rate
+ * while the data records are streamed, for example from
+ * {@link EDFReader#records(int)}. Every channel is resampled by a
+ * {@link Channel} with its own state, so the data records can be passed in any
+ * blocks and the result does not depend on the block boundaries. Annotation
+ * channels are not resampled.
+ *
+ * <pre>
+ * EDFResampler resampler = new EDFResampler(reader.getHeader(), 100);
+ * reader.records(60).forEachOrdered(record -&gt; model.feed(resampler.resample(record.getDigitalValues())));
+ * model.feed(resampler.flush());
+ * </pre>
+ */
+public class EDFResampler
+{
+        /**
+         * A polyphase FIR resampler of one channel by the rational factor L/M.
+         * The anti-aliasing filter is a Kaiser windowed sinc with a cutoff at the
+         * lower Nyquist frequency. Like resample_poly of SciPy its half length is
+         * 10 max(L, M) samples at the upsampled rate, so the transition band
+         * narrows as the factors grow. The delay of the filter is compensated,
+         * so output sample n is at the time of input sample n * M / L. The
+         * methods do not allocate.
+         */
+        public static final class Channel
+        {
+                private static final int HALF_LENGTH_FACTOR = 10;
+                private static final double KAISER_BETA = 5;
+                private static final int MAX_FACTOR = 10000;
+
+                private final int up;
+                private final int down;
+                private final int tapsPerPhase;
+                private final double[] coefficients;
+                private final double[] history;
+                private int write;
+                private int phase;
+                // the inputs to read before the first output, the delay of the filter
+                private int pending;
+                private long inputs;
+                private long outputs;
+
+                /**
+                 * @param inputRate     the sampling rate of the input
+                 * @param outputRate    the sampling rate of the output
+                 * @throws IllegalArgumentException if the ratio of the rates can not be expressed by factors up to
+                 *                                  10000
+                 */
+                public Channel(double inputRate, double outputRate)
+                {
+                        if (!(inputRate > 0) || !(outputRate > 0))
+                                throw new IllegalArgumentException("The sampling rates have to be positive.");
+                        long l = Math.round(outputRate * 1000);
+                        long m = Math.round(inputRate * 1000);
+                        long gcd = gcd(l, m);
+                        l /= gcd;
+                        m /= gcd;
+                        if (l > MAX_FACTOR || m > MAX_FACTOR)
+                                throw new IllegalArgumentException("Can not resample from " + inputRate + " to "
+                                                                   + outputRate + " Hz.");
+                        up = (int) l;
+                        down = (int) m;
+                        pending = (HALF_LENGTH_FACTOR * Math.max(up, down) + up - 1) / up;
+                        tapsPerPhase = 2 * pending;
+                        history = new double[2 * tapsPerPhase];
+                        coefficients = design(up, down, tapsPerPhase);
+                }
+
+                /**
+                 * @return the upper bound of the number of output samples for the number of input samples
+                 */
+                public int maxOutput(int inputSamples)
+                {
+                        return (int) (((long) inputSamples + 1) * up / down + 1);
+                }
+
+                /**
+                 * @return the upper bound of the number of output samples of {@link #flush(double[], int)}
+                 */
+                public int maxFlushOutput()
+                {
+                        return maxOutput(tapsPerPhase / 2);
+                }
+
+                /**
+                 * Resample input samples.
+                 *
+                 * @param in        the input samples
+                 * @param offset    the offset of the first input sample
+                 * @param length    the number of input samples
+                 * @param out       the array for the output samples, with room for {@link #maxOutput(int)} samples
+                 * @param outOffset the offset of the first output sample
+                 * @return the number of output samples
+                 */
+                public int process(double[] in, int offset, int length, double[] out, int outOffset)
+                {
+                        inputs += length;
+                        int o = outOffset;
+                        for (int i = offset; i < offset + length; i++)
+                                o = push(in[i], out, o, Long.MAX_VALUE);
+                        return o - outOffset;
+                }
+
+                /**
+                 * Resample input samples given as digital values.
+                 *
+                 * @see #process(double[], int, int, double[], int)
+                 */
+                public int process(short[] in, int offset, int length, double unitsInDigit, double[] out,
+                                   int outOffset)
+                {
+                        inputs += length;
+                        int o = outOffset;
+                        for (int i = offset; i < offset + length; i++)
+                                o = push(in[i] * unitsInDigit, out, o, Long.MAX_VALUE);
+                        return o - outOffset;
+                }
+
+                /**
+                 * Emit the output samples still delayed by the filter. The total
+                 * number of output samples is ceil(inputs * L / M). The channel can
+                 * not be used afterwards.
+                 *
+                 * @param out       the array for the output samples, with room for {@link #maxFlushOutput()}
+                 *                  samples
+                 * @param outOffset the offset of the first output sample
+                 * @return the number of output samples
+                 */
+                public int flush(double[] out, int outOffset)
+                {
+                        long total = (inputs * up + down - 1) / down;
+                        int o = outOffset;
+                        while (outputs < total)
+                                o = push(0, out, o, total);
+                        return o - outOffset;
+                }
+
+                private int push(double value, double[] out, int o, long limit)
+                {
+                        history[write] = value;
+                        history[write + tapsPerPhase] = value;
+                        write = write + 1 == tapsPerPhase ? 0 : write + 1;
+                        if (pending > 0)
+                        {
+                                pending--;
+                                return o;
+                        }
+                        // the window of the last inputs from the oldest to the newest starts at write
+                        for (; phase < up && outputs < limit; phase += down, outputs++)
+                        {
+                                double sum = 0;
+                                int c = phase * tapsPerPhase;
+                                for (int k = 0; k < tapsPerPhase; k++)
+                                        sum += coefficients[c + k] * history[write + k];
+                                out[o++] = sum;
+                        }
+                        phase -= up;
+                        return o;
+                }
+
+                /**
+                 * @return the coefficients per phase, ordered to be applied from the oldest to the newest input
+                 */
+                private static double[] design(int up, int down, int tapsPerPhase)
+                {
+                        int n = tapsPerPhase * up;
+                        double cutoff = 0.5 / Math.max(up, down);
+                        double center = n / 2.0;
+                        double[] h = new double[n];
+                        double sum = 0;
+                        for (int j = 0; j < n; j++)
+                        {
+                                double x = j - center;
+                                double sinc = x == 0 ? 1 : Math.sin(2 * Math.PI * cutoff * x) / (2 * Math.PI * cutoff * x);
+                                // the window is centered on a tap
+                                double r = x / center;
+                                double window = besselI0(KAISER_BETA * Math.sqrt(1 - r * r)) / besselI0(KAISER_BETA);
+                                h[j] = sinc * window;
+                                sum += h[j];
+                        }
+                        // every phase has a gain of about 1
+                        double[] coefficients = new double[n];
+                        for (int p = 0; p < up; p++)
+                                for (int k = 0; k < tapsPerPhase; k++)
+                                        coefficients[p * tapsPerPhase + tapsPerPhase - 1 - k] = h[p + k * up] * up / sum;
+                        return coefficients;
+                }
+
+                /**
+                 * @return the modified Bessel function of the first kind of order 0
+                 */
+                private static double besselI0(double x)
+                {
+                        double sum = 1;
+                        double term = 1;
+                        for (int k = 1; term > 1e-12 * sum; k++)
+                        {
+                                term *= (x / (2 * k)) * (x / (2 * k));
+                                sum += term;
+                        }
+                        return sum;
+                }
+
+                private static long gcd(long a, long b)
+                {
+                        return b == 0 ? a : gcd(b, a % b);
+                }
+        }
+
+        private final Channel[] channels;
+        private final double[] unitsInDigit;
+        private double[] buffer = new double[0];
+
+        /**
+         * @param header        the header of the recording
+         * @param targetRate    the sampling rate of all channels after resampling
+         */
+        public EDFResampler(EDFHeader header, double targetRate)
+        {
+                channels = new Channel[header.numberOfChannels];
+                unitsInDigit = new double[header.numberOfChannels];
+                for (int i = 0; i < channels.length; i++)
+                {
+                        if (EDFChannelExtractor.isAnnotationChannel(header, i))
+                                continue;
+                        channels[i] = new Channel(header.getSamplingRate(i), targetRate);
+                        // the same scaling as EDFSignal.getUnitsInDigit()
+                        unitsInDigit[i] = (header.maxInUnits[i] - header.minInUnits[i])
+                                          / (header.digitalMax[i] - header.digitalMin[i]);
+                }
+        }
+
+        /**
+         * Resample the next data records.
+         *
+         * @param digitalValues the digital values per channel of the data records following the previous
+         *                      ones, null for channels which are skipped
+         * @return the physical values per channel at the target rate, null for skipped and annotation channels
+         */
+        public double[][] resample(short[][] digitalValues)
+        {
+                double[][] values = new double[channels.length][];
+                for (int i = 0; i < channels.length; i++)
+                {
+                        if (channels[i] == null || digitalValues[i] == null)
+                                continue;
+                        ensureBuffer(channels[i].maxOutput(digitalValues[i].length));
+                        int n = channels[i].process(digitalValues[i], 0, digitalValues[i].length, unitsInDigit[i],
+                                                    buffer, 0);
+                        values[i] = Arrays.copyOf(buffer, n);
+                }
+                return values;
+        }
+
+        /**
+         * Emit the samples still delayed by the filters after the last data record.
+         *
+         * @return the physical values per channel at the target rate, null for annotation channels
+         */
+        public double[][] flush()
+        {
+                double[][] values = new double[channels.length][];
+                for (int i = 0; i < channels.length; i++)
+                {
+                        if (channels[i] == null)
+                                continue;
+                        ensureBuffer(channels[i].maxFlushOutput());
+                        values[i] = Arrays.copyOf(buffer, channels[i].flush(buffer, 0));
+                }
+                return values;
+        }
+
+        private void ensureBuffer(int length)
+        {
+                if (buffer.length < length)
+                        buffer = new double[length];
+        }
+}
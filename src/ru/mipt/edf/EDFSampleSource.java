@@ -0,0 +1,93 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+
+/**
+ * This interface gives access to the samples of the channels of a recording
+ * described by an EDFHeader, without requiring the recording to be in memory.
+ */
+public interface EDFSampleSource
+{
+        EDFHeader getHeader();
+
+        /**
+         * @param channel the index of the channel
+         * @return the number of samples of the channel
+         */
+        long getNumberOfSamples(int channel);
+
+        /**
+         * @param channel the index of the channel
+         * @return the factor to convert digital values of the channel into physical values
+         */
+        double getUnitsInDigit(int channel);
+
+        /**
+         * Read digital values of a channel.
+         *
+         * @param channel           the index of the channel
+         * @param firstSample       the index of the first sample of the channel
+         * @param numberOfSamples   the number of samples
+         * @return the digital values
+         * @throws IOException      if the samples can not be read
+         */
+        short[] readDigitalSamples(int channel, long firstSample, int numberOfSamples) throws IOException;
+
+        /**
+         * Read physical values of a channel.
+         *
+         * @param channel           the index of the channel
+         * @param firstSample       the index of the first sample of the channel
+         * @param numberOfSamples   the number of samples
+         * @return the physical values
+         * @throws IOException      if the samples can not be read
+         */
+        default double[] readPhysicalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+        {
+                short[] digitalValues = readDigitalSamples(channel, firstSample, numberOfSamples);
+                double unitsInDigit = getUnitsInDigit(channel);
+                double[] values = new double[digitalValues.length];
+                for (int i = 0; i < values.length; i++)
+                        values[i] = digitalValues[i] * unitsInDigit;
+                return values;
+        }
+
+        /**
+         * Read the physical values of a channel in a time window. The window is
+         * cut at the end of the channel.
+         *
+         * @param channel   the index of the channel
+         * @param start     the start of the window in seconds from the start of the recording
+         * @param duration  the duration of the window in seconds
+         * @return the physical values
+         * @throws IOException if the samples can not be read
+         */
+        default double[] readPhysicalSamples(int channel, double start, double duration) throws IOException
+        {
+                double samplingRate = getHeader().getSamplingRate(channel);
+                long firstSample = (long) Math.floor(start * samplingRate);
+                long lastSample = Math.min((long) Math.ceil((start + duration) * samplingRate),
+                                           getNumberOfSamples(channel));
+                return readPhysicalSamples(channel, firstSample, (int) Math.max(0, lastSample - firstSample));
+        }
+}
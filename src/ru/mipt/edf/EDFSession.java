@@ -0,0 +1,302 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class presents a recording split into several EDF-Files as one
+ * recording. The files are ordered by their start of recording and have to
+ * have the same layout of data records. Only the headers are read when the
+ * session is opened, the files are opened when their samples are read first
+ * and are read with positional reads.
+ *
+ * Samples are indexed as if the files were concatenated, see
+ * {@link EDFSplicer#concatenate(List, Path)}. Time windows are placed on the
+ * timeline of the session, samples in gaps between files are NaN. Files may
+ * overlap by up to one second, the resolution of the start of recording, the
+ * later file is used in the overlap.
+ */
+public class EDFSession implements EDFSampleSource, Closeable
+{
+        // the start of recording has a resolution of one second, so a file continuing the previous one seems to
+        // start up to one second before its end
+        private static final double MAX_OVERLAP = 1.0;
+
+        private final Path[] paths;
+        private final EDFHeader header;
+        private final long startOfRecording;
+        // per file the offset in seconds from the start of the session and the first record
+        private final double[] offsets;
+        private final int[] firstRecords;
+        private final int numberOfRecords;
+        private final EDFReader[] readers;
+        private boolean closed;
+
+        /**
+         * Open a session of EDF-Files.
+         *
+         * @param paths the EDF-Files of the session in any order
+         * @throws IOException if a header can not be read or the start of a recording is not valid
+         * @throws IllegalArgumentException if the files do not have the same layout or overlap in time by more
+         *                                  than one second
+         * @see EDFHeader#hasSameLayout(EDFHeader)
+         */
+        public EDFSession(List<Path> paths) throws IOException
+        {
+                if (paths.isEmpty())
+                        throw new IllegalArgumentException("A session needs at least one file.");
+
+                List<FileInfo> files = new ArrayList<>();
+                for (Path path : paths)
+                {
+                        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+                        {
+                                EDFHeader header = EDFParser.parseHeader(channel, path.toString()).getHeader();
+                                files.add(new FileInfo(path, header, ParseUtils.parseStartOfRecording(header),
+                                                       ParseUtils.numberOfRecords(header, channel.size())));
+                        }
+                }
+                Collections.sort(files, Comparator.comparingLong(file -> file.startOfRecording));
+
+                this.paths = new Path[files.size()];
+                offsets = new double[files.size()];
+                firstRecords = new int[files.size() + 1];
+                readers = new EDFReader[files.size()];
+                header = files.get(0).header;
+                startOfRecording = files.get(0).startOfRecording;
+                double end = 0;
+                for (int i = 0; i < files.size(); i++)
+                {
+                        FileInfo file = files.get(i);
+                        if (!header.hasSameLayout(file.header))
+                                throw new IllegalArgumentException("The data records of " + file.path
+                                                                   + " are not compatible with " + this.paths[0] + ".");
+                        this.paths[i] = file.path;
+                        offsets[i] = (file.startOfRecording - startOfRecording) / 1000.0;
+                        if (offsets[i] < end - MAX_OVERLAP)
+                                throw new IllegalArgumentException(file.path + " starts before the end of "
+                                                                   + this.paths[i - 1] + ".");
+                        end = offsets[i] + file.numberOfRecords * header.durationOfRecords;
+                        firstRecords[i + 1] = firstRecords[i] + file.numberOfRecords;
+                }
+                numberOfRecords = firstRecords[files.size()];
+        }
+
+        /**
+         * @return the header of the first file
+         */
+        @Override
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        public List<Path> getFiles()
+        {
+                return Collections.unmodifiableList(Arrays.asList(paths));
+        }
+
+        /**
+         * @return the start of the first file in milliseconds as returned by
+         *         {@link ParseUtils#parseStartOfRecording(EDFHeader)}
+         */
+        public long getStartOfRecording()
+        {
+                return startOfRecording;
+        }
+
+        /**
+         * @return the seconds from the start of the first file to the end of the last file, including gaps
+         */
+        public double getDuration()
+        {
+                int last = paths.length - 1;
+                return offsets[last] + (firstRecords[last + 1] - firstRecords[last]) * header.durationOfRecords;
+        }
+
+        /**
+         * @return the number of data records of all files
+         */
+        public int getNumberOfRecords()
+        {
+                return numberOfRecords;
+        }
+
+        @Override
+        public long getNumberOfSamples(int channel)
+        {
+                return (long) numberOfRecords * header.numberOfSamples[channel];
+        }
+
+        @Override
+        public double getUnitsInDigit(int channel)
+        {
+                // the same scaling as EDFSignal.getUnitsInDigit()
+                return (header.maxInUnits[channel] - header.minInUnits[channel])
+                       / (header.digitalMax[channel] - header.digitalMin[channel]);
+        }
+
+        /**
+         * @param time the seconds from the start of the session
+         * @return the index of the file recording at the time or -1 if the time is in a gap or outside of the
+         *         session
+         */
+        public int getFileIndex(double time)
+        {
+                int i = Arrays.binarySearch(offsets, time);
+                if (i < 0)
+                        i = -i - 2;
+                if (i < 0 || time >= offsets[i] + (firstRecords[i + 1] - firstRecords[i]) * header.durationOfRecords)
+                        return -1;
+                return i;
+        }
+
+        /**
+         * Read digital values of a channel, indexed as if the files were concatenated.
+         */
+        @Override
+        public short[] readDigitalSamples(int channel, long firstSample, int numberOfSamples) throws IOException
+        {
+                if (channel < 0 || channel >= header.numberOfChannels)
+                        throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+                if (firstSample < 0 || numberOfSamples < 0 || firstSample + numberOfSamples > getNumberOfSamples(channel))
+                        throw new IndexOutOfBoundsException("Samples " + firstSample + " to "
+                                                            + (firstSample + numberOfSamples) + " of channel "
+                                                            + channel + " do not exist.");
+                int nos = header.numberOfSamples[channel];
+                short[] values = new short[numberOfSamples];
+                for (int i = 0; i < numberOfSamples; )
+                {
+                        long sample = firstSample + i;
+                        int file = fileOfRecord((int) (sample / nos));
+                        long fileSample = sample - (long) firstRecords[file] * nos;
+                        int n = (int) Math.min(numberOfSamples - i,
+                                               (long) (firstRecords[file + 1] - firstRecords[file]) * nos - fileSample);
+                        short[] part = reader(file).readDigitalSamples(channel, fileSample, n);
+                        System.arraycopy(part, 0, values, i, n);
+                        i += n;
+                }
+                return values;
+        }
+
+        /**
+         * Read the physical values of a channel in a time window on the timeline
+         * of the session. Samples in gaps between files are NaN, the window is cut
+         * at the end of the last file.
+         *
+         * @param channel   the index of the channel
+         * @param start     the start of the window in seconds from the start of the session
+         * @param duration  the duration of the window in seconds
+         * @return the physical values
+         * @throws IOException if the samples can not be read
+         */
+        @Override
+        public double[] readPhysicalSamples(int channel, double start, double duration) throws IOException
+        {
+                double samplingRate = header.getSamplingRate(channel);
+                long nos = header.numberOfSamples[channel];
+                long firstSample = (long) Math.floor(start * samplingRate);
+                long lastSample = Math.min((long) Math.ceil((start + duration) * samplingRate),
+                                           Math.round(getDuration() * samplingRate));
+                double[] values = new double[(int) Math.max(0, lastSample - firstSample)];
+                Arrays.fill(values, Double.NaN);
+                for (int file = 0; file < paths.length; file++)
+                {
+                        long fileStart = Math.round(offsets[file] * samplingRate);
+                        long fileEnd = fileStart + (firstRecords[file + 1] - firstRecords[file]) * nos;
+                        long from = Math.max(firstSample, fileStart);
+                        long to = Math.min(lastSample, fileEnd);
+                        if (from >= to)
+                                continue;
+                        double[] part = reader(file).readPhysicalSamples(channel, from - fileStart, (int) (to - from));
+                        System.arraycopy(part, 0, values, (int) (from - firstSample), part.length);
+                }
+                return values;
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+                closed = true;
+                IOException error = null;
+                for (int i = 0; i < readers.length; i++)
+                {
+                        if (readers[i] == null)
+                                continue;
+                        try
+                        {
+                                readers[i].close();
+                        } catch (IOException e)
+                        {
+                                error = e;
+                        }
+                        readers[i] = null;
+                }
+                if (error != null)
+                        throw error;
+        }
+
+        private int fileOfRecord(int record)
+        {
+                int i = Arrays.binarySearch(firstRecords, record);
+                if (i < 0)
+                        return -i - 2;
+                // skip files without data records
+                while (firstRecords[i + 1] == record)
+                        i++;
+                return i;
+        }
+
+        private synchronized EDFReader reader(int file) throws IOException
+        {
+                if (closed)
+                        throw new IOException("The session is closed.");
+                if (readers[file] == null)
+                        readers[file] = new EDFReader(paths[file]);
+                return readers[file];
+        }
+
+        private static final class FileInfo
+        {
+                final Path path;
+                final EDFHeader header;
+                final long startOfRecording;
+                final int numberOfRecords;
+
+                FileInfo(Path path, EDFHeader header, long startOfRecording, int numberOfRecords)
+                {
+                        this.path = path;
+                        this.header = header;
+                        this.startOfRecording = startOfRecording;
+                        this.numberOfRecords = numberOfRecords;
+                }
+        }
+}
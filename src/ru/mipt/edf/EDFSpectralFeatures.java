@@ -0,0 +1,522 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class computes band powers per epoch and channel from streamed data
+ * records, for example for sleep staging. Every epoch is split into windows of
+ * the configured length and overlap, every window is detrended, tapered and
+ * transformed, and the band powers of the windows of an epoch are averaged
+ * (the method of Welch). The windows of all channels of an epoch are
+ * transformed in parallel if a parallelism above 1 is set. An incomplete last
+ * epoch is dropped.
+ *
+ * <pre>
+ * try (EDFSpectralFeatures features = new EDFSpectralFeatures(reader.getHeader()).epoch(30).window(4).overlap(0.5)
+ *                 .parallelism(4))
+ * {
+ *         features.extract(reader, epoch -&gt; model.feed(epoch.getFeatures()));
+ * }
+ * </pre>
+ */
+public class EDFSpectralFeatures implements Closeable
+{
+        public enum Taper
+        {
+                RECTANGULAR, HANN, HAMMING, BLACKMAN;
+
+                double weight(int i, int length)
+                {
+                        if (length == 1)
+                                return 1;
+                        double x = 2 * Math.PI * i / (length - 1);
+                        switch (this)
+                        {
+                        case HANN:
+                                return 0.5 - 0.5 * Math.cos(x);
+                        case HAMMING:
+                                return 0.54 - 0.46 * Math.cos(x);
+                        case BLACKMAN:
+                                return 0.42 - 0.5 * Math.cos(x) + 0.08 * Math.cos(2 * x);
+                        default:
+                                return 1;
+                        }
+                }
+        }
+
+        /**
+         * The features of one epoch, the band powers of the first channel
+         * followed by the band powers of the next channels.
+         */
+        public static final class Epoch
+        {
+                private final int index;
+                private final double start;
+                private final int numberOfBands;
+                private final float[] features;
+
+                Epoch(int index, double start, int numberOfBands, float[] features)
+                {
+                        this.index = index;
+                        this.start = start;
+                        this.numberOfBands = numberOfBands;
+                        this.features = features;
+                }
+
+                public int getIndex()
+                {
+                        return index;
+                }
+
+                /**
+                 * @return the start of the epoch in seconds from the start of the recording
+                 */
+                public double getStart()
+                {
+                        return start;
+                }
+
+                public float[] getFeatures()
+                {
+                        return features;
+                }
+
+                /**
+                 * @param channel   the position of the channel among the selected channels
+                 * @param band      the index of the band
+                 */
+                public float getFeature(int channel, int band)
+                {
+                        return features[channel * numberOfBands + band];
+                }
+        }
+
+        private static final class Band
+        {
+                final String name;
+                final double low;
+                final double high;
+
+                Band(String name, double low, double high)
+                {
+                        this.name = name;
+                        this.low = low;
+                        this.high = high;
+                }
+        }
+
+        // the FFT plans and buffers of a thread by the binary logarithm of the FFT size
+        private static final ThreadLocal<Workspace[]> WORKSPACES = ThreadLocal.withInitial(() -> new Workspace[31]);
+
+        private static final class Workspace
+        {
+                final EDFFft fft;
+                final double[] frame;
+                final double[] power;
+
+                Workspace(int size)
+                {
+                        fft = new EDFFft(size);
+                        frame = new double[size];
+                        power = new double[size / 2 + 1];
+                }
+        }
+
+        private final EDFHeader header;
+        private double epochDuration = 30;
+        private double windowDuration = 4;
+        private double overlap = 0.5;
+        private Taper taper = Taper.HANN;
+        private boolean relative;
+        private int parallelism = 1;
+        private int[] selectedChannels;
+        private final List<Band> bands = new ArrayList<>();
+        private boolean defaultBands = true;
+
+        // the layout, fixed by the first data records
+        private boolean started;
+        private ForkJoinPool pool;
+        private double[] unitsInDigit;
+        private double[][] epochBuffers;
+        private int[] filled;
+        private int[] windowLength;
+        private int[] windowStep;
+        private int[] fftSize;
+        private double[][] tapers;
+        private double[] powerScale;
+        private int[][] bandBins;
+        private int[] taskChannel;
+        private int[] taskWindow;
+        private int[] firstTask;
+        // the band powers of every window
+        private double[][] taskPowers;
+        private int epochIndex;
+
+        public EDFSpectralFeatures(EDFHeader header)
+        {
+                this.header = header;
+                bands.add(new Band("delta", 0.5, 4));
+                bands.add(new Band("theta", 4, 8));
+                bands.add(new Band("alpha", 8, 13));
+                bands.add(new Band("beta", 13, 30));
+        }
+
+        /**
+         * @param seconds the duration of an epoch, 30 seconds by default
+         */
+        public EDFSpectralFeatures epoch(double seconds)
+        {
+                checkNotStarted();
+                assert seconds > 0;
+                epochDuration = seconds;
+                return this;
+        }
+
+        /**
+         * @param seconds the duration of a window, 4 seconds by default
+         */
+        public EDFSpectralFeatures window(double seconds)
+        {
+                checkNotStarted();
+                assert seconds > 0;
+                windowDuration = seconds;
+                return this;
+        }
+
+        /**
+         * @param fraction the overlap of consecutive windows from 0 to below 1, 0.5 by default
+         */
+        public EDFSpectralFeatures overlap(double fraction)
+        {
+                checkNotStarted();
+                assert fraction >= 0 && fraction < 1;
+                overlap = fraction;
+                return this;
+        }
+
+        /**
+         * @param val the taper of the windows, HANN by default
+         */
+        public EDFSpectralFeatures taper(Taper val)
+        {
+                checkNotStarted();
+                assert val != null;
+                taper = val;
+                return this;
+        }
+
+        /**
+         * Add a band, the first band replaces the default bands delta, theta,
+         * alpha and beta.
+         *
+         * @param low   the lower edge in Hz, included
+         * @param high  the upper edge in Hz, excluded
+         */
+        public EDFSpectralFeatures band(String name, double low, double high)
+        {
+                checkNotStarted();
+                assert low >= 0 && high > low;
+                if (defaultBands)
+                        bands.clear();
+                defaultBands = false;
+                bands.add(new Band(name, low, high));
+                return this;
+        }
+
+        /**
+         * @param val if band powers are divided by the total power of the window, false by default
+         */
+        public EDFSpectralFeatures relative(boolean val)
+        {
+                checkNotStarted();
+                relative = val;
+                return this;
+        }
+
+        /**
+         * @param val the indices of the channels, all channels except annotation channels by default
+         */
+        public EDFSpectralFeatures channels(int... val)
+        {
+                checkNotStarted();
+                for (int channel : val)
+                        if (channel < 0 || channel >= header.numberOfChannels)
+                                throw new IndexOutOfBoundsException("Channel " + channel + " of "
+                                                                    + header.numberOfChannels);
+                selectedChannels = val.clone();
+                return this;
+        }
+
+        /**
+         * @param val the number of threads transforming windows, 1 by default
+         */
+        public EDFSpectralFeatures parallelism(int val)
+        {
+                checkNotStarted();
+                assert val > 0;
+                parallelism = val;
+                return this;
+        }
+
+        /**
+         * @return the names of the features, the label of the channel and the name of the band
+         */
+        public List<String> getFeatureNames()
+        {
+                List<String> names = new ArrayList<>();
+                for (int channel : getSelectedChannels())
+                        for (Band band : bands)
+                                names.add(header.channelLabels[channel].trim() + ":" + band.name);
+                return Collections.unmodifiableList(names);
+        }
+
+        /**
+         * Compute the features of the epochs completed by the next data records.
+         *
+         * @param digitalValues the digital values per channel of the data records following the previous
+         *                      ones, the selected channels must not be null
+         * @return the completed epochs, usually none or one
+         */
+        public List<Epoch> process(short[][] digitalValues)
+        {
+                if (!started)
+                        start();
+                List<Epoch> epochs = new ArrayList<>(1);
+                int[] consumed = new int[selectedChannels.length];
+                while (true)
+                {
+                        boolean complete = true;
+                        boolean remaining = false;
+                        for (int p = 0; p < selectedChannels.length; p++)
+                        {
+                                short[] digital = digitalValues[selectedChannels[p]];
+                                double unitsInDigit = this.unitsInDigit[p];
+                                double[] buffer = epochBuffers[p];
+                                int n = Math.min(digital.length - consumed[p], buffer.length - filled[p]);
+                                for (int i = 0; i < n; i++)
+                                        buffer[filled[p] + i] = digital[consumed[p] + i] * unitsInDigit;
+                                filled[p] += n;
+                                consumed[p] += n;
+                                complete &= filled[p] == buffer.length;
+                                remaining |= consumed[p] < digital.length;
+                        }
+                        if (complete)
+                        {
+                                epochs.add(computeEpoch());
+                                Arrays.fill(filled, 0);
+                        }
+                        else if (!remaining)
+                                return epochs;
+                }
+        }
+
+        /**
+         * Compute the features of all complete epochs of a recording.
+         */
+        public void extract(EDFSampleSource source, Consumer<Epoch> consumer) throws IOException
+        {
+                if (!started)
+                        start();
+                int[] channels = selectedChannels;
+                long[] position = new long[channels.length];
+                short[][] digitalValues = new short[header.numberOfChannels][];
+                for (int e = 0;; e++)
+                {
+                        for (int p = 0; p < channels.length; p++)
+                        {
+                                int length = epochBuffers[p].length;
+                                if (position[p] + length > source.getNumberOfSamples(channels[p]))
+                                        return;
+                                digitalValues[channels[p]] = source.readDigitalSamples(channels[p], position[p], length);
+                                position[p] += length;
+                        }
+                        process(digitalValues).forEach(consumer);
+                }
+        }
+
+        @Override
+        public void close()
+        {
+                if (pool != null)
+                        pool.shutdown();
+        }
+
+        private int[] getSelectedChannels()
+        {
+                if (selectedChannels != null)
+                        return selectedChannels;
+                return IntStream.range(0, header.numberOfChannels)
+                                .filter(i -> !EDFChannelExtractor.isAnnotationChannel(header, i)).toArray();
+        }
+
+        private void checkNotStarted()
+        {
+                if (started)
+                        throw new IllegalStateException("The features are configured before the first data records.");
+        }
+
+        private void start()
+        {
+                selectedChannels = getSelectedChannels();
+                int channels = selectedChannels.length;
+                unitsInDigit = new double[channels];
+                epochBuffers = new double[channels][];
+                filled = new int[channels];
+                windowLength = new int[channels];
+                windowStep = new int[channels];
+                fftSize = new int[channels];
+                tapers = new double[channels][];
+                powerScale = new double[channels];
+                bandBins = new int[channels][];
+                firstTask = new int[channels + 1];
+                for (int p = 0; p < channels; p++)
+                {
+                        int channel = selectedChannels[p];
+                        // the same scaling as EDFSignal.getUnitsInDigit()
+                        unitsInDigit[p] = (header.maxInUnits[channel] - header.minInUnits[channel])
+                                          / (header.digitalMax[channel] - header.digitalMin[channel]);
+                        double rate = header.getSamplingRate(channel);
+                        double epochSamples = epochDuration * rate;
+                        if (Math.abs(epochSamples - Math.rint(epochSamples)) > 1e-6 || epochSamples < 1)
+                                throw new IllegalArgumentException("An epoch of " + epochDuration + " s is not a whole "
+                                                                   + "number of samples at " + rate + " Hz.");
+                        epochBuffers[p] = new double[(int) Math.rint(epochSamples)];
+                        windowLength[p] = (int) Math.max(1, Math.round(windowDuration * rate));
+                        if (windowLength[p] > epochBuffers[p].length)
+                                throw new IllegalArgumentException("A window of " + windowDuration
+                                                                   + " s is longer than an epoch.");
+                        windowStep[p] = (int) Math.max(1, Math.round(windowLength[p] * (1 - overlap)));
+                        fftSize[p] = Math.max(4, Integer.highestOneBit(windowLength[p] - 1) << 1);
+                        tapers[p] = new double[windowLength[p]];
+                        double sumOfSquares = 0;
+                        for (int i = 0; i < windowLength[p]; i++)
+                        {
+                                tapers[p][i] = taper.weight(i, windowLength[p]);
+                                sumOfSquares += tapers[p][i] * tapers[p][i];
+                        }
+                        // one sided power spectral density times the bin width
+                        powerScale[p] = 2 / (sumOfSquares * fftSize[p]);
+                        bandBins[p] = new int[2 * bands.size()];
+                        double binWidth = rate / fftSize[p];
+                        for (int b = 0; b < bands.size(); b++)
+                        {
+                                bandBins[p][2 * b] = (int) Math.ceil(bands.get(b).low / binWidth);
+                                bandBins[p][2 * b + 1] = Math.min(fftSize[p] / 2 + 1,
+                                                                  (int) Math.ceil(bands.get(b).high / binWidth));
+                        }
+                        int windows = (epochBuffers[p].length - windowLength[p]) / windowStep[p] + 1;
+                        firstTask[p + 1] = firstTask[p] + windows;
+                }
+                taskChannel = new int[firstTask[channels]];
+                taskWindow = new int[firstTask[channels]];
+                for (int p = 0; p < channels; p++)
+                        for (int t = firstTask[p]; t < firstTask[p + 1]; t++)
+                        {
+                                taskChannel[t] = p;
+                                taskWindow[t] = t - firstTask[p];
+                        }
+                taskPowers = new double[taskChannel.length][bands.size()];
+                if (parallelism > 1)
+                        pool = new ForkJoinPool(parallelism);
+                started = true;
+        }
+
+        private Epoch computeEpoch()
+        {
+                if (pool == null)
+                        for (int t = 0; t < taskChannel.length; t++)
+                                computeWindow(t);
+                else
+                        pool.submit(() -> IntStream.range(0, taskChannel.length).parallel().forEach(this::computeWindow))
+                                        .join();
+
+                int numberOfBands = bands.size();
+                float[] features = new float[selectedChannels.length * numberOfBands];
+                for (int p = 0; p < selectedChannels.length; p++)
+                {
+                        int windows = firstTask[p + 1] - firstTask[p];
+                        for (int b = 0; b < numberOfBands; b++)
+                        {
+                                double sum = 0;
+                                for (int t = firstTask[p]; t < firstTask[p + 1]; t++)
+                                        sum += taskPowers[t][b];
+                                features[p * numberOfBands + b] = (float) (sum / windows);
+                        }
+                }
+                Epoch epoch = new Epoch(epochIndex, epochIndex * epochDuration, numberOfBands, features);
+                epochIndex++;
+                return epoch;
+        }
+
+        private void computeWindow(int task)
+        {
+                int p = taskChannel[task];
+                int size = fftSize[p];
+                Workspace[] workspaces = WORKSPACES.get();
+                int log = Integer.numberOfTrailingZeros(size);
+                if (workspaces[log] == null)
+                        workspaces[log] = new Workspace(size);
+                Workspace workspace = workspaces[log];
+
+                double[] buffer = epochBuffers[p];
+                double[] taper = tapers[p];
+                int offset = taskWindow[task] * windowStep[p];
+                int length = windowLength[p];
+                double mean = 0;
+                for (int i = 0; i < length; i++)
+                        mean += buffer[offset + i];
+                mean /= length;
+                double[] frame = workspace.frame;
+                for (int i = 0; i < length; i++)
+                        frame[i] = (buffer[offset + i] - mean) * taper[i];
+                for (int i = length; i < size; i++)
+                        frame[i] = 0;
+                double[] power = workspace.power;
+                workspace.fft.powerSpectrum(frame, power);
+                // the bins at 0 Hz and the Nyquist frequency have no negative counterpart
+                power[0] /= 2;
+                power[size / 2] /= 2;
+
+                double[] powers = taskPowers[task];
+                int[] bins = bandBins[p];
+                double total = 0;
+                if (relative)
+                        for (int k = 0; k <= size / 2; k++)
+                                total += power[k];
+                for (int b = 0; b < bins.length / 2; b++)
+                {
+                        double sum = 0;
+                        for (int k = bins[2 * b]; k < bins[2 * b + 1]; k++)
+                                sum += power[k];
+                        powers[b] = relative ? (total == 0 ? 0 : sum / total) : sum * powerScale[p];
+                }
+        }
+}
@@ -0,0 +1,270 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.mipt.edf.EDFConstants.*;
+
+/**
+ * This class is capable of cropping, splitting and concatenating EDF and EDF+
+ * files at data record granularity. The header is copied and patched, the
+ * data records are moved with {@link FileChannel#transferTo} and never decoded.
+ *
+ * The start of the recording of a cropped EDF file is moved by the duration of
+ * the skipped data records. EDF+ files keep their start, because the
+ * time-keeping annotations of the data records are relative to it, so the parts
+ * of a split EDF+ file can be concatenated back into the original file.
+ */
+public class EDFSplicer
+{
+        // the start of recording has a resolution of one second
+        private static final double MAX_START_DEVIATION = 1.0;
+        // the onsets of time-keeping annotations are exact up to rounding
+        private static final double MAX_ONSET_DEVIATION = 0.001;
+
+        /**
+         * Write the given range of data records of the source file into the target file.
+         *
+         * @param source            the path to the source EDF-File
+         * @param target            the path to the EDF-File to create
+         * @param firstRecord       the index of the first data record to keep
+         * @param numberOfRecords   the number of data records to keep
+         * @throws IOException      if the files can not be read or written
+         */
+        public static void crop(Path source, Path target, int firstRecord, int numberOfRecords) throws IOException
+        {
+                try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ))
+                {
+                        EDFHeader header = EDFParser.parseHeader(src).getHeader();
+                        int available = ParseUtils.numberOfRecords(header, src.size());
+                        if (firstRecord < 0 || numberOfRecords < 0 || firstRecord + numberOfRecords > available)
+                                throw new IndexOutOfBoundsException("Records " + firstRecord + " to "
+                                                                    + (firstRecord + numberOfRecords) + " of " + available
+                                                                    + " do not exist.");
+                        writeRecords(src, header, firstRecord, numberOfRecords, target);
+                }
+        }
+
+        /**
+         * Split the source file into files with the given number of data records.
+         * The files are named after the source file with the suffix _0, _1, ...
+         *
+         * @param source            the path to the source EDF-File
+         * @param targetDirectory   the directory to create the files in
+         * @param recordsPerFile    the number of data records per file, the last file may contain less
+         * @return the paths of the created files
+         * @throws IOException      if the files can not be read or written
+         */
+        public static List<Path> split(Path source, Path targetDirectory, int recordsPerFile) throws IOException
+        {
+                if (recordsPerFile <= 0)
+                        throw new IllegalArgumentException("The number of records per file has to be positive.");
+
+                String name = source.getFileName().toString().replaceAll("[.].*", "");
+                List<Path> targets = new ArrayList<>();
+                try (FileChannel src = FileChannel.open(source, StandardOpenOption.READ))
+                {
+                        EDFHeader header = EDFParser.parseHeader(src).getHeader();
+                        int available = ParseUtils.numberOfRecords(header, src.size());
+                        for (int firstRecord = 0; firstRecord < available; firstRecord += recordsPerFile)
+                        {
+                                Path target = targetDirectory.resolve(name + "_" + targets.size() + ".edf");
+                                writeRecords(src, header, firstRecord, Math.min(recordsPerFile, available - firstRecord),
+                                             target);
+                                targets.add(target);
+                        }
+                }
+                return targets;
+        }
+
+        /**
+         * Concatenate the data records of the source files into the target file.
+         * The header of the target file is the header of the first source file.
+         * All source files have to have the same layout of the data records and
+         * every file has to continue the previous one in time: an EDF file starts
+         * at the end of the previous file, up to the resolution of one second of
+         * the start of recording. The files of an EDF+ recording, like the parts of
+         * a split EDF+ file, have the same start and the time-keeping annotation of
+         * the first data record of a file is the end of the previous file, or later
+         * for EDF+D files.
+         *
+         * @param sources           the paths to the source EDF-Files in the order of the recording
+         * @param target            the path to the EDF-File to create, which is not one of the sources
+         * @throws IOException      if the files can not be read or written
+         * @throws IllegalArgumentException if the files are not compatible or not contiguous, or the target is
+         *                                  a source
+         * @see EDFHeader#hasSameLayout(EDFHeader)
+         */
+        public static void concatenate(List<Path> sources, Path target) throws IOException
+        {
+                if (sources.isEmpty())
+                        throw new IllegalArgumentException("There are no files to concatenate.");
+                // the target is truncated before the sources are read
+                if (Files.exists(target))
+                        for (Path source : sources)
+                                if (Files.isSameFile(source, target))
+                                        throw new IllegalArgumentException("The target " + target
+                                                                           + " is one of the sources.");
+
+                List<FileChannel> channels = new ArrayList<>();
+                try
+                {
+                        List<EDFHeader> headers = new ArrayList<>();
+                        long totalRecords = 0;
+                        long startOfRecording = 0;
+                        // the end of the previous files in seconds from the start of the first file
+                        double end = 0;
+                        for (Path source : sources)
+                        {
+                                FileChannel src = FileChannel.open(source, StandardOpenOption.READ);
+                                channels.add(src);
+                                EDFHeader header = EDFParser.parseHeader(src).getHeader();
+                                if (!headers.isEmpty() && !headers.get(0).hasSameLayout(header))
+                                        throw new IllegalArgumentException("The data records of " + source
+                                                                           + " are not compatible with "
+                                                                           + sources.get(0) + ".");
+                                header.numberOfRecords = ParseUtils.numberOfRecords(header, src.size());
+                                long start = ParseUtils.parseStartOfRecording(header);
+                                if (headers.isEmpty())
+                                        startOfRecording = start;
+                                if (!header.formatVersion.startsWith("EDF+"))
+                                {
+                                        double offset = (start - startOfRecording) / 1000.0;
+                                        if (Math.abs(offset - end) >= MAX_START_DEVIATION)
+                                                throw new IllegalArgumentException(source + " starts " + offset
+                                                                                   + " s after the first file, not at "
+                                                                                   + "the end of the previous file at "
+                                                                                   + end + " s.");
+                                        end = offset + header.numberOfRecords * header.durationOfRecords;
+                                }
+                                else if (header.numberOfRecords > 0)
+                                {
+                                        if (start != startOfRecording)
+                                                throw new IllegalArgumentException("The time-keeping annotations of "
+                                                                                   + source + " are not relative to the "
+                                                                                   + "start of " + sources.get(0) + ".");
+                                        double onset = timeKeepingOnset(src, header, 0);
+                                        boolean discontinuous = header.formatVersion.startsWith("EDF+D");
+                                        if (!headers.isEmpty() && (onset < end - MAX_ONSET_DEVIATION
+                                                                   || !discontinuous
+                                                                      && onset > end + MAX_ONSET_DEVIATION))
+                                                throw new IllegalArgumentException(source + " starts " + onset
+                                                                                   + " s after the first file, not at "
+                                                                                   + "the end of the previous file at "
+                                                                                   + end + " s.");
+                                        end = timeKeepingOnset(src, header, header.numberOfRecords - 1)
+                                              + header.durationOfRecords;
+                                }
+                                totalRecords += header.numberOfRecords;
+                                headers.add(header);
+                        }
+                        if (totalRecords > Integer.MAX_VALUE)
+                                throw new IllegalArgumentException("Too many data records: " + totalRecords);
+
+                        try (FileChannel dst = FileChannel.open(target, StandardOpenOption.CREATE,
+                                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                                StandardOpenOption.WRITE))
+                        {
+                                transfer(channels.get(0), 0, headers.get(0).bytesInHeader, dst);
+                                for (int i = 0; i < channels.size(); i++)
+                                {
+                                        EDFHeader header = headers.get(i);
+                                        transfer(channels.get(i), header.bytesInHeader,
+                                                 (long) header.numberOfRecords * header.getBytesPerRecord(), dst);
+                                }
+                                EDFWriter.writeField(dst, NUMBER_OF_DATA_RECORDS_OFFSET, NUMBER_OF_DATA_RECORDS_SIZE,
+                                                     String.valueOf(totalRecords));
+                        }
+                } finally
+                {
+                        for (FileChannel src : channels)
+                                src.close();
+                }
+        }
+
+        private static void writeRecords(FileChannel src, EDFHeader header, int firstRecord, int numberOfRecords,
+                                         Path target) throws IOException
+        {
+                long bytesPerRecord = header.getBytesPerRecord();
+                try (FileChannel dst = FileChannel.open(target, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+                {
+                        transfer(src, 0, header.bytesInHeader, dst);
+                        transfer(src, header.bytesInHeader + firstRecord * bytesPerRecord,
+                                 numberOfRecords * bytesPerRecord, dst);
+                        EDFWriter.writeField(dst, NUMBER_OF_DATA_RECORDS_OFFSET, NUMBER_OF_DATA_RECORDS_SIZE,
+                                             String.valueOf(numberOfRecords));
+
+                        if (firstRecord > 0 && !header.formatVersion.startsWith("EDF+"))
+                        {
+                                long start = ParseUtils.parseStartOfRecording(header)
+                                             + Math.round(firstRecord * header.durationOfRecords * 1000);
+                                String[] startOfRecording = ParseUtils.formatStartOfRecording(start);
+                                EDFWriter.writeField(dst, START_DATE_OFFSET, START_DATE_SIZE, startOfRecording[0]);
+                                EDFWriter.writeField(dst, START_TIME_OFFSET, START_TIME_SIZE, startOfRecording[1]);
+                        }
+                }
+        }
+
+        /**
+         * @return the onset of the time-keeping annotation of a data record of an EDF+ file in seconds
+         */
+        private static double timeKeepingOnset(FileChannel src, EDFHeader header, int record) throws IOException
+        {
+                int channel = header.indexOfChannel("EDF Annotations");
+                if (channel < 0)
+                        throw new EDFParserException("The EDF+ file has no annotation channel.", null);
+                long position = header.bytesInHeader + (long) record * header.getBytesPerRecord();
+                for (int i = 0; i < channel; i++)
+                        position += 2L * header.numberOfSamples[i];
+                ByteBuffer bytes = ByteBuffer.allocate(2 * header.numberOfSamples[channel] + 2);
+                bytes.limit(bytes.capacity() - 2);
+                ParseUtils.readFully(src, bytes, position);
+                // the start of another TAL ends the last annotation for the parser
+                bytes.limit(bytes.capacity());
+                bytes.put((byte) '+').put((byte) 0);
+                List<EDFAnnotation> annotations = EDFParser.parseAnnotations(bytes.array(), bytes.capacity());
+                if (annotations.isEmpty())
+                        throw new EDFParserException("Data record " + record + " has no time-keeping annotation.",
+                                                     null);
+                return annotations.get(0).getOnSet();
+        }
+
+        private static void transfer(FileChannel src, long position, long count, FileChannel dst) throws IOException
+        {
+                while (count > 0)
+                {
+                        long len = src.transferTo(position, count, dst);
+                        if (len <= 0)
+                                throw new EDFParserException();
+                        position += len;
+                        count -= len;
+                }
+        }
+}
@@ -0,0 +1,186 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class reads the data records of an EDF-File sequentially from a stream
+ * which does not need to be seekable, like a gzip compressed file or a network
+ * connection. Every data record is read completely even if the stream returns
+ * it in several parts. Only the requested data records are held in memory.
+ */
+public class EDFStreamReader implements Closeable
+{
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final InputStream is;
+        private final EDFHeader header;
+        private final int bytesPerRecord;
+        private byte[] buffer = new byte[0];
+        private int numberOfRecordsRead;
+        private boolean ended;
+
+        /**
+         * Read the header from the stream, which should be at the start of an
+         * EDF-File.
+         *
+         * @param is
+         *            the InputStream to the EDF-File
+         * @throws IOException
+         *             if the header can not be read or is not valid
+         */
+        public EDFStreamReader(InputStream is) throws IOException
+        {
+                this.is = is;
+                header = EDFParser.parseHeader(is).getHeader();
+                bytesPerRecord = header.getBytesPerRecord();
+        }
+
+        /**
+         * Open an EDF-File, which is decompressed while it is read if it is gzip
+         * compressed.
+         *
+         * @see #openInputStream(Path, int)
+         */
+        public static EDFStreamReader open(Path path, int threads) throws IOException
+        {
+                InputStream is = openInputStream(path, threads);
+                try
+                {
+                        return new EDFStreamReader(is);
+                } catch (IOException | RuntimeException e)
+                {
+                        is.close();
+                        throw e;
+                }
+        }
+
+        /**
+         * Open a file as buffered InputStream. A gzip compressed file, recognized
+         * by its first bytes and not by its name, is decompressed while it is
+         * read, with several threads if it consists of several members.
+         *
+         * @param path      the path to the file
+         * @param threads   the number of threads decompressing a gzip file
+         * @return the stream of the uncompressed content
+         * @throws IOException if the file can not be opened
+         */
+        public static InputStream openInputStream(Path path, int threads) throws IOException
+        {
+                if (!isGzip(path))
+                        return new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+                if (threads > 1)
+                        return new BufferedInputStream(new EDFGzipInputStream(path, threads), BUFFER_SIZE);
+                return new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE),
+                                               BUFFER_SIZE);
+        }
+
+        /**
+         * @return if the file starts with the magic bytes of gzip
+         */
+        static boolean isGzip(Path path) throws IOException
+        {
+                byte[] magic = new byte[2];
+                try (InputStream is = Files.newInputStream(path))
+                {
+                        if (ParseUtils.readFully(is, magic, 0, magic.length) < magic.length)
+                                return false;
+                }
+                return magic[0] == 0x1f && magic[1] == (byte) 0x8b;
+        }
+
+        public EDFHeader getHeader()
+        {
+                return header;
+        }
+
+        public int getNumberOfRecordsRead()
+        {
+                return numberOfRecordsRead;
+        }
+
+        /**
+         * Read the next data records. If the number of data records in the header
+         * is -1 (recording still in progress) the data records are read until the
+         * stream ends and an incomplete last data record is ignored.
+         *
+         * @param numberOfRecords   the maximum number of data records
+         * @return the digital values per channel of the read data records, which
+         *         may be less than requested at the end, or null if all data records
+         *         were read
+         * @throws IOException      if the stream can not be read or ends before the
+         *                          number of data records in the header
+         */
+        public short[][] readRecords(int numberOfRecords) throws IOException
+        {
+                if (numberOfRecords <= 0)
+                        throw new IllegalArgumentException("The number of records has to be positive.");
+                if (header.numberOfRecords >= 0)
+                        numberOfRecords = Math.min(numberOfRecords, header.numberOfRecords - numberOfRecordsRead);
+                if (ended || numberOfRecords <= 0)
+                        return null;
+
+                int length = numberOfRecords * bytesPerRecord;
+                if (buffer.length < length)
+                        buffer = new byte[length];
+                int read = ParseUtils.readFully(is, buffer, 0, length);
+                int records = read / bytesPerRecord;
+                if (read < length)
+                {
+                        ended = true;
+                        if (header.numberOfRecords >= 0)
+                                throw new EDFParserException("The stream ends in data record "
+                                                             + (numberOfRecordsRead + records) + " of "
+                                                             + header.numberOfRecords + ".", null);
+                        if (records == 0)
+                                return null;
+                }
+
+                ByteBuffer bytebuf = ByteBuffer.wrap(buffer, 0, records * bytesPerRecord).order(ByteOrder.LITTLE_ENDIAN);
+                short[][] values = new short[header.numberOfChannels][];
+                for (int i = 0; i < values.length; i++)
+                        values[i] = new short[records * header.numberOfSamples[i]];
+                for (int r = 0; r < records; r++)
+                        for (int i = 0; i < values.length; i++)
+                        {
+                                int nos = header.numberOfSamples[i];
+                                bytebuf.asShortBuffer().get(values[i], r * nos, nos);
+                                bytebuf.position(bytebuf.position() + nos * 2);
+                        }
+                numberOfRecordsRead += records;
+                return values;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+                is.close();
+        }
+}
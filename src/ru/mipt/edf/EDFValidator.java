@@ -0,0 +1,441 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * This class checks the structure of EDF-Files without parsing them
+ * completely. The header is checked for consistency with itself and with the
+ * size of the file, then the data records are streamed once to check the
+ * digital ranges of the samples and the syntax of the TALs in the annotation
+ * channel. No arrays per channel are allocated.
+ */
+public class EDFValidator
+{
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        public enum Severity
+        {
+                ERROR, WARNING
+        }
+
+        /**
+         * A problem found in a file.
+         */
+        public static final class Problem
+        {
+                private final Severity severity;
+                private final String code;
+                private final int record;
+                private final int channel;
+                private final String message;
+
+                Problem(Severity severity, String code, int record, int channel, String message)
+                {
+                        this.severity = severity;
+                        this.code = code;
+                        this.record = record;
+                        this.channel = channel;
+                        this.message = message;
+                }
+
+                public Severity getSeverity()
+                {
+                        return severity;
+                }
+
+                /**
+                 * @return a short constant name of the kind of problem, like SAMPLE_RANGE
+                 */
+                public String getCode()
+                {
+                        return code;
+                }
+
+                /**
+                 * @return the index of the first data record with the problem or -1 for the header
+                 */
+                public int getRecord()
+                {
+                        return record;
+                }
+
+                /**
+                 * @return the index of the channel with the problem or -1 if the problem is not about a channel
+                 */
+                public int getChannel()
+                {
+                        return channel;
+                }
+
+                public String getMessage()
+                {
+                        return message;
+                }
+
+                @Override
+                public String toString()
+                {
+                        return severity + " " + code + (record >= 0 ? " record " + record : "")
+                               + (channel >= 0 ? " channel " + channel : "") + ": " + message;
+                }
+        }
+
+        private int maxProblems = 100;
+        private boolean checkAnnotations = true;
+
+        /**
+         * @param val the number of problems after which the validation of a file stops
+         */
+        public EDFValidator maxProblems(int val)
+        {
+                assert val > 0;
+                maxProblems = val;
+                return this;
+        }
+
+        /**
+         * @param val if the syntax of the annotation channel of EDF+ files is checked
+         */
+        public EDFValidator checkAnnotations(boolean val)
+        {
+                checkAnnotations = val;
+                return this;
+        }
+
+        /**
+         * Validate an EDF-File.
+         *
+         * @return the problems found, an empty list if the file is valid
+         * @throws IOException
+         *             if the file can not be read
+         */
+        public List<Problem> validate(Path path) throws IOException
+        {
+                List<Problem> problems = new ArrayList<>();
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+                {
+                        EDFHeader header;
+                        try
+                        {
+                                header = EDFParser.parseHeader(channel).getHeader();
+                        } catch (EDFParserException | RuntimeException e)
+                        {
+                                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                                problems.add(new Problem(Severity.ERROR, "HEADER", -1, -1,
+                                                         "The header can not be parsed: " + cause));
+                                return problems;
+                        }
+                        int records = validateHeader(header, channel.size(), problems);
+                        if (records > 0 && !isFull(problems))
+                                validateRecords(header, channel, records, problems);
+                }
+                return problems;
+        }
+
+        /**
+         * Validate all files with the extension .edf in the directory tree.
+         *
+         * @param root
+         *            the root of the directory tree
+         * @param parallelism
+         *            the number of files which are validated concurrently
+         * @return the problems per file in the order of the walk, a file which
+         *         can not be read has a problem with the code IO
+         * @throws IOException
+         *             if the directory tree can not be walked
+         */
+        public Map<Path, List<Problem>> validateTree(Path root, int parallelism) throws IOException
+        {
+                ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+                try (Stream<Path> files = Files.walk(root))
+                {
+                        Map<Path, Future<List<Problem>>> futures = new LinkedHashMap<>();
+                        files.filter(ParseUtils::isEDFFile)
+                                .forEach(path -> futures.put(path, executor.submit(() -> validate(path))));
+
+                        Map<Path, List<Problem>> results = new LinkedHashMap<>();
+                        for (Map.Entry<Path, Future<List<Problem>>> entry : futures.entrySet())
+                        {
+                                try
+                                {
+                                        results.put(entry.getKey(), entry.getValue().get());
+                                } catch (ExecutionException e)
+                                {
+                                        results.put(entry.getKey(), Collections.singletonList(
+                                                new Problem(Severity.ERROR, "IO", -1, -1, String.valueOf(e.getCause()))));
+                                } catch (InterruptedException e)
+                                {
+                                        Thread.currentThread().interrupt();
+                                        throw new IOException(e);
+                                }
+                        }
+                        return results;
+                } finally
+                {
+                        executor.shutdownNow();
+                }
+        }
+
+        /**
+         * Write the problems as tab separated values with a header line. There
+         * is one line per problem with the columns path, severity, code, record,
+         * channel and message. Tabs and line breaks in messages are replaced by
+         * spaces.
+         */
+        public static void writeReport(Map<Path, List<Problem>> results, Writer writer) throws IOException
+        {
+                writer.write("path\tseverity\tcode\trecord\tchannel\tmessage\n");
+                for (Map.Entry<Path, List<Problem>> entry : results.entrySet())
+                        for (Problem problem : entry.getValue())
+                                writer.write(entry.getKey() + "\t" + problem.severity + "\t" + problem.code + "\t"
+                                             + problem.record + "\t" + problem.channel + "\t"
+                                             + problem.message.replaceAll("[\t\r\n]", " ") + "\n");
+                writer.flush();
+        }
+
+        /**
+         * @return the number of data records to stream
+         */
+        private int validateHeader(EDFHeader header, long fileSize, List<Problem> problems)
+        {
+                int expectedHeaderSize = EDFConstants.HEADER_SIZE_RECORDING_INFO
+                                         + header.numberOfChannels * EDFConstants.HEADER_SIZE_PER_CHANNEL;
+                if (header.bytesInHeader != expectedHeaderSize)
+                        add(problems, Severity.ERROR, "HEADER_SIZE", -1, -1, "The header has " + header.bytesInHeader
+                                + " bytes but " + expectedHeaderSize + " bytes for " + header.numberOfChannels
+                                + " channels.");
+
+                String version = header.formatVersion.trim();
+                boolean edfPlus = version.startsWith("EDF+");
+                if (edfPlus && !version.startsWith("EDF+C") && !version.startsWith("EDF+D"))
+                        add(problems, Severity.WARNING, "FORMAT", -1, -1, "Unknown format " + version + ".");
+                else if (!edfPlus && !version.isEmpty())
+                        add(problems, Severity.WARNING, "FORMAT", -1, -1, "The reserved field is not blank.");
+
+                try
+                {
+                        ParseUtils.parseStartOfRecording(header);
+                } catch (EDFParserException e)
+                {
+                        add(problems, Severity.WARNING, "START_OF_RECORDING", -1, -1, "Invalid start of recording "
+                                + header.startDate.trim() + " " + header.startTime.trim() + ".");
+                }
+                if (header.durationOfRecords < 0)
+                        add(problems, Severity.ERROR, "DURATION", -1, -1, "Negative duration of data records.");
+
+                boolean valid = header.numberOfChannels > 0;
+                if (!valid)
+                        add(problems, Severity.ERROR, "CHANNELS", -1, -1, "The file has no channels.");
+                int annotationChannel = -1;
+                for (int i = 0; i < header.numberOfChannels; i++)
+                {
+                        if (EDFChannelExtractor.isAnnotationChannel(header, i))
+                        {
+                                if (annotationChannel < 0)
+                                        annotationChannel = i;
+                                if (header.numberOfSamples[i] > 0)
+                                        continue;
+                        }
+                        if (header.numberOfSamples[i] <= 0)
+                        {
+                                add(problems, Severity.ERROR, "SAMPLES", -1, i, "The channel has "
+                                        + header.numberOfSamples[i] + " samples per data record.");
+                                valid = false;
+                        }
+                        if (header.digitalMin[i] >= header.digitalMax[i] || header.digitalMin[i] < Short.MIN_VALUE
+                            || header.digitalMax[i] > Short.MAX_VALUE)
+                                add(problems, Severity.ERROR, "DIGITAL_RANGE", -1, i, "Invalid digital range "
+                                        + header.digitalMin[i] + " to " + header.digitalMax[i] + ".");
+                        if (header.minInUnits[i].equals(header.maxInUnits[i]))
+                                add(problems, Severity.ERROR, "PHYSICAL_RANGE", -1, i, "Empty physical range "
+                                        + header.minInUnits[i] + " to " + header.maxInUnits[i] + ".");
+                }
+                if (edfPlus && annotationChannel < 0)
+                        add(problems, Severity.ERROR, "ANNOTATIONS", -1, -1, "The EDF+ file has no annotation channel.");
+                if (!valid || header.bytesInHeader != expectedHeaderSize)
+                        return 0;
+
+                int bytesPerRecord = header.getBytesPerRecord();
+                long dataSize = fileSize - header.bytesInHeader;
+                int records = ParseUtils.numberOfRecords(header, fileSize);
+                if (header.numberOfRecords < 0)
+                        add(problems, Severity.WARNING, "RECORDS", -1, -1, "The number of data records is -1, the file "
+                                + "has " + records + " data records.");
+                if (dataSize < (long) records * bytesPerRecord)
+                {
+                        int available = (int) Math.max(0, dataSize / bytesPerRecord);
+                        add(problems, Severity.ERROR, "TRUNCATED", available, -1, "The file has " + available
+                                + " of " + records + " data records.");
+                        records = available;
+                } else if (dataSize > (long) records * bytesPerRecord)
+                        add(problems, Severity.WARNING, "TRAILING_BYTES", records, -1, "The file has "
+                                + (dataSize - (long) records * bytesPerRecord) + " bytes after the last data record.");
+                return records;
+        }
+
+        private void validateRecords(EDFHeader header, FileChannel channel, int records, List<Problem> problems)
+                throws IOException
+        {
+                int bytesPerRecord = header.getBytesPerRecord();
+                int recordsPerRead = Math.max(1, Math.min(records, BUFFER_SIZE / bytesPerRecord));
+                ByteBuffer buffer = ByteBuffer.allocate(recordsPerRead * bytesPerRecord).order(ByteOrder.LITTLE_ENDIAN);
+                byte[] bytes = buffer.array();
+
+                boolean edfPlus = header.formatVersion.startsWith("EDF+");
+                boolean[] annotations = new boolean[header.numberOfChannels];
+                for (int i = 0; i < annotations.length; i++)
+                        annotations[i] = edfPlus && EDFChannelExtractor.isAnnotationChannel(header, i);
+                boolean[] reported = new boolean[header.numberOfChannels];
+
+                for (int first = 0; first < records && !isFull(problems); first += recordsPerRead)
+                {
+                        int n = Math.min(recordsPerRead, records - first);
+                        buffer.clear().limit(n * bytesPerRecord);
+                        ParseUtils.readFully(channel, buffer, header.bytesInHeader + (long) first * bytesPerRecord);
+
+                        int offset = 0;
+                        for (int r = first; r < first + n; r++)
+                                for (int i = 0; i < header.numberOfChannels; i++)
+                                {
+                                        int length = header.numberOfSamples[i] * 2;
+                                        if (annotations[i])
+                                        {
+                                                String error = checkAnnotations ? checkTALs(bytes, offset, length) : null;
+                                                if (error != null)
+                                                        add(problems, Severity.ERROR, "TAL_SYNTAX", r, i, error);
+                                        } else if (!reported[i])
+                                        {
+                                                int min = header.digitalMin[i];
+                                                int max = header.digitalMax[i];
+                                                for (int k = offset; k < offset + length; k += 2)
+                                                {
+                                                        short value = buffer.getShort(k);
+                                                        if (value < min || value > max)
+                                                        {
+                                                                add(problems, Severity.ERROR, "SAMPLE_RANGE", r, i,
+                                                                    "The sample " + value + " is outside of the digital "
+                                                                    + "range " + min + " to " + max + ".");
+                                                                // one problem per channel is enough
+                                                                reported[i] = true;
+                                                                break;
+                                                        }
+                                                }
+                                        }
+                                        offset += length;
+                                }
+                }
+        }
+
+        /**
+         * Check the syntax of the TALs of one data record.
+         *
+         * @return a description of the first error or null if the TALs are valid
+         */
+        static String checkTALs(byte[] b, int offset, int length)
+        {
+                int end = offset + length;
+                int i = offset;
+                boolean first = true;
+                while (i < end && b[i] != 0)
+                {
+                        if (b[i] != '+' && b[i] != '-')
+                                return "The onset at byte " + (i - offset) + " has no sign.";
+                        i = skipNumber(b, i + 1, end);
+                        if (i < 0)
+                                return "Invalid onset.";
+                        if (i < end && b[i] == 21)
+                        {
+                                i = skipNumber(b, i + 1, end);
+                                if (i < 0)
+                                        return "Invalid duration.";
+                        }
+                        if (i >= end || b[i] != 20)
+                                return "The onset is not followed by byte 20.";
+                        i++;
+                        if (first && (i >= end || b[i] != 20))
+                                return "The first TAL is not a time-keeping annotation.";
+                        while (i < end && b[i] != 0)
+                                i++;
+                        if (i >= end)
+                                return "The last TAL is not terminated by byte 0.";
+                        if (b[i - 1] != 20)
+                                return "An annotation is not terminated by byte 20.";
+                        i++;
+                        first = false;
+                }
+                if (first)
+                        return "The time-keeping annotation is missing.";
+                for (; i < end; i++)
+                        if (b[i] != 0)
+                                return "The bytes after the last TAL are not 0.";
+                return null;
+        }
+
+        /**
+         * @return the index after the decimal number or -1 if there is no number
+         */
+        private static int skipNumber(byte[] b, int i, int end)
+        {
+                int digits = 0;
+                boolean point = false;
+                for (; i < end; i++)
+                {
+                        if (b[i] >= '0' && b[i] <= '9')
+                                digits++;
+                        else if (b[i] == '.' && !point)
+                                point = true;
+                        else
+                                break;
+                }
+                return digits > 0 ? i : -1;
+        }
+
+        private void add(List<Problem> problems, Severity severity, String code, int record, int channel,
+                         String message)
+        {
+                if (!isFull(problems))
+                        problems.add(new Problem(severity, code, record, channel, message));
+        }
+
+        private boolean isFull(List<Problem> problems)
+        {
+                return problems.size() >= maxProblems;
+        }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
@@ -47,6 +48,10 @@ public class EDFWriter
          */
         public static void writeIntoOutputStream(EDFHeader header, OutputStream outputStream) throws IOException
         {
+                EDFListener listener = EDFInstrumentation.listener();
+                long start = listener == null ? 0 : System.nanoTime();
+                EDFEvents.WriteFlush event = EDFEvents.writeFlush();
+                event.begin();
                 DecimalFormatSymbols dfs = new DecimalFormatSymbols();
                 dfs.setDecimalSeparator('.');
                 DecimalFormat shortFormatter = new DecimalFormat(SHORT_DECIMAL_FORMAT, dfs);
@@ -76,6 +81,14 @@ public class EDFWriter
                 putIntoBuffer(bb, header.reserveds);
 
                 outputStream.write(bb.array());
+                if (listener != null)
+                        listener.onPhase(EDFListener.Phase.WRITE, System.nanoTime() - start, bb.capacity(), 0);
+                if (event.shouldCommit())
+                {
+                        event.channels = header.numberOfChannels;
+                        event.bytes = bb.capacity();
+                        event.commit();
+                }
         }
 
         /**
@@ -90,7 +103,7 @@ public class EDFWriter
                 throws IOException {
 
                 short[] data = buildDataArray(edfSignal.getDigitalValues(), header);
-                writeIntoOutputStream(data, outputStream);
+                writeIntoOutputStream(data, header.numberOfRecords, outputStream);
         }
 
         /**
@@ -103,10 +116,32 @@ public class EDFWriter
         public static void writeIntoOutputStream(short[] data, OutputStream outputStream)
                 throws IOException {
 
+                writeIntoOutputStream(data, 0, outputStream);
+        }
+
+        private static void writeIntoOutputStream(short[] data, int numberOfRecords, OutputStream outputStream)
+                throws IOException
+        {
+                EDFListener listener = EDFInstrumentation.listener();
+                long start = listener == null ? 0 : System.nanoTime();
+                EDFEvents.WriteFlush event = EDFEvents.writeFlush();
+                event.begin();
                 ByteBuffer bb = ByteBuffer.allocate(data.length * 2);
                 bb.order(ByteOrder.LITTLE_ENDIAN);
                 putIntoBuffer(bb, data);
                 outputStream.write(bb.array());
+                if (listener != null)
+                {
+                        listener.onAllocation(bb.capacity());
+                        listener.onPhase(EDFListener.Phase.WRITE, System.nanoTime() - start, bb.capacity(),
+                                         numberOfRecords);
+                }
+                if (event.shouldCommit())
+                {
+                        event.records = numberOfRecords;
+                        event.bytes = bb.capacity();
+                        event.commit();
+                }
         }
 
         /**
@@ -153,6 +188,43 @@ public class EDFWriter
                 return signalsData;
         }
 
+        /**
+         * Write the remaining bytes of the buffer into the channel, starting at the given position.
+         * The position of the channel is not changed.
+         *
+         * @param ch            The FileChannel to write into
+         * @param buffer        The bytes to write
+         * @param position      The file position to start writing at
+         * @throws IOException  Will be thrown if it is not possible to write into the channel
+         */
+        static void writeFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException
+        {
+                while (buffer.hasRemaining())
+                        position += ch.write(buffer, position);
+        }
+
+        /**
+         * Write a fixed-width ASCII field of the header into the channel, padded with spaces.
+         *
+         * @param ch            The FileChannel to write into
+         * @param offset        The offset of the field from the start of the file
+         * @param length        The width of the field
+         * @param value         The value of the field
+         * @return              The value padded to the width of the field
+         * @throws IOException  Will be thrown if it is not possible to write into the channel
+         */
+        static String writeField(FileChannel ch, int offset, int length, String value) throws IOException
+        {
+                if (value.getBytes(EDFConstants.CHARSET).length > length)
+                        throw new IllegalArgumentException("The value \"" + value + "\" is longer than the field of "
+                                                           + length + " characters.");
+                ByteBuffer field = ByteBuffer.allocate(length);
+                putIntoBuffer(field, length, value);
+                field.flip();
+                writeFully(ch, field, offset);
+                return new String(field.array(), EDFConstants.CHARSET);
+        }
+
         private static void putIntoBuffer(ByteBuffer bb, int lengthPerValue, Double[] values, DecimalFormat df)
         {
                 for (Double value : values)
@@ -22,7 +22,14 @@ package ru.mipt.edf;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.TimeZone;
 
 abstract class ParseUtils
 {
@@ -56,12 +63,117 @@ abstract class ParseUtils
         {
                 int len;
                 byte[] data = new byte[size];
-                len = is.read(data);
+                len = readFully(is, data, 0, size);
                 if (len != data.length)
                         throw new EDFParserException();
                 return new String(data, EDFConstants.CHARSET);
         }
 
+        /**
+         * Read until the range of the array is filled or the stream ends. Streams
+         * like a GZIPInputStream may return less bytes than requested before
+         * their end.
+         *
+         * @return the number of bytes read, less than length only at the end of the stream
+         */
+        public static int readFully(InputStream is, byte[] data, int offset, int length) throws IOException
+        {
+                int total = 0;
+                while (total < length)
+                {
+                        int len = is.read(data, offset + total, length - total);
+                        if (len < 0)
+                                break;
+                        total += len;
+                }
+                return total;
+        }
+
+        public static void readFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException
+        {
+                while (buffer.hasRemaining())
+                {
+                        int len = ch.read(buffer, position);
+                        if (len < 0)
+                                throw new EDFParserException();
+                        position += len;
+                }
+        }
+
+        /**
+         * Read the bytes of the header of an EDF-File with positional reads.
+         *
+         * @return the bytes of the header records of the recording and of all channels
+         */
+        public static byte[] readHeaderBytes(FileChannel ch) throws IOException
+        {
+                ByteBuffer recordingInfo = ByteBuffer.allocate(EDFConstants.HEADER_SIZE_RECORDING_INFO);
+                readFully(ch, recordingInfo, 0);
+                int numberOfChannels = Integer.parseInt(new String(recordingInfo.array(),
+                        EDFConstants.NUMBER_OF_CHANELS_OFFSET, EDFConstants.NUMBER_OF_CHANELS_SIZE,
+                        EDFConstants.CHARSET).trim());
+
+                ByteBuffer bytebuf = ByteBuffer.allocate(EDFConstants.HEADER_SIZE_RECORDING_INFO
+                                                         + numberOfChannels * EDFConstants.HEADER_SIZE_PER_CHANNEL);
+                bytebuf.put(recordingInfo.array());
+                readFully(ch, bytebuf, EDFConstants.HEADER_SIZE_RECORDING_INFO);
+                return bytebuf.array();
+        }
+
+        /**
+         * @return the number of complete data records in a file of the given size.
+         *         This is the number from the header unless it is -1 (recording
+         *         still in progress).
+         */
+        public static int numberOfRecords(EDFHeader header, long fileSize)
+        {
+                if (header.numberOfRecords >= 0)
+                        return header.numberOfRecords;
+                return (int) Math.max(0, (fileSize - header.bytesInHeader) / header.getBytesPerRecord());
+        }
+
+        /**
+         * @return the start of the recording as milliseconds of the wall clock
+         *         time read as UTC, so adding durations is not affected by daylight
+         *         saving time
+         */
+        public static long parseStartOfRecording(EDFHeader header) throws EDFParserException
+        {
+                try
+                {
+                        return startOfRecordingFormat().parse(header.startDate.trim() + " " + header.startTime.trim())
+                                .getTime();
+                } catch (ParseException e)
+                {
+                        throw new EDFParserException(e);
+                }
+        }
+
+        /**
+         * @return the start date and the start time for the wall clock time in
+         *         milliseconds as returned by {@link #parseStartOfRecording(EDFHeader)}
+         */
+        public static String[] formatStartOfRecording(long startOfRecording)
+        {
+                return startOfRecordingFormat().format(startOfRecording).split(" ");
+        }
+
+        private static SimpleDateFormat startOfRecordingFormat()
+        {
+                SimpleDateFormat format = new SimpleDateFormat("dd.MM.yy HH.mm.ss");
+                format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                format.setLenient(false);
+                return format;
+        }
+
+        /**
+         * @return whether the path is a regular file with the extension .edf
+         */
+        public static boolean isEDFFile(Path path)
+        {
+                return Files.isRegularFile(path) && path.getFileName().toString().toLowerCase().endsWith(".edf");
+        }
+
         public static <T> T[] removeElement(T[] array, int i)
         {
                 if (i < 0)
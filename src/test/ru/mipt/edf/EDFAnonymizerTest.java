@@ -0,0 +1,83 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFAnonymizerTest {
+
+        private Path root;
+
+        @Before
+        public void createTree() throws Exception {
+
+                root = Files.createTempDirectory("anonymize");
+                Files.createDirectory(root.resolve("sub"));
+                Files.copy(Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI()),
+                           root.resolve("sub").resolve("a.edf"));
+                Files.write(root.resolve("broken.edf"), new byte[] { 1, 2, 3 });
+                Files.write(root.resolve("notes.txt"), new byte[] { 1, 2, 3 });
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                try (Stream<Path> files = Files.walk(root)) {
+                        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+                }
+        }
+
+        @Test
+        public void treeShouldBeAnonymized() throws Exception {
+
+                Path file = root.resolve("sub").resolve("a.edf");
+                EDFParserResult before = parse(file);
+
+                Map<Path, Exception> failures = EDFAnonymizer.anonymizeTree(root, 2);
+
+                assertEquals(1, failures.size());
+                assertTrue(failures.containsKey(root.resolve("broken.edf")));
+                EDFParserResult after = parse(file);
+                assertEquals("", after.getHeader().getSubjectID().trim());
+                assertEquals("", after.getHeader().getRecordingID().trim());
+                assertEquals(EDFAnonymizer.ANONYMOUS_START_DATE, after.getHeader().getStartDate());
+                assertEquals(EDFAnonymizer.ANONYMOUS_START_TIME, after.getHeader().getStartTime());
+                assertArrayEquals(before.getSignal().getDigitalValues()[0], after.getSignal().getDigitalValues()[0]);
+        }
+
+        private static EDFParserResult parse(Path file) throws IOException {
+
+                try (InputStream is = Files.newInputStream(file)) {
+                        return EDFParser.parseEDF(is);
+                }
+        }
+}
@@ -0,0 +1,138 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EDFAppenderTest {
+
+        private static final String EDF_INPUT_FILE = "test_generator.edf";
+        private static final String EDF_OUTPUT_FILE = "appendedEdf.edf";
+
+        @Before
+        @After
+        public void cleanup() {
+
+                try {
+                        Files.delete(Paths.get(EDF_OUTPUT_FILE));
+                } catch (Exception ex) {
+                        // ignore, as not being relevant.
+                }
+        }
+
+        @Test
+        public void testAppendRecords() throws Exception {
+
+                Path outputFilePath = copyInputFile();
+                EDFParserResult original;
+                try (FileInputStream is = new FileInputStream(outputFilePath.toFile())) {
+                        original = EDFParser.parseEDF(is);
+                }
+                int numberOfRecords = original.getHeader().getNumberOfRecords();
+
+                // append the first two records of every channel at the end of the file
+                short[][] appended = new short[original.getHeader().getNumberOfChannels()][];
+                for (int i = 0; i < appended.length; i++) {
+                        int samples = 2 * original.getHeader().getNumberOfSamples()[i];
+                        appended[i] = Arrays.copyOf(original.getSignal().getDigitalValues()[i], samples);
+                }
+                try (EDFAppender appender = new EDFAppender(outputFilePath)) {
+                        appender.appendRecords(appended);
+                        assertEquals(numberOfRecords + 2, appender.getNumberOfRecords());
+                }
+
+                EDFParserResult result;
+                try (FileInputStream is = new FileInputStream(outputFilePath.toFile())) {
+                        result = EDFParser.parseEDF(is);
+                }
+                assertEquals(numberOfRecords + 2, result.getHeader().getNumberOfRecords());
+                assertEquals(original.getHeader().getBytesInHeader() + (long) (numberOfRecords + 2)
+                             * original.getHeader().getBytesPerRecord(), Files.size(outputFilePath));
+                for (int i = 0; i < appended.length; i++) {
+                        short[] values = result.getSignal().getDigitalValues()[i];
+                        short[] tail = Arrays.copyOfRange(values, values.length - appended[i].length, values.length);
+                        assertArrayEquals(appended[i], tail);
+                }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testAppendPartialRecord() throws Exception {
+
+                Path outputFilePath = copyInputFile();
+                try (EDFAppender appender = new EDFAppender(outputFilePath)) {
+                        appender.appendRecords(new short[appender.getHeader().getSamplesPerRecord() - 1]);
+                }
+        }
+
+        @Test
+        public void testAppendRecordsWithoutSamplesInTheFirstChannel() throws Exception {
+
+                Path outputFilePath = Paths.get(EDF_OUTPUT_FILE);
+                new EDFGenerator().channel("Marker", 0.4, EDFGenerator.Shape.SQUARE, 0.1, 0.5)
+                                  .channel("Fz", 10, EDFGenerator.Shape.SINE, 1, 0.5).numberOfRecords(5)
+                                  .write(outputFilePath);
+
+                short[] values = new short[20];
+                for (int i = 0; i < values.length; i++)
+                        values[i] = (short) (100 * i);
+                try (EDFAppender appender = new EDFAppender(outputFilePath)) {
+                        assertEquals(0, (int) appender.getHeader().getNumberOfSamples()[0]);
+                        appender.appendRecords(new short[][] { new short[0], values });
+                        assertEquals(7, appender.getNumberOfRecords());
+                }
+                try (EDFReader reader = new EDFReader(outputFilePath)) {
+                        assertArrayEquals(values, reader.readDigitalRecords(5, 2)[1]);
+                }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testAppendChannelsOfDifferentLength() throws Exception {
+
+                Path outputFilePath = copyInputFile();
+                try (EDFAppender appender = new EDFAppender(outputFilePath)) {
+                        Integer[] numberOfSamples = appender.getHeader().getNumberOfSamples();
+                        short[][] values = new short[numberOfSamples.length][];
+                        for (int i = 0; i < values.length; i++)
+                                values[i] = new short[(i == 1 ? 3 : 2) * numberOfSamples[i]];
+                        appender.appendRecords(values);
+                }
+        }
+
+        private Path copyInputFile() throws Exception {
+
+                URL resource = getClass().getClassLoader().getResource(EDF_INPUT_FILE);
+                assert resource != null;
+                Path outputFilePath = Paths.get(EDF_OUTPUT_FILE);
+                Files.copy(Paths.get(resource.toURI()), outputFilePath, StandardCopyOption.REPLACE_EXISTING);
+                return outputFilePath;
+        }
+}
@@ -0,0 +1,151 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EDFBatchParserTest {
+
+        @Test
+        public void allFilesShouldBeDelivered() throws Exception {
+
+                Path file = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                List<EDFParserResult> results = Collections.synchronizedList(new ArrayList<>());
+                List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+                new EDFBatchParser().maxConcurrency(2).maxInFlightBytes(64L << 20)
+                                    .parse(Stream.of(file, file, file, Paths.get("missing.edf")),
+                                           callback(results, errors));
+
+                assertEquals(3, results.size());
+                assertEquals(1, errors.size());
+                assertArrayEquals(results.get(0).getSignal().getDigitalValues()[3],
+                                  results.get(2).getSignal().getDigitalValues()[3]);
+        }
+
+        @Test
+        public void rejectedFilesShouldBeDeliveredAsErrors() throws Exception {
+
+                Path file = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                executor.shutdown();
+                List<EDFParserResult> results = new ArrayList<>();
+                List<Exception> errors = new ArrayList<>();
+                // without released permits the second file would wait forever
+                new EDFBatchParser().maxConcurrency(1).executor(executor)
+                                    .parse(Stream.of(file, file), callback(results, errors));
+
+                assertEquals(0, results.size());
+                assertEquals(2, errors.size());
+                assertTrue(errors.get(0) instanceof RejectedExecutionException);
+        }
+
+        @Test
+        public void headersShouldBeReadByTheTasks() throws Exception {
+
+                Path invalid = Paths.get(getClass().getClassLoader().getResource("invalid.edf").toURI());
+                List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+                new EDFBatchParser().maxConcurrency(2).parse(Stream.of(invalid, invalid), new EDFBatchParser.Callback() {
+
+                        @Override
+                        public void onResult(Path path, EDFParserResult result, long nanos) {
+                        }
+
+                        @Override
+                        public void onError(Path path, Exception error, long nanos) {
+
+                                threads.add(Thread.currentThread());
+                        }
+                });
+
+                assertEquals(2, threads.size());
+                assertFalse(threads.contains(Thread.currentThread()));
+        }
+
+        @Test
+        public void filesLargerThanTheLimitShouldBeParsedOneAtATime() throws Exception {
+
+                Path file = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                AtomicInteger parsing = new AtomicInteger();
+                AtomicInteger maxParsing = new AtomicInteger();
+                EDFListener listener = new EDFListener() {
+                        @Override
+                        public void onPhase(Phase phase, long nanos, long bytes, int records) {
+
+                                // the data records are read after the memory is acquired
+                                if (phase == Phase.READ)
+                                        maxParsing.accumulateAndGet(parsing.incrementAndGet(), Math::max);
+                                else if (phase == Phase.CONVERT)
+                                        parsing.decrementAndGet();
+                        }
+                };
+                List<EDFParserResult> results = Collections.synchronizedList(new ArrayList<>());
+                List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+                EDFInstrumentation.addListener(listener);
+                try {
+                        new EDFBatchParser().maxConcurrency(4).maxInFlightBytes(1024)
+                                            .parse(Stream.of(file, file, file, file), callback(results, errors));
+                } finally {
+                        EDFInstrumentation.removeListener(listener);
+                }
+
+                assertEquals(4, results.size());
+                assertEquals(0, errors.size());
+                assertEquals(1, maxParsing.get());
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void zeroConcurrencyShouldBeRejected() {
+
+                new EDFBatchParser().maxConcurrency(0);
+        }
+
+        private static EDFBatchParser.Callback callback(List<EDFParserResult> results, List<Exception> errors) {
+
+                return new EDFBatchParser.Callback() {
+
+                        @Override
+                        public void onResult(Path path, EDFParserResult result, long nanos) {
+
+                                results.add(result);
+                        }
+
+                        @Override
+                        public void onError(Path path, Exception error, long nanos) {
+
+                                errors.add(error);
+                        }
+                };
+        }
+}
@@ -0,0 +1,97 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFBlockCacheTest {
+
+        private static Path file;
+        private static EDFReader reader;
+
+        @BeforeClass
+        public static void generate() throws Exception {
+
+                file = Files.createTempFile("cached", ".edf");
+                new EDFGenerator().channels(8, "EEG", 128, EDFGenerator.Shape.SINE)
+                                  .channel("Empty", 0.1, EDFGenerator.Shape.SINE, 1, 0.5).numberOfRecords(100).write(file);
+                reader = new EDFReader(file);
+        }
+
+        @AfterClass
+        public static void cleanup() throws IOException {
+
+                reader.close();
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void cachedReadsShouldEqualTheReader() throws Exception {
+
+                EDFBlockCache cache = new EDFBlockCache(1 << 20, 10);
+                EDFSampleSource source = cache.cached(reader);
+                for (long first : new long[] { 0, 1000, 1270, 12000 }) {
+                        for (int channel = 0; channel < 8; channel++)
+                                assertArrayEquals(reader.readDigitalSamples(channel, first, 500),
+                                                  source.readDigitalSamples(channel, first, 500));
+                }
+        }
+
+        @Test
+        public void channelsShouldShareTheDecodedRecords() throws Exception {
+
+                EDFBlockCache cache = new EDFBlockCache(1 << 20, 10);
+                // samples 1000 to 2279 are in the records 7 to 17, so in the blocks 0 and 1
+                for (int channel = 0; channel < 8; channel++)
+                        cache.readDigitalSamples(reader, channel, 1000, 1280);
+                assertEquals(2, cache.getMisses());
+                assertEquals(14, cache.getHits());
+        }
+
+        @Test
+        public void leastRecentlyUsedBlocksShouldBeEvicted() throws Exception {
+
+                // a block of 10 records of 8 channels with 128 samples has about 20 kB
+                EDFBlockCache cache = new EDFBlockCache(50000, 10);
+                for (int block = 0; block < 10; block++)
+                        cache.readDigitalSamples(reader, 0, block * 1280L, 1);
+                assertTrue(cache.getSize() <= cache.getMaximumSize());
+                assertEquals(8, cache.getEvictions());
+                short[] values = cache.readDigitalSamples(reader, 3, 9 * 1280L, 1280);
+                assertEquals(11, cache.getMisses() + cache.getHits());
+                assertArrayEquals(Arrays.copyOf(reader.readDigitalSamples(3, 9 * 1280L, 1280), 1280), values);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void emptyChannelShouldBeRejected() throws Exception {
+
+                new EDFBlockCache(1 << 20, 10).readDigitalSamples(reader, 8, 0, 0);
+        }
+}
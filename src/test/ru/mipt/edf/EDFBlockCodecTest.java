@@ -0,0 +1,107 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFBlockCodecTest {
+
+        private final EDFHeader header = new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5)
+                                                           .channel("Cz", 37, EDFGenerator.Shape.NOISE, 1, 0.5)
+                                                           .channel("Pz", 256, EDFGenerator.Shape.SINE, 5, 0.5)
+                                                           .buildHeader();
+
+        @Test
+        public void decodedBlockShouldEqualTheEncodedRecords() {
+
+                ByteBuffer records = randomRecords(3);
+                ByteBuffer encoded = ByteBuffer.allocate(EDFBlockCodec.maxEncodedSize(header, 3));
+                EDFBlockCodec.encode(header, records, 3, encoded);
+                encoded.flip();
+
+                ByteBuffer decoded = ByteBuffer.allocate(records.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+                EDFBlockCodec.decode(header, encoded, 3, decoded, -1);
+                assertEquals(0, encoded.remaining());
+                assertArrayEquals(records.array(), decoded.array());
+        }
+
+        @Test
+        public void singleChannelShouldBeDecoded() {
+
+                ByteBuffer records = randomRecords(5);
+                ByteBuffer encoded = ByteBuffer.allocate(EDFBlockCodec.maxEncodedSize(header, 5));
+                EDFBlockCodec.encode(header, records, 5, encoded);
+                encoded.flip();
+
+                ByteBuffer decoded = ByteBuffer.allocate(records.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+                EDFBlockCodec.decode(header, encoded, 5, decoded, 1);
+                int bytesPerRecord = header.getBytesPerRecord();
+                for (int r = 0; r < 5; r++)
+                        for (int k = 0; k < 37; k++) {
+                                int position = r * bytesPerRecord + 200 + k * 2;
+                                assertEquals(records.getShort(position), decoded.getShort(position));
+                        }
+                assertEquals(0, decoded.getShort(0));
+        }
+
+        @Test
+        public void extremeValuesShouldFitIntoTheMaximumSize() {
+
+                ByteBuffer records = ByteBuffer.allocate(4 * header.getBytesPerRecord()).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; records.hasRemaining(); i++)
+                        records.putShort(i % 2 == 0 ? Short.MIN_VALUE : Short.MAX_VALUE);
+                ByteBuffer encoded = ByteBuffer.allocate(EDFBlockCodec.maxEncodedSize(header, 4));
+                EDFBlockCodec.encode(header, records, 4, encoded);
+                encoded.flip();
+
+                ByteBuffer decoded = ByteBuffer.allocate(records.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+                EDFBlockCodec.decode(header, encoded, 4, decoded, -1);
+                assertArrayEquals(records.array(), decoded.array());
+        }
+
+        @Test
+        public void smoothSignalsShouldBeCompressed() {
+
+                ByteBuffer records = ByteBuffer.allocate(10 * header.getBytesPerRecord()).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; records.hasRemaining(); i++)
+                        records.putShort((short) Math.round(1000 * Math.sin(i / 50.0)));
+                ByteBuffer encoded = ByteBuffer.allocate(EDFBlockCodec.maxEncodedSize(header, 10));
+                EDFBlockCodec.encode(header, records, 10, encoded);
+
+                assertTrue(encoded.position() < records.capacity() / 2);
+        }
+
+        private ByteBuffer randomRecords(int numberOfRecords) {
+
+                Random random = new Random(1);
+                ByteBuffer records = ByteBuffer.allocate(numberOfRecords * header.getBytesPerRecord())
+                                               .order(ByteOrder.LITTLE_ENDIAN);
+                while (records.hasRemaining())
+                        records.putShort((short) (random.nextInt(2000) - 1000));
+                return records;
+        }
+}
@@ -0,0 +1,100 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFCatalogTest {
+
+        private Path root;
+
+        @Before
+        public void createTree() throws Exception {
+
+                root = Files.createTempDirectory("catalog");
+                Files.createDirectory(root.resolve("sub"));
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5).numberOfRecords(60)
+                                  .write(root.resolve("short.edf"));
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5)
+                                  .channel("Cz", 100, EDFGenerator.Shape.SINE, 5, 0.5).numberOfRecords(600)
+                                  .write(root.resolve("sub").resolve("long.edf"));
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                try (Stream<Path> files = Files.walk(root)) {
+                        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+                }
+        }
+
+        @Test
+        public void scannedFilesShouldBeFound() throws Exception {
+
+                EDFCatalog catalog = new EDFCatalog();
+                assertTrue(catalog.scan(root, 2).isEmpty());
+
+                assertEquals(2, catalog.size());
+                assertEquals(2, catalog.findByChannel(" Fz ").size());
+                List<EDFCatalogEntry> cz = catalog.findByChannel("Cz");
+                assertEquals(1, cz.size());
+                assertEquals(root.resolve("sub").resolve("long.edf"), cz.get(0).getPath());
+                assertEquals(0, catalog.findByChannel("Pz").size());
+                assertEquals(1, catalog.findByDuration(0, 100).size());
+                assertEquals(600.0, catalog.findByDuration(100, 1000).get(0).getDuration(), 0);
+        }
+
+        @Test
+        public void savedCatalogShouldBeLoaded() throws Exception {
+
+                EDFCatalog catalog = new EDFCatalog();
+                catalog.scan(root, 1);
+                Path saved = root.resolve("catalog.bin");
+                catalog.save(saved);
+
+                EDFCatalog loaded = EDFCatalog.load(saved);
+                assertEquals(2, loaded.size());
+                assertEquals(1, loaded.findByChannel("Cz").size());
+                assertEquals(catalog.get(root.resolve("short.edf")).getHeader().getChannelLabels()[0],
+                             loaded.get(root.resolve("short.edf")).getHeader().getChannelLabels()[0]);
+        }
+
+        @Test(expected = UnsupportedOperationException.class)
+        public void resultsShouldNotModifyTheIndex() throws Exception {
+
+                EDFCatalog catalog = new EDFCatalog();
+                catalog.scan(root, 1);
+                try {
+                        catalog.findByChannel("Fz").clear();
+                } finally {
+                        assertEquals(2, catalog.findByChannel("Fz").size());
+                }
+        }
+}
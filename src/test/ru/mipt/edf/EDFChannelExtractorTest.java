@@ -0,0 +1,77 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EDFChannelExtractorTest {
+
+        private static final String EDF_OUTPUT_FILE = "extractedEdf.edf";
+
+        @After
+        public void cleanup() throws IOException {
+
+                Files.deleteIfExists(Paths.get(EDF_OUTPUT_FILE));
+        }
+
+        @Test
+        public void extractedChannelsShouldEqualTheSourceChannels() throws Exception {
+
+                Path source = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                Path target = Paths.get(EDF_OUTPUT_FILE);
+                EDFChannelExtractor.extract(source, target, "P4", "F4");
+
+                EDFParserResult expected = parse(source);
+                EDFParserResult actual = parse(target);
+                EDFHeader header = expected.getHeader();
+                assertEquals(2, actual.getHeader().getNumberOfChannels());
+                assertEquals(header.getNumberOfRecords(), actual.getHeader().getNumberOfRecords());
+                assertEquals(header.getStartTime(), actual.getHeader().getStartTime());
+                int[] channels = { header.indexOfChannel("P4"), header.indexOfChannel("F4") };
+                for (int i = 0; i < channels.length; i++) {
+                        assertEquals(header.getChannelLabels()[channels[i]], actual.getHeader().getChannelLabels()[i]);
+                        assertEquals(header.getNumberOfSamples()[channels[i]], actual.getHeader().getNumberOfSamples()[i]);
+                        assertArrayEquals(expected.getSignal().getDigitalValues()[channels[i]],
+                                          actual.getSignal().getDigitalValues()[i]);
+                }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void unknownLabelShouldBeRejected() throws Exception {
+
+                Path source = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                EDFChannelExtractor.extract(source, Paths.get(EDF_OUTPUT_FILE), "Oz");
+        }
+
+        private static EDFParserResult parse(Path file) throws IOException {
+
+                try (InputStream is = Files.newInputStream(file)) {
+                        return EDFParser.parseEDF(is);
+                }
+        }
+}
@@ -0,0 +1,171 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EDFCompressedReaderTest {
+
+        private Path root;
+
+        @Before
+        public void createDirectory() throws IOException {
+
+                root = Files.createTempDirectory("compressed");
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                try (Stream<Path> files = Files.walk(root)) {
+                        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+                }
+        }
+
+        @Test
+        public void decompressedFileShouldEqualTheSource() throws Exception {
+
+                Path source = root.resolve("source.edf");
+                Files.copy(resource("test_generator.edf"), source);
+                // bytes after the last complete data record are kept as well
+                Files.write(source, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+                EDFCompressedWriter.compress(source, root.resolve("source.edfz"), 7);
+                EDFCompressedReader.decompress(root.resolve("source.edfz"), root.resolve("restored.edf"));
+
+                assertTrue(Files.size(root.resolve("source.edfz")) < Files.size(source));
+                assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(root.resolve("restored.edf")));
+        }
+
+        @Test
+        public void windowsAcrossBlocksShouldEqualTheReader() throws Exception {
+
+                Path source = resource("test_generator.edf");
+                EDFCompressedWriter.compress(source, root.resolve("source.edfz"), 7);
+
+                try (EDFReader reader = new EDFReader(source);
+                     EDFCompressedReader compressed = new EDFCompressedReader(root.resolve("source.edfz"))) {
+                        assertEquals(reader.getNumberOfRecords(), compressed.getNumberOfRecords());
+                        int nos = reader.getHeader().getNumberOfSamples()[2];
+                        // from the middle of block 0 to the middle of block 2, and the last block of 900 % 7 records
+                        long[] firsts = { 3L * nos + 5, 0, reader.getNumberOfSamples(2) - 10L * nos };
+                        for (long first : firsts)
+                                assertArrayEquals(reader.readDigitalSamples(2, first, 10 * nos),
+                                                  compressed.readDigitalSamples(2, first, 10 * nos));
+
+                        short[][] expected = reader.readDigitalRecords(5, 16);
+                        short[][] actual = compressed.readDigitalRecords(5, 16);
+                        for (int i = 0; i < expected.length; i++)
+                                assertArrayEquals(expected[i], actual[i]);
+                }
+        }
+
+        @Test
+        public void unknownNumberOfRecordsShouldBeCounted() throws Exception {
+
+                Path source = root.resolve("recording.edf");
+                Files.copy(resource("test_generator.edf"), source);
+                // a recording in progress has -1 data records in the header
+                try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+                        channel.write(ByteBuffer.wrap("-1      ".getBytes(EDFConstants.CHARSET)),
+                                      EDFConstants.NUMBER_OF_DATA_RECORDS_OFFSET);
+                }
+
+                EDFCompressedWriter.compress(source, root.resolve("recording.edfz"), 16);
+                try (EDFCompressedReader compressed = new EDFCompressedReader(root.resolve("recording.edfz"))) {
+                        assertEquals(900, compressed.getNumberOfRecords());
+                        assertEquals(-1, compressed.getHeader().getNumberOfRecords());
+                }
+                EDFCompressedReader.decompress(root.resolve("recording.edfz"), root.resolve("restored.edf"));
+                assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(root.resolve("restored.edf")));
+        }
+
+        @Test
+        public void appendedRecordsShouldBeRead() throws Exception {
+
+                EDFHeader header = new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5)
+                                                     .channel("Cz", 50, EDFGenerator.Shape.SINE, 5, 0.5)
+                                                     .numberOfRecords(5).buildHeader();
+                short[][] signal = { new short[500], new short[250] };
+                for (int i = 0; i < 500; i++)
+                        signal[0][i] = (short) (i * 13);
+                for (int i = 0; i < 250; i++)
+                        signal[1][i] = (short) -i;
+
+                try (EDFCompressedWriter writer = new EDFCompressedWriter(root.resolve("appended.edfz"), header, 2)) {
+                        writer.appendRecords(EDFWriter.buildDataArray(signal, header));
+                        assertEquals(4, writer.getNumberOfRecords());
+                }
+
+                try (EDFCompressedReader compressed = new EDFCompressedReader(root.resolve("appended.edfz"))) {
+                        assertEquals(5, compressed.getNumberOfRecords());
+                        assertEquals(5, compressed.getHeader().getNumberOfRecords());
+                        assertArrayEquals(signal[0], compressed.readDigitalSamples(0, 0, 500));
+                        assertArrayEquals(signal[1], compressed.readDigitalSamples(compressed.getChannel("Cz"), 0, 250));
+                }
+        }
+
+        @Test
+        public void interruptedCompressionShouldDeleteTheTarget() throws Exception {
+
+                Path source = root.resolve("large.edf");
+                Path target = root.resolve("large.edfz");
+                new EDFGenerator().channels(8, "EEG", 256, EDFGenerator.Shape.NOISE).numberOfRecords(1000).write(source);
+                Thread compressing = Thread.currentThread();
+                Thread interrupter = new Thread(() -> {
+                        // interrupt after the first blocks are written
+                        while (target.toFile().length() <= 8)
+                                Thread.yield();
+                        compressing.interrupt();
+                });
+                interrupter.start();
+                try {
+                        EDFCompressedWriter.compress(source, target, 1);
+                        fail();
+                } catch (IOException e) {
+                        // expected
+                } finally {
+                        interrupter.join();
+                        Thread.interrupted();
+                }
+                assertFalse(Files.exists(target));
+        }
+
+        private Path resource(String name) throws Exception {
+
+                return Paths.get(getClass().getClassLoader().getResource(name).toURI());
+        }
+}
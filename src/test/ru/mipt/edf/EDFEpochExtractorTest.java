@@ -0,0 +1,147 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EDFEpochExtractorTest {
+
+        private Path file;
+        private EDFReader reader;
+
+        @Before
+        public void createRecording() throws IOException {
+
+                file = Files.createTempFile("epochs", ".edf");
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5)
+                                  .channel("Cz", 100, EDFGenerator.Shape.NOISE, 1, 0.2)
+                                  .channel("Pz", 50, EDFGenerator.Shape.SQUARE, 5, 0.5)
+                                  .annotationsPerRecord(2).numberOfRecords(60).write(file);
+                reader = new EDFReader(file);
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                reader.close();
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void windowsShouldContainTheSamplesAroundTheOnsets() throws IOException {
+
+                int fz = reader.getChannel("Fz");
+                int cz = reader.getChannel("Cz");
+                EDFEpochExtractor.Epochs epochs = new EDFEpochExtractor(reader).channels(fz, cz).window(-0.2, 0.8)
+                                                                               .filter("Event 1").extract();
+
+                // the window around the last event ends after the recording
+                assertEquals(59, epochs.getNumberOfEpochs());
+                assertEquals(1, epochs.getNumberOfSkippedEpochs());
+                assertEquals(100, epochs.getNumberOfSamples());
+                assertEquals(100, epochs.getSamplingRate(), 0);
+                assertEquals(-0.2, epochs.getStart(), 1e-9);
+                assertNull(epochs.getAverage());
+                assertTrue(epochs.getNumberOfRecordsRead() <= 60);
+                for (int e = 0; e < epochs.getNumberOfEpochs(); e++) {
+                        assertEquals(e + 0.5, epochs.getOnsets()[e], 1e-9);
+                        int[] channels = { fz, cz };
+                        for (int c = 0; c < channels.length; c++) {
+                                double[] expected = reader.readPhysicalSamples(channels[c], 100L * e + 30, 100);
+                                for (int s = 0; s < expected.length; s++)
+                                        assertEquals(expected[s], epochs.getValue(e, c, s), 1e-9);
+                        }
+                }
+        }
+
+        @Test
+        public void averageShouldBeTheMeanOfTheEpochs() throws IOException {
+
+                EDFEpochExtractor.Epochs epochs = new EDFEpochExtractor(reader).channels(reader.getChannel("Fz"))
+                                                                               .window(0, 0.5).average(true).extract();
+
+                int n = epochs.getNumberOfSamples();
+                double[] expected = new double[n];
+                for (int e = 0; e < epochs.getNumberOfEpochs(); e++)
+                        for (int s = 0; s < n; s++)
+                                expected[s] += epochs.getValue(e, 0, s) / epochs.getNumberOfEpochs();
+                assertArrayEquals(expected, epochs.getAverage(), 1e-9);
+        }
+
+        @Test
+        public void overlappingWindowsShouldReadEachRecordOnce() throws IOException {
+
+                // both events of every record with windows of three seconds, five of them not in the recording
+                EDFEpochExtractor.Epochs epochs = new EDFEpochExtractor(reader).channels(reader.getChannel("Fz"))
+                                                                               .window(-1, 2).extract();
+
+                assertEquals(115, epochs.getNumberOfEpochs());
+                assertTrue(epochs.getNumberOfRecordsRead() <= 60);
+                for (int e = 0; e < epochs.getNumberOfEpochs(); e += 7) {
+                        double[] expected = reader.readPhysicalSamples(reader.getChannel("Fz"),
+                                                                       epochs.getOnsets()[e] - 1, 3.0);
+                        for (int s = 0; s < expected.length; s++)
+                                assertEquals(expected[s], epochs.getValue(e, 0, s), 1e-9);
+                }
+        }
+
+        @Test
+        public void unsortedAnnotationsShouldGiveSortedEpochs() throws IOException {
+
+                List<EDFAnnotation> annotations = reader.readAnnotations().stream()
+                                                        .filter(a -> a.getAnnotations().contains("Event 0"))
+                                                        .collect(Collectors.toCollection(ArrayList::new));
+                Collections.reverse(annotations);
+
+                EDFEpochExtractor.Epochs epochs = new EDFEpochExtractor(reader).channels(reader.getChannel("Pz"))
+                                                                               .window(0, 1).extract(annotations);
+
+                assertEquals(60, epochs.getNumberOfEpochs());
+                assertEquals(50, epochs.getNumberOfSamples());
+                for (int e = 0; e < epochs.getNumberOfEpochs(); e++)
+                        assertEquals(e, epochs.getOnsets()[e], 1e-9);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void channelsWithDifferentRatesShouldBeRejected() throws IOException {
+
+                new EDFEpochExtractor(reader).channels(reader.getChannel("Fz"), reader.getChannel("Pz")).extract();
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void emptyWindowShouldBeRejected() {
+
+                new EDFEpochExtractor(reader).window(0.5, 0.5);
+        }
+}
@@ -0,0 +1,103 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class EDFEventsTest {
+
+        private static final String[] EVENTS = { "ru.mipt.edf.FileOpen", "ru.mipt.edf.HeaderParse",
+                                                 "ru.mipt.edf.RecordDecode" };
+
+        private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+
+                return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+        }
+
+        @Test
+        public void recordingShouldContainTheEventsOfTheReader() throws Exception {
+
+                Path file = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                Path dump = Files.createTempFile("events", ".jfr");
+                try {
+                        EDFHeader header;
+                        try (Recording recording = new Recording()) {
+                                for (String name : EVENTS)
+                                        recording.enable(name).withThreshold(Duration.ZERO);
+                                recording.start();
+                                try (EDFReader reader = new EDFReader(file)) {
+                                        header = reader.getHeader();
+                                        reader.readDigitalRecords(10, 5);
+                                }
+                                recording.stop();
+                                recording.dump(dump);
+                        }
+                        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+                        List<RecordedEvent> opened = events(events, "ru.mipt.edf.FileOpen");
+                        assertEquals(1, opened.size());
+                        assertEquals(file.toString(), opened.get(0).getString("path"));
+                        assertEquals(16, opened.get(0).getInt("channels"));
+                        assertEquals(900, opened.get(0).getInt("records"));
+                        assertEquals(Files.size(file), opened.get(0).getLong("bytes"));
+
+                        List<RecordedEvent> parsed = events(events, "ru.mipt.edf.HeaderParse");
+                        assertEquals(1, parsed.size());
+                        assertEquals(file.toString(), parsed.get(0).getString("path"));
+                        assertEquals(header.getBytesInHeader(), parsed.get(0).getLong("bytes"));
+
+                        List<RecordedEvent> decoded = events(events, "ru.mipt.edf.RecordDecode");
+                        assertEquals(1, decoded.size());
+                        assertEquals(10, decoded.get(0).getInt("firstRecord"));
+                        assertEquals(5, decoded.get(0).getInt("records"));
+                        assertEquals(16, decoded.get(0).getInt("channels"));
+                        assertEquals(5L * header.getBytesPerRecord(), decoded.get(0).getLong("bytes"));
+                } finally {
+                        Files.deleteIfExists(dump);
+                }
+        }
+
+        @Test
+        public void disabledEventsShouldBeShared() {
+
+                assertSame(EDFEvents.recordDecode(), EDFEvents.recordDecode());
+                assertSame(EDFEvents.headerParse(), EDFEvents.headerParse());
+                try (Recording recording = new Recording()) {
+                        recording.enable("ru.mipt.edf.RecordDecode");
+                        recording.disable("ru.mipt.edf.HeaderParse");
+                        recording.start();
+                        assertNotSame(EDFEvents.recordDecode(), EDFEvents.recordDecode());
+                        assertSame(EDFEvents.headerParse(), EDFEvents.headerParse());
+                }
+        }
+}
@@ -0,0 +1,86 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+
+public class EDFFftTest {
+
+        @Test
+        public void powerSpectrumShouldEqualTheNaiveDFT() {
+
+                Random random = new Random(11);
+                for (int size = 4; size <= 512; size <<= 1) {
+                        double[] input = new double[size];
+                        for (int i = 0; i < size; i++)
+                                input[i] = random.nextGaussian() * 100;
+                        double[] power = new double[size / 2 + 1];
+                        new EDFFft(size).powerSpectrum(input, power);
+
+                        double[] expected = naivePowerSpectrum(input);
+                        for (int k = 0; k <= size / 2; k++)
+                                assertEquals("bin " + k + " of " + size, expected[k], power[k], 1e-9 * expected[0] + 1e-6);
+                }
+        }
+
+        @Test
+        public void planShouldBeReusable() {
+
+                EDFFft fft = new EDFFft(64);
+                double[] input = new double[64];
+                for (int i = 0; i < 64; i++)
+                        input[i] = Math.cos(2 * Math.PI * 5 * i / 64);
+                double[] first = new double[33];
+                double[] second = new double[33];
+                fft.powerSpectrum(input, first);
+                fft.powerSpectrum(input, second);
+
+                for (int k = 0; k <= 32; k++)
+                        assertEquals(first[k], second[k], 0);
+                // a cosine on bin 5 has the magnitude size / 2 there
+                assertEquals(32 * 32, first[5], 1e-9);
+                assertEquals(0, first[4], 1e-9);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void sizeShouldBeAPowerOfTwo() {
+
+                new EDFFft(48);
+        }
+
+        private static double[] naivePowerSpectrum(double[] input) {
+
+                int n = input.length;
+                double[] power = new double[n / 2 + 1];
+                for (int k = 0; k <= n / 2; k++) {
+                        double re = 0;
+                        double im = 0;
+                        for (int t = 0; t < n; t++) {
+                                re += input[t] * Math.cos(2 * Math.PI * k * t / n);
+                                im -= input[t] * Math.sin(2 * Math.PI * k * t / n);
+                        }
+                        power[k] = re * re + im * im;
+                }
+                return power;
+        }
+}
@@ -0,0 +1,137 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.DoubleFunction;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EDFFilterBankTest {
+
+        private static final DoubleFunction<EDFFilter> FACTORY = rate -> {
+                if (rate <= 0)
+                        throw new IllegalArgumentException("Invalid sampling rate " + rate + ".");
+                return EDFBiquadFilter.bandpass(rate, 0.5, 35, 4).andThen(EDFBiquadFilter.notch(rate, 50, 30))
+                                      .andThen(EDFFirFilter.lowpass(rate, 40, 31));
+        };
+
+        private Path file;
+        private EDFHeader header;
+        private EDFParserResult unfiltered;
+
+        @Before
+        public void createRecording() throws IOException {
+
+                file = Files.createTempFile("filtered", ".edf");
+                new EDFGenerator().channel("Fz", 256, EDFGenerator.Shape.SQUARE, 10, 0.5)
+                                  .channel("Cz", 200, EDFGenerator.Shape.NOISE, 1, 0.2)
+                                  .channel("Empty", 0.1, EDFGenerator.Shape.SINE, 1, 0.5)
+                                  .annotationsPerRecord(1).numberOfRecords(30).write(file);
+                try (EDFReader reader = new EDFReader(file)) {
+                        // with the annotation channel, which the parser removes from its header
+                        header = reader.getHeader();
+                }
+                try (InputStream is = Files.newInputStream(file)) {
+                        unfiltered = EDFParser.parseEDF(is);
+                }
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void channelsWithoutFilterShouldBeSkipped() {
+
+                EDFFilterBank bank = new EDFFilterBank(header, FACTORY);
+
+                assertEquals(4, bank.getNumberOfChannels());
+                assertNull(bank.get(2));
+                assertNull(bank.get(3));
+        }
+
+        @Test
+        public void filteringWhileParsingShouldEqualFilteringTheWholeArray() throws IOException {
+
+                EDFParserResult filtered;
+                try (InputStream is = Files.newInputStream(file)) {
+                        filtered = EDFParser.parseEDF(is, new EDFFilterBank(header, FACTORY));
+                }
+
+                for (int channel = 0; channel < 2; channel++)
+                        assertArrayEquals(filterWholeArray(channel), filtered.getSignal().getValuesInUnits()[channel],
+                                          1e-9);
+        }
+
+        @Test
+        public void filteringStreamedRecordsShouldEqualFilteringTheWholeArray() throws IOException {
+
+                EDFFilterBank bank = new EDFFilterBank(header, FACTORY);
+                double[][] filtered = { new double[30 * 256], new double[30 * 200] };
+                try (EDFReader reader = new EDFReader(file); Stream<EDFRecord> records = reader.records(7)) {
+                        records.forEachOrdered(record -> {
+                                double[][] values = bank.process(record);
+                                for (int channel = 0; channel < 2; channel++)
+                                        System.arraycopy(values[channel], 0, filtered[channel],
+                                                         record.getFirstRecord() * values[channel].length
+                                                         / record.getNumberOfRecords(), values[channel].length);
+                        });
+                }
+
+                for (int channel = 0; channel < 2; channel++)
+                        assertArrayEquals(filterWholeArray(channel), filtered[channel], 1e-9);
+        }
+
+        @Test
+        public void parallelBankShouldEqualSequentialBank() throws IOException {
+
+                EDFParserResult sequential;
+                EDFParserResult parallel;
+                try (InputStream is = Files.newInputStream(file)) {
+                        sequential = EDFParser.parseEDF(is, new EDFFilterBank(header, FACTORY));
+                }
+                try (InputStream is = Files.newInputStream(file)) {
+                        parallel = EDFParser.parseEDF(is, new EDFFilterBank(header, FACTORY)
+                                .parallel(true));
+                }
+
+                for (int channel = 0; channel < 3; channel++)
+                        assertArrayEquals(sequential.getSignal().getValuesInUnits()[channel],
+                                          parallel.getSignal().getValuesInUnits()[channel], 0);
+        }
+
+        private double[] filterWholeArray(int channel) {
+
+                double[] values = unfiltered.getSignal().getValuesInUnits()[channel].clone();
+                FACTORY.apply(header.getSamplingRate(channel)).process(values, 0, values.length);
+                return values;
+        }
+}
@@ -0,0 +1,156 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFFollowerTest {
+
+        private Path file;
+        private byte[] recording;
+        private int bytesInHeader;
+        private int bytesPerRecord;
+
+        @Before
+        public void createRecording() throws IOException {
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5)
+                                  .channel("Cz", 50, EDFGenerator.Shape.NOISE, 1, 0.2).numberOfRecords(20).write(out);
+                recording = out.toByteArray();
+                EDFHeader header = EDFParser.parseEDF(new ByteArrayInputStream(recording)).getHeader();
+                bytesInHeader = header.getBytesInHeader();
+                bytesPerRecord = header.getBytesPerRecord();
+                file = Files.createTempFile("followed", ".edf");
+                Files.write(file, Arrays.copyOf(recording, bytesInHeader + 5 * bytesPerRecord + 17));
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void completedRecordsShouldBeDeliveredOnce() throws Exception {
+
+                List<Integer> firsts = new ArrayList<>();
+                try (EDFFollower follower = new EDFFollower(file).maxRecordsPerDelivery(4)) {
+                        EDFFollower.Listener listener = (first, values) -> firsts.add(first);
+                        assertEquals(5, follower.poll(listener));
+                        assertEquals(0, follower.poll(listener));
+                        append(bytesInHeader + 5 * bytesPerRecord + 17, recording.length);
+                        assertEquals(15, follower.poll(listener));
+                        assertEquals(20, follower.getNumberOfRecordsDelivered());
+                }
+                assertEquals(Arrays.asList(0, 4, 5, 9, 13, 17), firsts);
+        }
+
+        @Test
+        public void deliveredValuesShouldEqualTheParser() throws Exception {
+
+                append(bytesInHeader + 5 * bytesPerRecord + 17, recording.length);
+                short[][] expected = EDFParser.parseEDF(new ByteArrayInputStream(recording)).getSignal()
+                                              .getDigitalValues();
+                short[][][] delivered = new short[1][][];
+                try (EDFFollower follower = new EDFFollower(file).maxRecordsPerDelivery(100)) {
+                        follower.poll((first, values) -> delivered[0] = values);
+                }
+                assertArrayEquals(expected[0], delivered[0][0]);
+                assertArrayEquals(expected[1], delivered[0][1]);
+        }
+
+        @Test
+        public void listenerExceptionShouldBeReported() throws Exception {
+
+                CountDownLatch error = new CountDownLatch(1);
+                CountDownLatch all = new CountDownLatch(1);
+                try (EDFFollower follower = new EDFFollower(file).pollInterval(10)) {
+                        follower.follow(new EDFFollower.Listener() {
+
+                                @Override
+                                public void onRecords(int firstRecord, short[][] digitalValues) {
+
+                                        if (firstRecord == 0)
+                                                throw new IllegalStateException("listener failed");
+                                        if (firstRecord + digitalValues[0].length / 100 == 20)
+                                                all.countDown();
+                                }
+
+                                @Override
+                                public void onError(Exception e) {
+
+                                        if (e instanceof IllegalStateException)
+                                                error.countDown();
+                                }
+                        });
+                        assertTrue(error.await(10, TimeUnit.SECONDS));
+                        // following continues after the exception
+                        append(bytesInHeader + 5 * bytesPerRecord + 17, recording.length);
+                        assertTrue(all.await(10, TimeUnit.SECONDS));
+                }
+        }
+
+        @Test
+        public void errorsShouldNotBeReportedAfterClose() throws Exception {
+
+                List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+                EDFFollower follower = new EDFFollower(file).pollInterval(1);
+                follower.follow(new EDFFollower.Listener() {
+
+                        @Override
+                        public void onRecords(int firstRecord, short[][] digitalValues) {
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+
+                                errors.add(e);
+                        }
+                });
+                Thread.sleep(20);
+                follower.close();
+                int reported = errors.size();
+                Thread.sleep(50);
+                assertEquals(0, reported);
+                assertEquals(0, errors.size());
+        }
+
+        private void append(int from, int to) throws IOException {
+
+                Files.write(file, Arrays.copyOfRange(recording, from, to), StandardOpenOption.APPEND);
+        }
+}
@@ -0,0 +1,135 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EDFGeneratorTest {
+
+        @Test
+        public void sameConfigurationShouldGenerateSameBytes() throws IOException {
+
+                byte[] first = generate(new EDFGenerator().seed(3).channels(4, "EEG", 128, EDFGenerator.Shape.SINE)
+                                                          .annotationsPerRecord(2).numberOfRecords(10));
+                byte[] second = generate(new EDFGenerator().seed(3).channels(4, "EEG", 128, EDFGenerator.Shape.SINE)
+                                                           .annotationsPerRecord(2).numberOfRecords(10));
+
+                assertArrayEquals(first, second);
+        }
+
+        @Test
+        public void seedShouldApplyToChannelsAddedBefore() throws IOException {
+
+                byte[] seedFirst = generate(new EDFGenerator().noise(0).seed(7)
+                                                              .channels(4, "EEG", 128, EDFGenerator.Shape.SINE));
+                byte[] seedLast = generate(new EDFGenerator().noise(0)
+                                                             .channels(4, "EEG", 128, EDFGenerator.Shape.SINE).seed(7));
+                byte[] otherSeed = generate(new EDFGenerator().noise(0).seed(8)
+                                                              .channels(4, "EEG", 128, EDFGenerator.Shape.SINE));
+
+                assertArrayEquals(seedFirst, seedLast);
+                assertFalse(Arrays.equals(seedFirst, otherSeed));
+        }
+
+        @Test
+        public void generatedRecordingShouldBeParsed() throws IOException {
+
+                byte[] bytes = generate(new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SQUARE, 5, 0.5)
+                                                          .noise(0).annotationsPerRecord(3).numberOfRecords(4));
+                EDFParserResult result = EDFParser.parseEDF(new ByteArrayInputStream(bytes));
+
+                assertEquals("EDF+C", result.getHeader().getFormatVersion().trim());
+                assertEquals(4, result.getHeader().getNumberOfRecords());
+                assertEquals(400, result.getSignal().getDigitalValues()[0].length);
+                assertEquals(Math.round(0.5 * Short.MAX_VALUE), result.getSignal().getDigitalValues()[0][0]);
+                assertEquals(Math.round(-0.5 * Short.MAX_VALUE), result.getSignal().getDigitalValues()[0][10]);
+        }
+
+        @Test
+        public void defaultStartDateShouldBeReadInTheEDFCentury() throws IOException {
+
+                byte[] bytes = generate(new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5));
+                String startDate = EDFParser.parseEDF(new ByteArrayInputStream(bytes)).getHeader().getStartDate();
+                int yy = Integer.parseInt(startDate.trim().substring(6));
+                // EDF reads two-digit years 85-99 as 19xx and 00-84 as 20xx
+                int year = yy >= 85 ? 1900 + yy : 2000 + yy;
+
+                assertTrue(startDate, year == 1999 || year == 2000);
+        }
+
+        @Test
+        public void bytesShouldNotDependOnTheDefaultTimeZoneAndLocale() throws IOException {
+
+                EDFGenerator generator = new EDFGenerator().seed(3).channels(2, "EEG", 128, EDFGenerator.Shape.SINE)
+                                                           .annotationsPerRecord(2).numberOfRecords(3);
+                byte[] expected = generate(generator);
+
+                TimeZone timeZone = TimeZone.getDefault();
+                Locale locale = Locale.getDefault();
+                try {
+                        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+                        Locale.setDefault(new Locale("ru"));
+                        assertArrayEquals(expected, generate(generator));
+                } finally {
+                        TimeZone.setDefault(timeZone);
+                        Locale.setDefault(locale);
+                }
+                EDFHeader header = EDFParser.parseEDF(new ByteArrayInputStream(expected)).getHeader();
+                assertEquals("01.01.00", header.getStartDate());
+                assertEquals("00.00.00", header.getStartTime());
+                assertTrue(header.getRecordingID().startsWith("Startdate 01-JAN-2000 "));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void zeroDurationOfRecordShouldBeRejected() {
+
+                new EDFGenerator().durationOfRecord(0);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void negativeNumberOfRecordsShouldBeRejected() {
+
+                new EDFGenerator().numberOfRecords(-1);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void nonPositiveSamplingRateShouldBeRejected() {
+
+                new EDFGenerator().channel("Fz", 0, EDFGenerator.Shape.SINE, 10, 0.5);
+        }
+
+        private static byte[] generate(EDFGenerator generator) throws IOException {
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                generator.write(out);
+                return out.toByteArray();
+        }
+}
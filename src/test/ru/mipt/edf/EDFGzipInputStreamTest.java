@@ -0,0 +1,109 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+
+public class EDFGzipInputStreamTest {
+
+        private Path file;
+        private byte[] data;
+
+        @Before
+        public void createData() throws IOException {
+
+                file = Files.createTempFile("gzip", ".edf.gz");
+                // compressible, but not too well
+                Random random = new Random(5);
+                data = new byte[3 << 20];
+                for (int i = 0; i < data.length; i++)
+                        data[i] = (byte) (random.nextInt(16) + (i >> 12));
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void concatenatedMembersShouldBeRead() throws IOException {
+
+                try (OutputStream out = Files.newOutputStream(file)) {
+                        for (int offset = 0; offset < data.length; offset += 100000)
+                                out.write(gzip(data, offset, Math.min(100000, data.length - offset)));
+                }
+
+                assertArrayEquals(data, readAll(4));
+                assertArrayEquals(data, readAll(1));
+        }
+
+        @Test
+        public void singleMemberShouldBeRead() throws IOException {
+
+                Files.write(file, gzip(data, 0, data.length));
+
+                assertArrayEquals(data, readAll(4));
+        }
+
+        @Test
+        public void bytesAfterTheLastMemberShouldBeIgnored() throws IOException {
+
+                try (OutputStream out = Files.newOutputStream(file)) {
+                        out.write(gzip(data, 0, 1000));
+                        out.write(gzip(data, 1000, 1000));
+                        out.write(new byte[512]);
+                }
+
+                byte[] expected = new byte[2000];
+                System.arraycopy(data, 0, expected, 0, 2000);
+                assertArrayEquals(expected, readAll(2));
+        }
+
+        private byte[] readAll(int threads) throws IOException {
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (InputStream in = new EDFGzipInputStream(file, threads)) {
+                        byte[] buffer = new byte[7000];
+                        int n;
+                        while ((n = in.read(buffer)) >= 0)
+                                out.write(buffer, 0, n);
+                }
+                return out.toByteArray();
+        }
+
+        private static byte[] gzip(byte[] data, int offset, int length) throws IOException {
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                        out.write(data, offset, length);
+                }
+                return bytes.toByteArray();
+        }
+}
@@ -0,0 +1,91 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EDFHeaderEditorTest {
+
+        private Path file;
+
+        @Before
+        public void copy() throws Exception {
+
+                file = Files.createTempFile("edited", ".edf");
+                Files.copy(Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI()), file,
+                           StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void editedFieldsShouldBeParsed() throws Exception {
+
+                EDFParserResult before = parse();
+                try (EDFHeaderEditor editor = new EDFHeaderEditor(file)) {
+                        editor.setSubjectID("X X X X");
+                        editor.setStartDate("01.02.03");
+                        editor.setChannelLabel(1, "Cz");
+                }
+
+                EDFParserResult after = parse();
+                assertEquals("X X X X", after.getHeader().getSubjectID().trim());
+                assertEquals("01.02.03", after.getHeader().getStartDate());
+                assertEquals("Cz", after.getHeader().getChannelLabels()[1].trim());
+                assertEquals(before.getHeader().getChannelLabels()[0], after.getHeader().getChannelLabels()[0]);
+                assertEquals(before.getHeader().getStartTime(), after.getHeader().getStartTime());
+                assertArrayEquals(before.getSignal().getDigitalValues()[1], after.getSignal().getDigitalValues()[1]);
+        }
+
+        @Test
+        public void tooLongValueShouldNotBeWritten() throws Exception {
+
+                byte[] original = Files.readAllBytes(file);
+                try (EDFHeaderEditor editor = new EDFHeaderEditor(file)) {
+                        editor.setChannelLabel(0, "a label longer than 16");
+                        fail();
+                } catch (IllegalArgumentException e) {
+                        // expected
+                }
+                assertArrayEquals(original, Files.readAllBytes(file));
+        }
+
+        private EDFParserResult parse() throws IOException {
+
+                try (InputStream is = Files.newInputStream(file)) {
+                        return EDFParser.parseEDF(is);
+                }
+        }
+}
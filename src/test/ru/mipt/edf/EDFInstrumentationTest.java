@@ -0,0 +1,158 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFInstrumentationTest {
+
+        private static final String EDF_INPUT_FILE = "test_generator.edf";
+
+        private static EDFParserResult parse() throws Exception {
+
+                try (InputStream is = EDFInstrumentationTest.class.getClassLoader().getResourceAsStream(EDF_INPUT_FILE)) {
+                        return EDFParser.parseEDF(is);
+                }
+        }
+
+        @Test
+        public void parserShouldReportEveryPhase() throws Exception {
+
+                EDFGenerator generator = new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5)
+                                                           .annotationsPerRecord(2).numberOfRecords(10);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                generator.write(out);
+                List<EDFListener.Phase> phases = new ArrayList<>();
+                EDFMetrics metrics = new EDFMetrics();
+                EDFListener listener = new EDFListener() {
+                        @Override
+                        public void onPhase(Phase phase, long nanos, long bytes, int records) {
+
+                                phases.add(phase);
+                        }
+                };
+                EDFInstrumentation.addListener(listener);
+                EDFInstrumentation.addListener(metrics);
+                EDFParserResult result;
+                try {
+                        result = EDFParser.parseEDF(new ByteArrayInputStream(out.toByteArray()));
+                } finally {
+                        EDFInstrumentation.removeListener(listener);
+                        EDFInstrumentation.removeListener(metrics);
+                }
+
+                EDFHeader header = generator.buildHeader();
+                assertEquals(EnumSet.of(EDFListener.Phase.HEADER, EDFListener.Phase.READ, EDFListener.Phase.DECODE,
+                                        EDFListener.Phase.CONVERT, EDFListener.Phase.ANNOTATIONS),
+                             EnumSet.copyOf(phases));
+                // phases are reported in the order of parsing
+                assertEquals(EDFListener.Phase.HEADER, phases.get(0));
+                assertEquals(phases.size() - 1, phases.indexOf(EDFListener.Phase.ANNOTATIONS));
+                assertTrue(phases.indexOf(EDFListener.Phase.DECODE) < phases.indexOf(EDFListener.Phase.CONVERT));
+
+                int samplesPerRecord = 0;
+                for (int nos : header.getNumberOfSamples())
+                        samplesPerRecord += nos;
+                assertEquals(header.getBytesInHeader(), metrics.getBytes(EDFListener.Phase.HEADER));
+                assertEquals(2L * header.getNumberOfRecords() * samplesPerRecord,
+                             metrics.getBytes(EDFListener.Phase.READ));
+                assertEquals(header.getNumberOfRecords(), metrics.getRecords(EDFListener.Phase.DECODE));
+                assertEquals(1, metrics.getCount(EDFListener.Phase.CONVERT));
+                assertEquals(result.getAnnotations().size(), metrics.getAnnotations());
+        }
+
+        @Test
+        public void parserShouldReportTheAllocatedSamples() throws Exception {
+
+                EDFMetrics metrics = new EDFMetrics();
+                EDFInstrumentation.addListener(metrics);
+                EDFParserResult result;
+                try {
+                        result = parse();
+                } finally {
+                        EDFInstrumentation.removeListener(metrics);
+                }
+
+                EDFHeader header = result.getHeader();
+                int samplesPerRecord = 0;
+                for (int nos : header.getNumberOfSamples())
+                        samplesPerRecord += nos;
+                // a short and a double per sample and the buffer of a data record
+                assertEquals(1, metrics.getAllocations());
+                assertEquals((long) header.getNumberOfRecords() * samplesPerRecord * 10 + samplesPerRecord * 2,
+                             metrics.getAllocatedBytes());
+        }
+
+        @Test
+        public void removedListenerShouldNotBeCalled() throws Exception {
+
+                EDFMetrics removed = new EDFMetrics();
+                EDFMetrics kept = new EDFMetrics();
+                EDFInstrumentation.addListener(removed);
+                EDFInstrumentation.addListener(kept);
+                EDFInstrumentation.removeListener(removed);
+                try {
+                        parse();
+                } finally {
+                        EDFInstrumentation.removeListener(kept);
+                }
+
+                assertEquals(0, removed.getCount(EDFListener.Phase.HEADER));
+                assertEquals(1, kept.getCount(EDFListener.Phase.HEADER));
+                assertEquals(null, EDFInstrumentation.listener());
+        }
+
+        @Test
+        public void listenerShouldNotChangeTheParsedValues() throws Exception {
+
+                EDFParserResult expected = parse();
+                EDFMetrics metrics = new EDFMetrics();
+                EDFInstrumentation.addListener(metrics);
+                EDFParserResult result;
+                try {
+                        result = parse();
+                } finally {
+                        EDFInstrumentation.removeListener(metrics);
+                }
+
+                for (int i = 0; i < expected.getHeader().getNumberOfChannels(); i++) {
+                        assertArrayEquals(expected.getSignal().getDigitalValues()[i],
+                                          result.getSignal().getDigitalValues()[i]);
+                        assertArrayEquals(expected.getSignal().getValuesInUnits()[i],
+                                          result.getSignal().getValuesInUnits()[i], 0);
+                }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void nullListenerShouldBeRejected() {
+
+                EDFInstrumentation.addListener(null);
+        }
+}
@@ -0,0 +1,87 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFMetricsTest {
+
+        @Test
+        public void phasesShouldBeAggregated() {
+
+                EDFMetrics metrics = new EDFMetrics();
+                metrics.onPhase(EDFListener.Phase.READ, 1000, 2000, 3);
+                metrics.onPhase(EDFListener.Phase.READ, 3000, 6000, 5);
+                metrics.onPhase(EDFListener.Phase.WRITE, 10, 0, 0);
+
+                assertEquals(2, metrics.getCount(EDFListener.Phase.READ));
+                assertEquals(4000, metrics.getNanos(EDFListener.Phase.READ));
+                assertEquals(8000, metrics.getBytes(EDFListener.Phase.READ));
+                assertEquals(8, metrics.getRecords(EDFListener.Phase.READ));
+                // 8000 bytes in 4 microseconds
+                assertEquals(2000, metrics.getThroughput(EDFListener.Phase.READ), 1e-9);
+                assertEquals(1, metrics.getCount(EDFListener.Phase.WRITE));
+                assertEquals(0, metrics.getCount(EDFListener.Phase.DECODE));
+                assertEquals(0, metrics.getThroughput(EDFListener.Phase.DECODE), 0);
+        }
+
+        @Test
+        public void durationsShouldBeCountedInPowerOfTwoBuckets() {
+
+                EDFMetrics metrics = new EDFMetrics();
+                for (int i = 0; i < 99; i++)
+                        metrics.onPhase(EDFListener.Phase.DECODE, 100, 0, 1);
+                metrics.onPhase(EDFListener.Phase.DECODE, 5000, 0, 1);
+
+                long[] histogram = metrics.getHistogram(EDFListener.Phase.DECODE);
+                // 64 <= 100 < 128 and 4096 <= 5000 < 8192
+                assertEquals(99, histogram[6]);
+                assertEquals(1, histogram[12]);
+                assertEquals(128, metrics.getPercentile(EDFListener.Phase.DECODE, 50));
+                assertEquals(128, metrics.getPercentile(EDFListener.Phase.DECODE, 99));
+                assertEquals(8192, metrics.getPercentile(EDFListener.Phase.DECODE, 100));
+                assertEquals(0, metrics.getPercentile(EDFListener.Phase.READ, 99));
+        }
+
+        @Test
+        public void resetShouldClearAllCounters() {
+
+                EDFMetrics metrics = new EDFMetrics();
+                metrics.onPhase(EDFListener.Phase.HEADER, 100, 256, 0);
+                metrics.onAnnotations(7);
+                metrics.onAllocation(1024);
+                metrics.onAllocation(512);
+                assertEquals(7, metrics.getAnnotations());
+                assertEquals(2, metrics.getAllocations());
+                assertEquals(1536, metrics.getAllocatedBytes());
+                assertTrue(metrics.toString().contains("HEADER"));
+
+                metrics.reset();
+
+                assertEquals(0, metrics.getCount(EDFListener.Phase.HEADER));
+                assertEquals(0, metrics.getHistogram(EDFListener.Phase.HEADER)[6]);
+                assertEquals(0, metrics.getAnnotations());
+                assertEquals(0, metrics.getAllocatedBytes());
+                assertEquals("annotations=0 allocations=0 allocatedBytes=0", metrics.toString());
+        }
+}
@@ -0,0 +1,128 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Paths;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFMontageTest {
+
+        private EDFReader reader;
+        private int fp2, fp1, p3, c3;
+
+        @Before
+        public void open() throws Exception {
+
+                reader = new EDFReader(Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI()));
+                fp2 = reader.getChannel("FP2");
+                fp1 = reader.getChannel("FP1");
+                p3 = reader.getChannel("P3");
+                c3 = reader.getChannel("C3");
+        }
+
+        @After
+        public void close() throws IOException {
+
+                reader.close();
+        }
+
+        @Test
+        public void bipolarDerivationShouldBeTheDifference() throws IOException {
+
+                EDFMontage montage = new EDFMontage(reader).bipolar("P3-C3", p3, c3).bipolar("FP2-FP1", fp2, fp1);
+                double[] values = montage.readPhysicalSamples(0, 1000L, 2000);
+                double[] p3Values = reader.readPhysicalSamples(p3, 1000L, 2000);
+                double[] c3Values = reader.readPhysicalSamples(c3, 1000L, 2000);
+
+                assertEquals("P3-C3", montage.getHeader().getChannelLabels()[0]);
+                for (int i = 0; i < values.length; i++)
+                        assertEquals(p3Values[i] - c3Values[i], values[i], 1e-9);
+                double[][] both = montage.readPhysicalSamples(new int[] { 1, 0 }, 1000L, 2000);
+                assertArrayEquals(values, both[1], 0);
+                assertArrayEquals(montage.readPhysicalSamples(1, 1000L, 2000), both[0], 0);
+        }
+
+        @Test
+        public void averageReferenceShouldSubtractTheMean() throws IOException {
+
+                int[] channels = { fp2, fp1, p3, c3 };
+                EDFMontage montage = new EDFMontage(reader).averageReference(channels);
+                double[][] sources = new double[channels.length][];
+                for (int i = 0; i < channels.length; i++)
+                        sources[i] = reader.readPhysicalSamples(channels[i], 0L, 500);
+
+                assertEquals(4, montage.getHeader().getNumberOfChannels());
+                assertEquals("P3-AVG", montage.getHeader().getChannelLabels()[2]);
+                for (int i = 0; i < channels.length; i++) {
+                        double[] values = montage.readPhysicalSamples(i, 0L, 500);
+                        for (int k = 0; k < 500; k++) {
+                                double mean = (sources[0][k] + sources[1][k] + sources[2][k] + sources[3][k]) / 4;
+                                assertEquals(sources[i][k] - mean, values[k], 1e-9);
+                        }
+                }
+                // the channel is one of its references
+                assertArrayEquals(montage.readPhysicalSamples(0, 0L, 500),
+                                  new EDFMontage(reader).averageReference("FP2-AVG", fp2, fp2, fp1, p3, c3)
+                                                        .readPhysicalSamples(0, 0L, 500), 1e-9);
+        }
+
+        @Test
+        public void digitalValuesShouldBeQuantizedPhysicalValues() throws IOException {
+
+                EDFMontage montage = new EDFMontage(reader).bipolar("P3-C3", p3, c3);
+                EDFHeader header = montage.getHeader();
+                double range = Math.max(Math.abs(reader.getHeader().getMinInUnits()[p3]),
+                                        Math.abs(reader.getHeader().getMaxInUnits()[p3]))
+                               + Math.max(Math.abs(reader.getHeader().getMinInUnits()[c3]),
+                                          Math.abs(reader.getHeader().getMaxInUnits()[c3]));
+                assertEquals(range, header.getMaxInUnits()[0], 1e-9);
+                assertEquals(-range, header.getMinInUnits()[0], 1e-9);
+                assertEquals(32767, (int) header.getDigitalMax()[0]);
+                assertEquals(-32767, (int) header.getDigitalMin()[0]);
+
+                double unitsInDigit = montage.getUnitsInDigit(0);
+                assertEquals(range / 32767, unitsInDigit, 1e-12);
+                double[] physical = montage.readPhysicalSamples(0, 0L, 5000);
+                short[] digital = montage.readDigitalSamples(0, 0L, 5000);
+                for (int i = 0; i < physical.length; i++) {
+                        assertTrue(Math.abs(digital[i] * unitsInDigit - physical[i]) <= unitsInDigit / 2 + 1e-9);
+                        assertEquals(Math.round(physical[i] / unitsInDigit), digital[i]);
+                }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void channelsWithDifferentRatesShouldBeRejected() {
+
+                new EDFMontage(reader).bipolar("F4-F3", reader.getChannel("F4"), reader.getChannel("F3"));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void derivationWithoutWeightsShouldBeRejected() {
+
+                new EDFMontage(reader).add("empty", new int[0], new double[0]);
+        }
+}
@@ -0,0 +1,145 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+
+public class EDFQualityAnalyzerTest {
+
+        private final EDFHeader header = new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5)
+                                                           .buildHeader();
+
+        /**
+         * @return samples alternating between the amplitude and its negative
+         */
+        private static short[] alternating(int length, int amplitude) {
+
+                short[] values = new short[length];
+                for (int i = 0; i < length; i++)
+                        values[i] = (short) (i % 2 == 0 ? amplitude : -amplitude);
+                return values;
+        }
+
+        /**
+         * Analyze the samples in data records of the given number of samples.
+         */
+        private static EDFQualityAnalyzer.ChannelQuality analyze(EDFQualityAnalyzer analyzer, short[] values,
+                                                                 int samplesPerRecord) {
+
+                for (int first = 0; first < values.length; first += samplesPerRecord)
+                        analyzer.process(new short[][] { Arrays.copyOfRange(values, first,
+                                                                            Math.min(values.length,
+                                                                                     first + samplesPerRecord)) });
+                return analyzer.getReport().get(0);
+        }
+
+        @Test
+        public void saturatedSamplesShouldBeCounted() {
+
+                short[] values = alternating(300, 1000);
+                values[10] = Short.MAX_VALUE;
+                values[11] = Short.MIN_VALUE;
+                values[250] = Short.MAX_VALUE;
+
+                EDFQualityAnalyzer.ChannelQuality quality = analyze(new EDFQualityAnalyzer(header), values, 100);
+
+                assertEquals(300, quality.getNumberOfSamples());
+                assertEquals(3, quality.getNumberOfSaturatedSamples());
+                assertEquals(3, quality.getNumberOfWindows());
+                assertEquals(EDFQualityAnalyzer.SATURATED, quality.getFlags(0));
+                assertEquals(0, quality.getFlags(1));
+                assertEquals(EDFQualityAnalyzer.SATURATED, quality.getFlags(2));
+        }
+
+        @Test
+        public void flatLinesShouldBeMeasured() {
+
+                short[] values = alternating(500, 1000);
+                // a flat line of 0.8 s and a run of 0.3 s, shorter than a flat line
+                Arrays.fill(values, 120, 200, (short) 7);
+                Arrays.fill(values, 300, 330, (short) 7);
+
+                EDFQualityAnalyzer.ChannelQuality quality = analyze(new EDFQualityAnalyzer(header).flatLine(0.5),
+                                                                    values, 100);
+
+                assertEquals(1, quality.getNumberOfFlatLines());
+                assertEquals(80, quality.getNumberOfFlatSamples());
+                assertEquals(0.8, quality.getLongestFlatLine(), 1e-9);
+                assertEquals(0, quality.getFlags(3) & EDFQualityAnalyzer.FLAT);
+        }
+
+        @Test
+        public void flatLineEndingWithTheWindowShouldNotFlagTheNextWindow() {
+
+                short[] values = alternating(400, 1000);
+                Arrays.fill(values, 100, 200, (short) 100);
+
+                EDFQualityAnalyzer.ChannelQuality quality = analyze(new EDFQualityAnalyzer(header).window(1)
+                                                                                                  .flatLine(0.5),
+                                                                    values, 100);
+
+                assertEquals(4, quality.getNumberOfWindows());
+                assertEquals(0, quality.getFlags(0));
+                assertEquals(EDFQualityAnalyzer.FLAT, quality.getFlags(1) & EDFQualityAnalyzer.FLAT);
+                assertEquals(0, quality.getFlags(2));
+                assertEquals(0, quality.getFlags(3));
+        }
+
+        @Test
+        public void flatLineAcrossWindowsShouldFlagEachWindow() {
+
+                short[] values = alternating(400, 1000);
+                Arrays.fill(values, 170, 230, (short) 100);
+
+                // data records of 0.3 s which do not end with the windows
+                EDFQualityAnalyzer.ChannelQuality quality = analyze(new EDFQualityAnalyzer(header).window(1)
+                                                                                                  .flatLine(0.5),
+                                                                    values, 30);
+
+                assertEquals(1, quality.getNumberOfFlatLines());
+                assertEquals(0, quality.getFlags(0));
+                assertEquals(EDFQualityAnalyzer.FLAT, quality.getFlags(1));
+                assertEquals(EDFQualityAnalyzer.FLAT, quality.getFlags(2));
+                assertEquals(0, quality.getFlags(3));
+        }
+
+        @Test
+        public void windowsFarBelowTheMedianShouldBeDropouts() {
+
+                short[] values = alternating(500, 1000);
+                // 1 % and 10 % of the median deviation
+                System.arraycopy(alternating(100, 10), 0, values, 100, 100);
+                System.arraycopy(alternating(100, 100), 0, values, 300, 100);
+
+                EDFQualityAnalyzer.ChannelQuality quality = analyze(new EDFQualityAnalyzer(header), values, 100);
+
+                double unitsInDigit = (header.maxInUnits[0] - header.minInUnits[0])
+                                      / (header.digitalMax[0] - header.digitalMin[0]);
+                assertEquals(1000 * unitsInDigit, quality.getDeviation(0), 1e-3);
+                assertEquals(10 * unitsInDigit, quality.getDeviation(1), 1e-3);
+                assertEquals(0, quality.getFlags(0));
+                assertEquals(EDFQualityAnalyzer.DROPOUT, quality.getFlags(1));
+                assertEquals(0, quality.getFlags(3));
+                assertEquals(1, quality.getNumberOfFlaggedWindows());
+        }
+}
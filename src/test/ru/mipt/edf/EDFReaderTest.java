@@ -0,0 +1,199 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.*;
+import java.net.URL;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EDFReaderTest {
+
+        private static final String EDF_INPUT_FILE = "test_generator.edf";
+
+        private static EDFParserResult expected;
+        private static EDFReader reader;
+
+        @BeforeClass
+        public static void open() throws Exception {
+
+                URL resource = EDFReaderTest.class.getClassLoader().getResource(EDF_INPUT_FILE);
+                assert resource != null;
+                Path edfInputFile = Paths.get(resource.toURI());
+                try (FileInputStream is = new FileInputStream(edfInputFile.toFile())) {
+                        expected = EDFParser.parseEDF(is);
+                }
+                reader = new EDFReader(edfInputFile);
+        }
+
+        @AfterClass
+        public static void close() throws IOException {
+
+                reader.close();
+        }
+
+        @Test
+        public void readRecordsShouldReturnTheParsedSignal() throws Exception {
+
+                short[][] values = reader.readDigitalRecords(10, 5);
+                for (int i = 0; i < values.length; i++) {
+                        int samples = expected.getHeader().getNumberOfSamples()[i];
+                        short[] digitalValues = expected.getSignal().getDigitalValues()[i];
+                        assertArrayEquals(Arrays.copyOfRange(digitalValues, 10 * samples, 15 * samples), values[i]);
+                }
+        }
+
+        @Test
+        public void readWindowShouldReturnTheParsedSignal() throws Exception {
+
+                int channel = reader.getChannel("P4");
+                double samplingRate = reader.getHeader().getSamplingRate(channel);
+                double[] values = reader.readPhysicalSamples(channel, 12.5, 3.25);
+                double[] valuesInUnits = expected.getSignal().getValuesInUnits()[channel];
+                int first = (int) Math.floor(12.5 * samplingRate);
+                assertEquals((int) Math.ceil(15.75 * samplingRate) - first, values.length);
+                assertArrayEquals(Arrays.copyOfRange(valuesInUnits, first, first + values.length), values, 0);
+        }
+
+        @Test
+        public void readsLargerThanTheBufferShouldReturnTheParsedSignal() throws Exception {
+
+                short[][] values = reader.readDigitalRecords(0, reader.getNumberOfRecords());
+                for (int i = 0; i < values.length; i++)
+                        assertArrayEquals(expected.getSignal().getDigitalValues()[i], values[i]);
+
+                int channel = reader.getChannel("C3");
+                int first = 1234;
+                int length = (int) reader.getNumberOfSamples(channel) - first - 567;
+                short[] digitalValues = expected.getSignal().getDigitalValues()[channel];
+                assertArrayEquals(Arrays.copyOfRange(digitalValues, first, first + length),
+                                  reader.readDigitalSamples(channel, first, length));
+        }
+
+        @Test
+        public void readerShouldSurviveAnInterruptedRead() throws Exception {
+
+                Thread.currentThread().interrupt();
+                try {
+                        reader.readDigitalSamples(0, 0, 100);
+                        fail();
+                } catch (ClosedByInterruptException e) {
+                        // expected
+                } finally {
+                        Thread.interrupted();
+                }
+                assertArrayEquals(Arrays.copyOf(expected.getSignal().getDigitalValues()[0], 100),
+                                  reader.readDigitalSamples(0, 0, 100));
+        }
+
+        @Test
+        public void concurrentReadsShouldReturnTheParsedSignal() throws Exception {
+
+                ExecutorService executor = Executors.newFixedThreadPool(8);
+                try {
+                        List<Future<short[]>> futures = new ArrayList<>();
+                        for (int i = 0; i < 64; i++) {
+                                final int channel = i % reader.getHeader().getNumberOfChannels();
+                                final long first = i * 997L % (reader.getNumberOfSamples(channel) - 1000);
+                                futures.add(executor.submit(() -> reader.readDigitalSamples(channel, first, 1000)));
+                        }
+                        for (int i = 0; i < futures.size(); i++) {
+                                int channel = i % reader.getHeader().getNumberOfChannels();
+                                int first = (int) (i * 997L % (reader.getNumberOfSamples(channel) - 1000));
+                                short[] digitalValues = expected.getSignal().getDigitalValues()[channel];
+                                assertArrayEquals(Arrays.copyOfRange(digitalValues, first, first + 1000),
+                                                  futures.get(i).get());
+                        }
+                } finally {
+                        executor.shutdown();
+                }
+        }
+
+        @Test
+        public void readAnnotationsShouldIncludeTheLastAnnotation() throws Exception {
+
+                Path file = Files.createTempFile("annotations", ".edf");
+                try {
+                        new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5)
+                                          .annotationsPerRecord(2).numberOfRecords(600).write(file);
+                        List<EDFAnnotation> parsed;
+                        try (InputStream is = Files.newInputStream(file)) {
+                                parsed = EDFParser.parseEDF(is).getAnnotations();
+                        }
+                        List<EDFAnnotation> annotations;
+                        try (EDFReader edfReader = new EDFReader(file)) {
+                                annotations = edfReader.readAnnotations();
+                        }
+
+                        // a time-keeping annotation and two events per data record
+                        assertEquals(1800, annotations.size());
+                        // the parser drops the last annotation, which is not followed by another TAL
+                        assertEquals(annotations.size() - 1, parsed.size());
+                        for (int i = 0; i < parsed.size(); i++) {
+                                assertEquals(parsed.get(i).getOnSet(), annotations.get(i).getOnSet(), 0);
+                                assertEquals(parsed.get(i).getAnnotations(), annotations.get(i).getAnnotations());
+                        }
+                        EDFAnnotation last = annotations.get(annotations.size() - 1);
+                        assertEquals(599.5, last.getOnSet(), 1e-9);
+                        assertEquals(Arrays.asList("Event 1"), last.getAnnotations());
+                } finally {
+                        Files.deleteIfExists(file);
+                }
+        }
+
+        @Test
+        public void readAnnotationsLargerThanTheBufferShouldReturnAllAnnotations() throws Exception {
+
+                Path file = Files.createTempFile("annotations", ".edf");
+                try {
+                        new EDFGenerator().channel("Fz", 200, EDFGenerator.Shape.SINE, 10, 0.5)
+                                          .annotationsPerRecord(1).numberOfRecords(5000).write(file);
+                        List<EDFAnnotation> annotations;
+                        try (EDFReader edfReader = new EDFReader(file)) {
+                                assertTrue(edfReader.getHeader().getBytesPerRecord() * 5000L > 2 * (1 << 20));
+                                annotations = edfReader.readAnnotations();
+                        }
+
+                        assertEquals(10000, annotations.size());
+                        for (int i = 0; i < annotations.size(); i++) {
+                                assertEquals(i / 2, annotations.get(i).getOnSet(), 1e-9);
+                                assertEquals(i % 2 == 0, annotations.get(i).getAnnotations().isEmpty());
+                        }
+                } finally {
+                        Files.deleteIfExists(file);
+                }
+        }
+}
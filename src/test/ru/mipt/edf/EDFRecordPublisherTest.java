@@ -0,0 +1,208 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EDFRecordPublisherTest {
+
+        private EDFReader reader;
+
+        /**
+         * A subscriber which keeps the first data record of every item and the terminal signals.
+         */
+        private static class TestSubscriber implements Flow.Subscriber<EDFRecord> {
+
+                final List<Integer> firstRecords = new ArrayList<>();
+                final CountDownLatch terminated = new CountDownLatch(1);
+                Flow.Subscription subscription;
+                Throwable error;
+                int completions;
+                int errors;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+
+                        this.subscription = subscription;
+                }
+
+                @Override
+                public void onNext(EDFRecord item) {
+
+                        firstRecords.add(item.getFirstRecord());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+
+                        error = throwable;
+                        errors++;
+                        terminated.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+
+                        completions++;
+                        terminated.countDown();
+                }
+        }
+
+        @Before
+        public void open() throws Exception {
+
+                reader = new EDFReader(Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI()));
+        }
+
+        @After
+        public void close() throws IOException {
+
+                reader.close();
+        }
+
+        @Test
+        public void requestedItemsShouldBeDelivered() {
+
+                TestSubscriber subscriber = new TestSubscriber();
+                new EDFRecordPublisher(reader, Runnable::run).recordsPerItem(100).subscribe(subscriber);
+
+                subscriber.subscription.request(3);
+                assertEquals(3, subscriber.firstRecords.size());
+                assertEquals(0, subscriber.completions);
+
+                subscriber.subscription.request(2);
+                assertEquals(5, subscriber.firstRecords.size());
+
+                subscriber.subscription.request(Long.MAX_VALUE);
+                subscriber.subscription.request(Long.MAX_VALUE);
+                // 900 data records in items of 100
+                assertEquals(9, subscriber.firstRecords.size());
+                assertEquals(800, (int) subscriber.firstRecords.get(8));
+                assertEquals(1, subscriber.completions);
+                assertEquals(0, subscriber.errors);
+        }
+
+        @Test
+        public void cancelShouldStopTheDelivery() {
+
+                TestSubscriber subscriber = new TestSubscriber() {
+                        @Override
+                        public void onNext(EDFRecord item) {
+
+                                super.onNext(item);
+                                if (firstRecords.size() == 5)
+                                        subscription.cancel();
+                        }
+                };
+                new EDFRecordPublisher(reader, Runnable::run).subscribe(subscriber);
+
+                subscriber.subscription.request(Long.MAX_VALUE);
+                subscriber.subscription.request(10);
+
+                assertEquals(5, subscriber.firstRecords.size());
+                assertEquals(0, subscriber.completions);
+                assertEquals(0, subscriber.errors);
+        }
+
+        @Test
+        public void nonPositiveRequestShouldSignalAnError() {
+
+                TestSubscriber subscriber = new TestSubscriber();
+                new EDFRecordPublisher(reader, Runnable::run).subscribe(subscriber);
+
+                subscriber.subscription.request(2);
+                subscriber.subscription.request(0);
+                subscriber.subscription.request(5);
+
+                assertEquals(2, subscriber.firstRecords.size());
+                assertEquals(1, subscriber.errors);
+                assertTrue(subscriber.error instanceof IllegalArgumentException);
+                assertEquals(0, subscriber.completions);
+        }
+
+        @Test
+        public void readErrorShouldBeSignalledAfterTheDeliveredItems() throws IOException {
+
+                TestSubscriber subscriber = new TestSubscriber();
+                new EDFRecordPublisher(reader, Runnable::run).subscribe(subscriber);
+
+                subscriber.subscription.request(2);
+                reader.close();
+                subscriber.subscription.request(3);
+                subscriber.subscription.request(3);
+
+                assertEquals(2, subscriber.firstRecords.size());
+                assertEquals(1, subscriber.errors);
+                assertTrue(subscriber.error instanceof ClosedChannelException);
+        }
+
+        @Test
+        public void itemsShouldBeDeliveredInOrderOnTheExecutor() throws Exception {
+
+                ExecutorService executor = Executors.newFixedThreadPool(4);
+                try {
+                        int channel = reader.getChannel("C3");
+                        List<short[]> values = new ArrayList<>();
+                        TestSubscriber subscriber = new TestSubscriber() {
+                                @Override
+                                public void onNext(EDFRecord item) {
+
+                                        super.onNext(item);
+                                        assertNull(item.getDigitalValues()[0]);
+                                        values.add(item.getDigitalValues()[channel].clone());
+                                        subscription.request(1);
+                                }
+                        };
+                        new EDFRecordPublisher(reader, executor).recordsPerItem(7).channels(channel).reuseBuffers(true)
+                                                                .subscribe(subscriber);
+                        subscriber.subscription.request(1);
+
+                        assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+                        assertEquals(1, subscriber.completions);
+                        assertEquals(0, subscriber.errors);
+                        // 900 data records in items of 7
+                        assertEquals(129, values.size());
+                        for (int i = 0; i < values.size(); i++) {
+                                assertEquals(7 * i, (int) subscriber.firstRecords.get(i));
+                                int records = Math.min(7, 900 - 7 * i);
+                                assertArrayEquals(reader.readDigitalRecords(7 * i, records)[channel], values.get(i));
+                        }
+                } finally {
+                        executor.shutdown();
+                }
+        }
+}
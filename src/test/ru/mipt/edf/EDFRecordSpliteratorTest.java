@@ -0,0 +1,137 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EDFRecordSpliteratorTest {
+
+        private static final String EDF_INPUT_FILE = "test_generator.edf";
+
+        private static EDFReader reader;
+
+        @BeforeClass
+        public static void open() throws Exception {
+
+                URL resource = EDFRecordSpliteratorTest.class.getClassLoader().getResource(EDF_INPUT_FILE);
+                assert resource != null;
+                Path edfInputFile = Paths.get(resource.toURI());
+                reader = new EDFReader(edfInputFile);
+        }
+
+        @AfterClass
+        public static void close() throws IOException {
+
+                reader.close();
+        }
+
+        @Test
+        public void estimateSizeShouldCountTheLastPartialItem() {
+
+                assertEquals(90, new EDFRecordSpliterator(reader, 10, 0, 900).estimateSize());
+                assertEquals(91, new EDFRecordSpliterator(reader, 10, 0, 901).estimateSize());
+                assertEquals(1, new EDFRecordSpliterator(reader, 10, 895, 900).estimateSize());
+                assertEquals(0, new EDFRecordSpliterator(reader, 10, 900, 900).estimateSize());
+        }
+
+        @Test
+        public void estimateSizeShouldNotOverflow() {
+
+                Spliterator<EDFRecord> spliterator = new EDFRecordSpliterator(reader, 1000, 0, Integer.MAX_VALUE);
+                assertEquals(2147484, spliterator.estimateSize());
+                Spliterator<EDFRecord> prefix = spliterator.trySplit();
+                assertEquals(1073742, prefix.estimateSize());
+                assertEquals(1073742, spliterator.estimateSize());
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void itemsLargerThanABufferShouldBeRejected() {
+
+                new EDFRecordSpliterator(reader, Integer.MAX_VALUE, 0, 900);
+        }
+
+        @Test
+        public void splitShouldHalveTheItems() {
+
+                Spliterator<EDFRecord> suffix = new EDFRecordSpliterator(reader, 10, 0, 905);
+                Spliterator<EDFRecord> prefix = suffix.trySplit();
+                assertEquals(45, prefix.estimateSize());
+                assertEquals(46, suffix.estimateSize());
+                assertEquals(0, first(prefix).getFirstRecord());
+                assertEquals(450, first(suffix).getFirstRecord());
+        }
+
+        @Test
+        public void splitShouldStopAtOneItem() {
+
+                Spliterator<EDFRecord> spliterator = new EDFRecordSpliterator(reader, 10, 0, 15);
+                assertEquals(1, spliterator.trySplit().estimateSize());
+                assertNull(spliterator.trySplit());
+                assertEquals(1, spliterator.estimateSize());
+        }
+
+        @Test
+        public void tryAdvanceAfterSplitShouldReadEveryRecordOnce() throws Exception {
+
+                Spliterator<EDFRecord> suffix = new EDFRecordSpliterator(reader, 7, 0, 900);
+                Spliterator<EDFRecord> prefix = suffix.trySplit();
+                assertTrue(prefix.tryAdvance(record -> { }));
+                Spliterator<EDFRecord> middle = prefix.trySplit();
+
+                List<EDFRecord> records = new ArrayList<>();
+                middle.forEachRemaining(records::add);
+                prefix.forEachRemaining(records::add);
+                suffix.forEachRemaining(records::add);
+                assertFalse(prefix.tryAdvance(record -> { }));
+
+                int next = 7;
+                for (EDFRecord record : records) {
+                        assertEquals(next, record.getFirstRecord());
+                        assertEquals(Math.min(7, 900 - next), record.getNumberOfRecords());
+                        short[][] expected = reader.readDigitalRecords(next, record.getNumberOfRecords());
+                        for (int i = 0; i < expected.length; i++)
+                                assertArrayEquals(expected[i], record.getDigitalValues()[i]);
+                        next += record.getNumberOfRecords();
+                }
+                assertEquals(900, next);
+        }
+
+        private static EDFRecord first(Spliterator<EDFRecord> spliterator) {
+
+                EDFRecord[] first = new EDFRecord[1];
+                assertTrue(spliterator.tryAdvance(record -> first[0] = record));
+                return first[0];
+        }
+}
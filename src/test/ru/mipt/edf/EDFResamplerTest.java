@@ -0,0 +1,151 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFResamplerTest {
+
+        private static double[] sine(double frequency, double rate, int length) {
+
+                double[] values = new double[length];
+                for (int i = 0; i < length; i++)
+                        values[i] = Math.sin(2 * Math.PI * frequency * i / rate);
+                return values;
+        }
+
+        private static double[] resample(EDFResampler.Channel channel, double[] in, int blockSize) {
+
+                double[] out = new double[channel.maxOutput(in.length) + channel.maxFlushOutput()];
+                int n = 0;
+                for (int first = 0; first < in.length; first += blockSize) {
+                        int length = Math.min(blockSize, in.length - first);
+                        n += channel.process(in, first, length, out, n);
+                }
+                n += channel.flush(out, n);
+                return Arrays.copyOf(out, n);
+        }
+
+        /**
+         * @return the amplitude of a sine from the root mean square of the middle half of the samples
+         */
+        private static double amplitude(double[] values) {
+
+                double sum = 0;
+                int first = values.length / 4;
+                int last = 3 * values.length / 4;
+                for (int i = first; i < last; i++)
+                        sum += values[i] * values[i];
+                return Math.sqrt(2 * sum / (last - first));
+        }
+
+        private static double gain(double frequency, double inputRate, double outputRate) {
+
+                double[] in = sine(frequency, inputRate, (int) (20 * inputRate));
+                return 20 * Math.log10(amplitude(resample(new EDFResampler.Channel(inputRate, outputRate), in, 256)));
+        }
+
+        @Test
+        public void constantShouldKeepItsValue() {
+
+                double[] in = new double[2560];
+                Arrays.fill(in, 3.5);
+                double[] out = resample(new EDFResampler.Channel(256, 100), in, 256);
+
+                assertEquals(1000, out.length);
+                for (int i = 50; i < out.length - 50; i++)
+                        assertEquals(3.5, out[i], 1e-3);
+        }
+
+        @Test
+        public void passBandShouldBeKept() {
+
+                assertEquals(0, gain(10, 256, 100), 0.05);
+                assertEquals(0, gain(40, 256, 100), 0.5);
+                assertEquals(0, gain(10, 100, 256), 0.05);
+                assertEquals(0, gain(10, 200, 100), 0.05);
+        }
+
+        @Test
+        public void stopBandShouldNotAlias() {
+
+                // the mains frequency would alias to 40 Hz
+                assertTrue(gain(60, 256, 100) < -40);
+                assertTrue(gain(80, 256, 100) < -40);
+                assertTrue(gain(60, 200, 100) < -40);
+        }
+
+        @Test
+        public void blocksShouldNotChangeTheOutput() {
+
+                double[] in = new double[5000];
+                Random random = new Random(5);
+                for (int i = 0; i < in.length; i++)
+                        in[i] = random.nextGaussian();
+
+                double[] whole = resample(new EDFResampler.Channel(256, 100), in, in.length);
+                assertArrayEquals(whole, resample(new EDFResampler.Channel(256, 100), in, 256), 0);
+                assertArrayEquals(whole, resample(new EDFResampler.Channel(256, 100), in, 7), 0);
+                assertArrayEquals(whole, resample(new EDFResampler.Channel(256, 100), in, 1), 0);
+        }
+
+        @Test
+        public void flushShouldCompleteTheOutput() {
+
+                // ceil(inputs * L / M) samples
+                assertEquals(391, resample(new EDFResampler.Channel(256, 100), new double[1000], 100).length);
+                assertEquals(2560, resample(new EDFResampler.Channel(100, 256), new double[1000], 100).length);
+                assertEquals(4, resample(new EDFResampler.Channel(256, 100), new double[10], 3).length);
+                assertEquals(0, resample(new EDFResampler.Channel(256, 100), new double[0], 1).length);
+        }
+
+        @Test
+        public void resamplerShouldResampleEveryChannel() {
+
+                EDFHeader header = new EDFGenerator().channel("Fz", 256, EDFGenerator.Shape.SINE, 10, 0.5)
+                                                     .channel("Cz", 200, EDFGenerator.Shape.SINE, 10, 0.5)
+                                                     .annotationsPerRecord(1).buildHeader();
+                EDFResampler resampler = new EDFResampler(header, 100);
+                int[] lengths = new int[3];
+                for (int r = 0; r < 10; r++) {
+                        double[][] values = resampler.resample(new short[][] { new short[256], new short[200], null });
+                        lengths[0] += values[0].length;
+                        lengths[1] += values[1].length;
+                        assertEquals(null, values[2]);
+                }
+                double[][] values = resampler.flush();
+                lengths[0] += values[0].length;
+                lengths[1] += values[1].length;
+
+                assertArrayEquals(new int[] { 1000, 1000, 0 }, lengths);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void nonPositiveRateShouldBeRejected() {
+
+                new EDFResampler.Channel(0, 100);
+        }
+}
@@ -0,0 +1,112 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EDFSessionTest {
+
+        private static final long START = 946724400000L;
+
+        private Path root;
+
+        @Before
+        public void createDirectory() throws IOException {
+
+                root = Files.createTempDirectory("session");
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                try (Stream<Path> files = Files.walk(root)) {
+                        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+                }
+        }
+
+        @Test
+        public void contiguousSplitShouldBeOpened() throws Exception {
+
+                // 12001 records of 0.3 s end at 3600.3 s, but the next file can only say 3600 s
+                Path first = write("first.edf", 0, 12001);
+                Path second = write("second.edf", 3600, 100);
+
+                try (EDFSession session = new EDFSession(Arrays.asList(second, first))) {
+                        assertEquals(Arrays.asList(first, second), session.getFiles());
+                        assertEquals(12101, session.getNumberOfRecords());
+                        assertEquals(3630, session.getDuration(), 1e-9);
+                        assertEquals(0, session.getFileIndex(3599.9));
+                        assertEquals(1, session.getFileIndex(3600.1));
+                        try (EDFReader reader = new EDFReader(second)) {
+                                assertArrayEquals(reader.readDigitalSamples(0, 0, 30),
+                                                  session.readDigitalSamples(0, 12001 * 3, 30));
+                        }
+                }
+        }
+
+        @Test
+        public void gapShouldBeNaN() throws Exception {
+
+                Path first = write("first.edf", 0, 10);
+                Path second = write("second.edf", 5, 10);
+
+                try (EDFSession session = new EDFSession(Arrays.asList(first, second))) {
+                        double[] values = session.readPhysicalSamples(0, 2.0, 4.0);
+                        assertEquals(40, values.length);
+                        assertTrue(Double.isNaN(values[15]));
+                        assertTrue(!Double.isNaN(values[5]) && !Double.isNaN(values[35]));
+                }
+        }
+
+        @Test
+        public void overlapShouldBeRejected() throws Exception {
+
+                Path first = write("first.edf", 0, 100);
+                Path second = write("second.edf", 28, 100);
+
+                try (EDFSession session = new EDFSession(Arrays.asList(first, second))) {
+                        fail("The overlapping files were opened as " + session.getFiles() + ".");
+                } catch (IllegalArgumentException e) {
+                        // expected
+                }
+        }
+
+        private Path write(String name, int startSecond, int numberOfRecords) throws IOException {
+
+                Path path = root.resolve(name);
+                new EDFGenerator().channel("Fz", 10, EDFGenerator.Shape.SINE, 1, 0.5).durationOfRecord(0.3)
+                                  .numberOfRecords(numberOfRecords).startOfRecording(new Date(START + startSecond * 1000L))
+                                  .write(path);
+                return path;
+        }
+}
@@ -0,0 +1,142 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EDFSpectralFeaturesTest {
+
+        private Path file;
+
+        @Before
+        public void createRecording() throws IOException {
+
+                file = Files.createTempFile("spectral", ".edf");
+                new EDFGenerator().channel("Fz", 256, EDFGenerator.Shape.SINE, 10, 0.25)
+                                  .channel("Cz", 128, EDFGenerator.Shape.SINE, 2, 0.5)
+                                  .channel("Pz", 256, EDFGenerator.Shape.NOISE, 1, 0.1)
+                                  .noise(0).numberOfRecords(90).write(file);
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                Files.deleteIfExists(file);
+        }
+
+        @Test
+        public void bandPowerOfASineShouldBeItsVariance() throws IOException {
+
+                try (EDFReader reader = new EDFReader(file);
+                     EDFSpectralFeatures features = new EDFSpectralFeatures(reader.getHeader())) {
+                        List<EDFSpectralFeatures.Epoch> epochs = extract(reader, features);
+                        assertEquals(3, epochs.size());
+                        for (int channel = 0; channel < 2; channel++) {
+                                double amplitude = amplitude(reader, channel);
+                                int band = channel == 0 ? 2 : 0;
+                                for (EDFSpectralFeatures.Epoch epoch : epochs) {
+                                        // the power of a sine is half of its squared amplitude
+                                        assertEquals(amplitude * amplitude / 2, epoch.getFeature(channel, band),
+                                                     1e-3 * amplitude * amplitude);
+                                        for (int other = 0; other < 4; other++)
+                                                if (other != band)
+                                                        assertEquals(0, epoch.getFeature(channel, other),
+                                                                     1e-3 * amplitude * amplitude);
+                                }
+                        }
+                        assertEquals(Arrays.asList("Fz:delta", "Fz:theta", "Fz:alpha", "Fz:beta", "Cz:delta",
+                                                   "Cz:theta", "Cz:alpha", "Cz:beta", "Pz:delta", "Pz:theta",
+                                                   "Pz:alpha", "Pz:beta"), features.getFeatureNames());
+                }
+        }
+
+        @Test
+        public void relativeBandPowerShouldBeTheFraction() throws IOException {
+
+                try (EDFReader reader = new EDFReader(file);
+                     EDFSpectralFeatures features = new EDFSpectralFeatures(reader.getHeader()).relative(true)
+                                                                                              .channels(0)) {
+                        for (EDFSpectralFeatures.Epoch epoch : extract(reader, features))
+                                assertEquals(1, epoch.getFeature(0, 2), 1e-3);
+                }
+        }
+
+        @Test
+        public void parallelFeaturesShouldEqualSequentialFeatures() throws IOException {
+
+                try (EDFReader reader = new EDFReader(file);
+                     EDFSpectralFeatures sequential = new EDFSpectralFeatures(reader.getHeader()).epoch(10);
+                     EDFSpectralFeatures parallel = new EDFSpectralFeatures(reader.getHeader()).epoch(10)
+                                                                                               .parallelism(4)) {
+                        List<EDFSpectralFeatures.Epoch> expected = extract(reader, sequential);
+                        List<EDFSpectralFeatures.Epoch> actual = extract(reader, parallel);
+                        assertEquals(9, actual.size());
+                        for (int i = 0; i < expected.size(); i++)
+                                assertArrayEquals(expected.get(i).getFeatures(), actual.get(i).getFeatures(), 0);
+                }
+        }
+
+        @Test
+        public void streamedRecordsShouldGiveTheSameFeatures() throws IOException {
+
+                try (EDFReader reader = new EDFReader(file);
+                     EDFSpectralFeatures extracted = new EDFSpectralFeatures(reader.getHeader());
+                     EDFSpectralFeatures streamed = new EDFSpectralFeatures(reader.getHeader())) {
+                        List<EDFSpectralFeatures.Epoch> expected = extract(reader, extracted);
+                        List<EDFSpectralFeatures.Epoch> actual = new ArrayList<>();
+                        // 7 records do not divide an epoch of 30 records
+                        for (int first = 0; first < 90; first += 7)
+                                actual.addAll(streamed.process(reader.readDigitalRecords(first, Math.min(7, 90 - first))));
+                        assertEquals(expected.size(), actual.size());
+                        for (int i = 0; i < expected.size(); i++) {
+                                assertEquals(i, actual.get(i).getIndex());
+                                assertEquals(30.0 * i, actual.get(i).getStart(), 0);
+                                assertArrayEquals(expected.get(i).getFeatures(), actual.get(i).getFeatures(), 0);
+                        }
+                }
+        }
+
+        private static List<EDFSpectralFeatures.Epoch> extract(EDFReader reader, EDFSpectralFeatures features)
+                throws IOException {
+
+                List<EDFSpectralFeatures.Epoch> epochs = new ArrayList<>();
+                features.extract(reader, epochs::add);
+                return epochs;
+        }
+
+        private static double amplitude(EDFReader reader, int channel) throws IOException {
+
+                double max = 0;
+                for (short value : reader.readDigitalSamples(channel, 0, 256))
+                        max = Math.max(max, Math.abs(value));
+                return max * reader.getUnitsInDigit(channel);
+        }
+}
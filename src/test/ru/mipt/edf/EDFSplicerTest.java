@@ -0,0 +1,178 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EDFSplicerTest {
+
+        private static final String EDF_INPUT_FILE = "test_generator.edf";
+        private static final String EDF_OUTPUT_FILE = "splicedEdf.edf";
+
+        private final List<Path> parts = new ArrayList<>();
+
+        @Before
+        @After
+        public void cleanup() {
+
+                parts.add(Paths.get(EDF_OUTPUT_FILE));
+                for (Path part : parts) {
+                        try {
+                                Files.delete(part);
+                        } catch (Exception ex) {
+                                // ignore, as not being relevant.
+                        }
+                }
+                parts.clear();
+        }
+
+        @Test
+        public void splitAndConcatenateShouldReturnTheSameFile() throws Exception {
+
+                Path edfInputFile = getInputFile();
+                parts.addAll(EDFSplicer.split(edfInputFile, Paths.get("."), 400));
+                assertEquals(3, parts.size());
+
+                Path outputFilePath = Paths.get(EDF_OUTPUT_FILE);
+                EDFSplicer.concatenate(parts, outputFilePath);
+                assertArrayEquals(Files.readAllBytes(edfInputFile), Files.readAllBytes(outputFilePath));
+        }
+
+        @Test
+        public void splitAndConcatenateShouldReturnTheSameEdfPlusFile() throws Exception {
+
+                Path edfInputFile = Paths.get("splicedEdfPlus.edf");
+                parts.add(edfInputFile);
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5).annotationsPerRecord(2)
+                                  .numberOfRecords(30).write(edfInputFile);
+                List<Path> split = EDFSplicer.split(edfInputFile, Paths.get("."), 10);
+                parts.addAll(split);
+                assertEquals(3, split.size());
+
+                Path outputFilePath = Paths.get(EDF_OUTPUT_FILE);
+                EDFSplicer.concatenate(split, outputFilePath);
+                assertArrayEquals(Files.readAllBytes(edfInputFile), Files.readAllBytes(outputFilePath));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testConcatenateEdfPlusFilesOutOfOrder() throws Exception {
+
+                Path edfInputFile = Paths.get("splicedEdfPlus.edf");
+                parts.add(edfInputFile);
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5).annotationsPerRecord(2)
+                                  .numberOfRecords(30).write(edfInputFile);
+                List<Path> split = EDFSplicer.split(edfInputFile, Paths.get("."), 10);
+                parts.addAll(split);
+
+                List<Path> sources = new ArrayList<>();
+                sources.add(split.get(1));
+                sources.add(split.get(0));
+                EDFSplicer.concatenate(sources, Paths.get(EDF_OUTPUT_FILE));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testConcatenateFilesWithGap() throws Exception {
+
+                parts.addAll(EDFSplicer.split(getInputFile(), Paths.get("."), 300));
+
+                List<Path> sources = new ArrayList<>();
+                sources.add(parts.get(0));
+                sources.add(parts.get(2));
+                EDFSplicer.concatenate(sources, Paths.get(EDF_OUTPUT_FILE));
+        }
+
+        @Test
+        public void testConcatenateIntoSource() throws Exception {
+
+                parts.addAll(EDFSplicer.split(getInputFile(), Paths.get("."), 300));
+                byte[] first = Files.readAllBytes(parts.get(0));
+
+                try {
+                        EDFSplicer.concatenate(parts, parts.get(0));
+                        fail("The target is one of the sources.");
+                } catch (IllegalArgumentException e) {
+                        // expected
+                }
+                assertArrayEquals(first, Files.readAllBytes(parts.get(0)));
+        }
+
+        @Test
+        public void testCrop() throws Exception {
+
+                Path edfInputFile = getInputFile();
+                Path outputFilePath = Paths.get(EDF_OUTPUT_FILE);
+                EDFSplicer.crop(edfInputFile, outputFilePath, 60, 30);
+
+                EDFParserResult expected;
+                try (FileInputStream is = new FileInputStream(edfInputFile.toFile())) {
+                        expected = EDFParser.parseEDF(is);
+                }
+                EDFParserResult actual;
+                try (FileInputStream is = new FileInputStream(outputFilePath.toFile())) {
+                        actual = EDFParser.parseEDF(is);
+                }
+
+                assertEquals(30, actual.getHeader().getNumberOfRecords());
+                assertEquals("14.28.00", actual.getHeader().getStartTime().trim());
+                for (int i = 0; i < expected.getHeader().getNumberOfChannels(); i++) {
+                        int samples = expected.getHeader().getNumberOfSamples()[i];
+                        short[] values = new short[30 * samples];
+                        System.arraycopy(expected.getSignal().getDigitalValues()[i], 60 * samples, values, 0, values.length);
+                        assertArrayEquals(values, actual.getSignal().getDigitalValues()[i]);
+                }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testConcatenateIncompatibleFiles() throws Exception {
+
+                Path edfInputFile = getInputFile();
+                Path part = Paths.get("splicedEdfPart.edf");
+                Files.copy(edfInputFile, part);
+                parts.add(part);
+                try (EDFHeaderEditor editor = new EDFHeaderEditor(part)) {
+                        editor.setChannelLabel(0, "Other");
+                }
+
+                List<Path> sources = new ArrayList<>();
+                sources.add(edfInputFile);
+                sources.add(part);
+                EDFSplicer.concatenate(sources, Paths.get(EDF_OUTPUT_FILE));
+        }
+
+        private Path getInputFile() throws Exception {
+
+                URL resource = getClass().getClassLoader().getResource(EDF_INPUT_FILE);
+                assert resource != null;
+                return Paths.get(resource.toURI());
+        }
+}
@@ -0,0 +1,173 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class EDFStreamReaderTest {
+
+        /** The offset of the number of data records in the header */
+        private static final int NUMBER_OF_RECORDS_OFFSET = 236;
+
+        /**
+         * A stream which returns 1 to 3 bytes per read.
+         */
+        private static class TrickleInputStream extends FilterInputStream {
+
+                private int reads;
+
+                TrickleInputStream(InputStream in) {
+
+                        super(in);
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+
+                        return super.read(b, off, Math.min(len, 1 + reads++ % 3));
+                }
+        }
+
+        private static byte[] generate(int numberOfRecords) throws IOException {
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 10, 0.5)
+                                  .channel("Cz", 50, EDFGenerator.Shape.NOISE, 1, 0.2)
+                                  .numberOfRecords(numberOfRecords).write(out);
+                return out.toByteArray();
+        }
+
+        private static short[][] readAll(EDFStreamReader reader, int recordsPerRead) throws IOException {
+
+                short[][] all = new short[reader.getHeader().getNumberOfChannels()][0];
+                short[][] values;
+                while ((values = reader.readRecords(recordsPerRead)) != null)
+                        for (int i = 0; i < all.length; i++) {
+                                int length = all[i].length;
+                                all[i] = Arrays.copyOf(all[i], length + values[i].length);
+                                System.arraycopy(values[i], 0, all[i], length, values[i].length);
+                        }
+                return all;
+        }
+
+        @Test
+        public void parseEDFShouldReadAGzipStreamInSmallParts() throws Exception {
+
+                Path file = Paths.get(getClass().getClassLoader().getResource("test_generator.edf").toURI());
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                        Files.copy(file, out);
+                }
+                EDFParserResult expected;
+                try (InputStream is = Files.newInputStream(file)) {
+                        expected = EDFParser.parseEDF(is);
+                }
+
+                EDFParserResult result = EDFParser.parseEDF(new TrickleInputStream(
+                        new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))));
+
+                assertEquals(expected.getHeader().getNumberOfRecords(), result.getHeader().getNumberOfRecords());
+                for (int i = 0; i < expected.getHeader().getNumberOfChannels(); i++)
+                        assertArrayEquals(expected.getSignal().getDigitalValues()[i],
+                                          result.getSignal().getDigitalValues()[i]);
+        }
+
+        @Test
+        public void recordingInProgressShouldBeReadUntilTheLastCompleteRecord() throws Exception {
+
+                byte[] bytes = generate(5);
+                EDFParserResult expected = EDFParser.parseEDF(new ByteArrayInputStream(bytes));
+                byte[] unknown = "-1      ".getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(unknown, 0, bytes, NUMBER_OF_RECORDS_OFFSET, unknown.length);
+                // half of the last data record is missing
+                int bytesPerRecord = expected.getHeader().getBytesPerRecord();
+                byte[] truncated = Arrays.copyOf(bytes, bytes.length - bytesPerRecord / 2);
+
+                try (EDFStreamReader reader = new EDFStreamReader(new TrickleInputStream(
+                        new ByteArrayInputStream(truncated)))) {
+                        assertEquals(-1, reader.getHeader().getNumberOfRecords());
+                        assertEquals(3, reader.readRecords(3)[0].length / 100);
+                        assertEquals(1, reader.readRecords(3)[0].length / 100);
+                        assertNull(reader.readRecords(3));
+                        assertEquals(4, reader.getNumberOfRecordsRead());
+                }
+                try (EDFStreamReader reader = new EDFStreamReader(new TrickleInputStream(
+                        new ByteArrayInputStream(truncated)))) {
+                        short[][] values = readAll(reader, 2);
+                        for (int i = 0; i < values.length; i++) {
+                                short[] digitalValues = expected.getSignal().getDigitalValues()[i];
+                                assertArrayEquals(Arrays.copyOf(digitalValues, digitalValues.length * 4 / 5), values[i]);
+                        }
+                }
+        }
+
+        @Test
+        public void streamEndingBeforeTheRecordsOfTheHeaderShouldBeRejected() throws Exception {
+
+                byte[] bytes = generate(5);
+                byte[] truncated = Arrays.copyOf(bytes, bytes.length - 10);
+
+                try (EDFStreamReader reader = new EDFStreamReader(new TrickleInputStream(
+                        new ByteArrayInputStream(truncated)))) {
+                        assertEquals(4, reader.readRecords(4)[0].length / 100);
+                        reader.readRecords(4);
+                        fail("The stream ends in the last data record.");
+                } catch (EDFParserException e) {
+                        assertEquals("The stream ends in data record 4 of 5.", e.getMessage());
+                }
+                try {
+                        EDFParser.parseEDF(new TrickleInputStream(new ByteArrayInputStream(truncated)));
+                        fail("The stream ends in the last data record.");
+                } catch (EDFParserException e) {
+                        assertEquals("The stream ends in data record 4 of 5.", e.getMessage());
+                }
+        }
+
+        @Test
+        public void headerShouldBeReadInSmallParts() throws Exception {
+
+                byte[] bytes = generate(2);
+                EDFHeader expected = EDFParser.parseHeader(new ByteArrayInputStream(bytes)).getHeader();
+
+                EDFHeader header = EDFParser.parseHeader(new TrickleInputStream(new ByteArrayInputStream(bytes)))
+                                            .getHeader();
+
+                assertArrayEquals(expected.getChannelLabels(), header.getChannelLabels());
+                assertArrayEquals(expected.getNumberOfSamples(), header.getNumberOfSamples());
+                assertArrayEquals(expected.getReserveds(), header.getReserveds());
+        }
+}
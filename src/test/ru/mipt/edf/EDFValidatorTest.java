@@ -0,0 +1,137 @@
+/*
+ * (The MIT license)
+ *
+ * Copyright (c) 2012 MIPT (mr.santak@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ru.mipt.edf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EDFValidatorTest {
+
+        private Path root;
+
+        @Before
+        public void createDirectory() throws IOException {
+
+                root = Files.createTempDirectory("validator");
+        }
+
+        @After
+        public void cleanup() throws IOException {
+
+                try (Stream<Path> files = Files.walk(root)) {
+                        files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+                }
+        }
+
+        @Test
+        public void invalidHeaderShouldBeReported() throws Exception {
+
+                List<EDFValidator.Problem> problems = new EDFValidator().validate(resource("invalid.edf"));
+
+                assertEquals(1, problems.size());
+                assertEquals(EDFValidator.Severity.ERROR, problems.get(0).getSeverity());
+                assertEquals("HEADER", problems.get(0).getCode());
+                assertEquals(-1, problems.get(0).getRecord());
+        }
+
+        @Test
+        public void validFileShouldHaveNoProblems() throws Exception {
+
+                assertTrue(new EDFValidator().validate(resource("test_generator.edf")).isEmpty());
+        }
+
+        @Test
+        public void truncatedFileShouldBeReported() throws Exception {
+
+                Path file = root.resolve("truncated.edf");
+                Files.copy(resource("test_generator.edf"), file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(channel.size() - 10);
+                }
+
+                List<EDFValidator.Problem> problems = new EDFValidator().validate(file);
+                assertEquals(1, problems.size());
+                assertEquals("TRUNCATED", problems.get(0).getCode());
+                assertEquals(899, problems.get(0).getRecord());
+        }
+
+        @Test
+        public void invalidTALShouldBeReported() throws Exception {
+
+                Path file = root.resolve("annotations.edf");
+                new EDFGenerator().channel("Fz", 100, EDFGenerator.Shape.SINE, 5, 0.5).annotationsPerRecord(2)
+                                  .numberOfRecords(10).write(file);
+                EDFHeader header;
+                try (EDFReader reader = new EDFReader(file)) {
+                        header = reader.getHeader();
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        // the sign of the first onset of record 3, after the 100 samples of Fz
+                        long position = header.getBytesInHeader() + 3L * header.getBytesPerRecord() + 200;
+                        channel.write(ByteBuffer.wrap(new byte[] { 'x' }), position);
+                }
+
+                List<EDFValidator.Problem> problems = new EDFValidator().validate(file);
+                assertEquals(1, problems.size());
+                assertEquals("TAL_SYNTAX", problems.get(0).getCode());
+                assertEquals(3, problems.get(0).getRecord());
+                assertEquals(1, problems.get(0).getChannel());
+                assertTrue(new EDFValidator().checkAnnotations(false).validate(file).isEmpty());
+        }
+
+        @Test
+        public void treeShouldBeValidatedAndReported() throws Exception {
+
+                Files.createDirectory(root.resolve("sub"));
+                Files.copy(resource("test_generator.edf"), root.resolve("valid.edf"));
+                Files.copy(resource("invalid.edf"), root.resolve("sub").resolve("invalid.edf"));
+                Files.write(root.resolve("notes.txt"), "not an EDF-File".getBytes("ASCII"));
+
+                Map<Path, List<EDFValidator.Problem>> results = new EDFValidator().validateTree(root, 2);
+                assertEquals(2, results.size());
+                assertTrue(results.get(root.resolve("valid.edf")).isEmpty());
+                assertEquals(1, results.get(root.resolve("sub").resolve("invalid.edf")).size());
+
+                StringWriter report = new StringWriter();
+                EDFValidator.writeReport(results, report);
+                String[] lines = report.toString().split("\n");
+                assertEquals(2, lines.length);
+                assertTrue(lines[1].startsWith(root.resolve("sub").resolve("invalid.edf") + "\tERROR\tHEADER\t-1\t-1\t"));
+        }
+
+        private Path resource(String name) throws Exception {
+
+                return Paths.get(getClass().getClassLoader().getResource(name).toURI());
+        }
+}